@@ -0,0 +1,73 @@
+package org.atos.scouter.benchmarks;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.atos.scouter.util.PropertiesManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Configuration and documents shared by the benchmarks
+ *
+ * @version 1.0
+ */
+final class BenchmarkData {
+    /**
+     * Private constructor to block instantiation
+     */
+    private BenchmarkData() {
+
+    }
+
+    /**
+     * Load the benchmark configuration, from the system property scouter.config
+     * or benchmarks/config-benchmark.properties. Must be called before any scouter class is used.
+     */
+    static void loadConfiguration() {
+        PropertiesManager.getInstance(System.getProperty("scouter.config", "benchmarks/config-benchmark.properties"));
+    }
+
+    /**
+     * Read a document bundled with scouter
+     *
+     * @param name Name of the document
+     * @return Content of the document
+     */
+    static byte[] document(String name) {
+        try (InputStream stream = BenchmarkData.class.getResourceAsStream("/" + name)) {
+            if (stream == null) {
+                throw new IllegalArgumentException("Document not found : " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read = stream.read(buffer); read != -1; read = stream.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Extract the text of a document bundled with scouter
+     *
+     * @param name Name of the document
+     * @return Text of the document, whitespace collapsed
+     */
+    static String text(String name) {
+        BodyContentHandler handler = new BodyContentHandler(-1);
+        try (TikaInputStream stream = TikaInputStream.get(document(name))) {
+            new AutoDetectParser().parse(stream, handler, new Metadata(), new ParseContext());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return handler.toString().trim().replaceAll("\\s+", " ");
+    }
+}
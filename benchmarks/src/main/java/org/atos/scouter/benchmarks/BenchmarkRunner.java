@@ -0,0 +1,46 @@
+package org.atos.scouter.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the scouter defaults : gc profiler for the allocation rate
+ * and JSON results in benchmarks/target/jmh-result.json, so runs can be compared.
+ * Every JMH command line option is accepted and overrides these defaults.
+ *
+ * @version 1.0
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * Private constructor to block instantiation
+     */
+    private BenchmarkRunner() {
+
+    }
+
+    /**
+     * Run the benchmarks
+     *
+     * @param args JMH command line options
+     * @throws Exception if the options are invalid or a benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("benchmarks/target/jmh-result.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
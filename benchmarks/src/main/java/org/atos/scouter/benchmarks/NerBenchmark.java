@@ -0,0 +1,65 @@
+package org.atos.scouter.benchmarks;
+
+import org.atos.scouter.util.nlp.OpenNLP;
+import org.atos.scouter.util.nlp.OpenNLPPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OpenNLP#applyNLPner(String, OpenNLP.nerOptions)} per entity type on the text of axa.pdf
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NerBenchmark {
+
+    @Param({"PERSON", "ORGANIZATION", "LOCATION"})
+    private OpenNLP.nerOptions type;
+
+    private OpenNLP openNLP;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.loadConfiguration();
+        openNLP = OpenNLPPool.getInstance().borrow();
+        text = BenchmarkData.text("axa.pdf");
+    }
+
+    @TearDown
+    public void tearDown() {
+        OpenNLPPool.getInstance().release(openNLP);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<String> applyNLPner() {
+        return openNLP.applyNLPner(text, type);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<String> applyNLPnerParallel() {
+        return openNLP.applyNLPner(text, type);
+    }
+}
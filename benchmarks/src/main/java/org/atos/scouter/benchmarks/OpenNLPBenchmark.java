@@ -0,0 +1,131 @@
+package org.atos.scouter.benchmarks;
+
+import org.atos.scouter.util.nlp.OpenNLP;
+import org.atos.scouter.util.nlp.OpenNLPPool;
+import org.atos.scouter.util.nlp.SentenceBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steps of the {@link OpenNLP} pipeline on the text of axa.pdf.
+ * Each benchmark thread borrows its own {@link OpenNLP} instance.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OpenNLPBenchmark {
+
+    private OpenNLP openNLP;
+
+    private String text;
+
+    private String sentence;
+
+    private String[] tokens;
+
+    private List<String> sentences;
+
+    private final SentenceBatch batch = new SentenceBatch();
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.loadConfiguration();
+        openNLP = OpenNLPPool.getInstance().borrow();
+        text = BenchmarkData.text("axa.pdf");
+        String longest = "";
+        for (String s : openNLP.detectSentences(text)) {
+            if (s.length() > longest.length()) {
+                longest = s;
+            }
+        }
+        sentence = longest;
+        tokens = openNLP.learnableTokenize(sentence);
+        sentences = Arrays.asList(openNLP.detectSentences(text));
+    }
+
+    @TearDown
+    public void tearDown() {
+        OpenNLPPool.getInstance().release(openNLP);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String[] detectSentences() {
+        return openNLP.detectSentences(text);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String[] detectSentencesParallel() {
+        return openNLP.detectSentences(text);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String[] learnableTokenize() {
+        return openNLP.learnableTokenize(sentence);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String[] learnableTokenizeParallel() {
+        return openNLP.learnableTokenize(sentence);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String[] posTagging() {
+        return openNLP.posTagging(tokens);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String[] posTaggingParallel() {
+        return openNLP.posTagging(tokens);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Map<String, String> lemmatize() {
+        return openNLP.lemmatize(text);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Map<String, String> lemmatizeParallel() {
+        return openNLP.lemmatize(text);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public SentenceBatch analyzeBatch() {
+        return openNLP.analyzeBatch(sentences, EnumSet.allOf(OpenNLP.nerOptions.class), true, batch);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public SentenceBatch analyzeBatchParallel() {
+        return openNLP.analyzeBatch(sentences, EnumSet.allOf(OpenNLP.nerOptions.class), true, batch);
+    }
+}
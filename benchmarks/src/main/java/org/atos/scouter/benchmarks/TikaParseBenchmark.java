@@ -0,0 +1,100 @@
+package org.atos.scouter.benchmarks;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.atos.scouter.TikaTools.ExtractionResult;
+import org.atos.scouter.TikaTools.PdfExtracter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tika parsing of the bundled documents, alone and followed by NER through {@link PdfExtracter}
+ *
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TikaParseBenchmark {
+
+    @Param({"test.pdf", "testpdf.pdf", "axa.pdf"})
+    private String document;
+
+    private byte[] content;
+
+    private Path file;
+
+    private Parser parser;
+
+    private PdfExtracter extracter;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.loadConfiguration();
+        content = BenchmarkData.document(document);
+        file = Files.createTempFile("scouter-benchmark", ".pdf");
+        Files.write(file, content);
+        parser = new AutoDetectParser();
+        extracter = new PdfExtracter();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private int parseDocument() throws Exception {
+        BodyContentHandler handler = new BodyContentHandler(-1);
+        try (TikaInputStream stream = TikaInputStream.get(content)) {
+            parser.parse(stream, handler, new Metadata(), new ParseContext());
+        }
+        return handler.toString().length();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int parse() throws Exception {
+        return parseDocument();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int parseParallel() throws Exception {
+        return parseDocument();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ExtractionResult extract() throws IOException {
+        return extracter.extractText(file.toString());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ExtractionResult extractParallel() throws IOException {
+        return extracter.extractText(file.toString());
+    }
+}
@@ -1,13 +1,34 @@
-
-
 package org.atos.scouter.Main;
 
+import com.google.common.cache.CacheStats;
 import org.apache.commons.cli.MissingArgumentException;
+import org.atos.scouter.TikaTools.AsyncDirectoryExtracter;
+import org.atos.scouter.TikaTools.DirectoryExtracter;
+import org.atos.scouter.TikaTools.DocumentManifest;
+import org.atos.scouter.TikaTools.DocumentQuarantine;
+import org.atos.scouter.TikaTools.ExtractionResult;
+import org.atos.scouter.TikaTools.ExtractionTimings;
 import org.atos.scouter.TikaTools.PdfExtracter;
+import org.atos.scouter.metrics.MetricsLogger;
+import org.atos.scouter.pipeline.Pipeline;
+import org.atos.scouter.server.ExtractionServer;
+import org.atos.scouter.sink.ResultSink;
+import org.atos.scouter.sink.ResultSinks;
+import org.atos.scouter.util.ConfigKeys;
 import org.atos.scouter.util.PropertiesManager;
+import org.atos.scouter.util.nlp.NamedEntity;
+import org.atos.scouter.util.nlp.OpenNLP;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
 public class Main {
 
 
@@ -32,10 +53,126 @@ public class Main {
 
         String configPath = args[0];
         final PropertiesManager PROPERTIES_MANAGER = PropertiesManager.getInstance(configPath);
-        //METRICS_LOGGER = MetricsLogger.getMetricsLogger();
+        if (PROPERTIES_MANAGER.get(ConfigKeys.CONFIG_WATCH)) {
+            PROPERTIES_MANAGER.watch();
+        }
+        final MetricsLogger METRICS_LOGGER = MetricsLogger.getMetricsLogger();
+        if ("server".equals(PROPERTIES_MANAGER.get(ConfigKeys.SCOUTER_MODE))) {
+            ExtractionServer server = new ExtractionServer(new PdfExtracter(), PROPERTIES_MANAGER);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                METRICS_LOGGER.close();
+            }, "scouter-shutdown"));
+            server.start();
+            return;
+        }
+
+        // Required and checked when the configuration is loaded in batch mode
+        Path root = PROPERTIES_MANAGER.get(ConfigKeys.PDF_ROOT_PATH);
+        Path manifestPath = PROPERTIES_MANAGER.get(ConfigKeys.PDF_MANIFEST_PATH);
+        DocumentManifest manifest = manifestPath == null ? null : new DocumentManifest(manifestPath);
+        Path quarantinePath = PROPERTIES_MANAGER.get(ConfigKeys.PDF_QUARANTINE_PATH);
+        DocumentQuarantine quarantine = quarantinePath == null ? null : new DocumentQuarantine(quarantinePath);
+        try (ResultSink sink = ResultSinks.create(PROPERTIES_MANAGER)) {
+            PdfExtracter extracter = new PdfExtracter(manifest, quarantine);
+            if (Files.isDirectory(root)) {
+                AtomicReference<ExtractionTimings> timings = new AtomicReference<>(ExtractionTimings.ZERO);
+                AtomicLong skipped = new AtomicLong();
+                Consumer<ExtractionResult> consumer = result -> {
+                    if (result.isSkipped()) {
+                        skipped.incrementAndGet();
+                    } else {
+                        sink.write(result, recordManifest(manifest, result));
+                        recordMetrics(METRICS_LOGGER, result);
+                    }
+                    timings.accumulateAndGet(result.getTimings(), ExtractionTimings::sum);
+                };
+                String execution = PROPERTIES_MANAGER.get(ConfigKeys.PDF_EXECUTION);
+                long count;
+                if ("pipeline".equals(execution)) {
+                    count = new Pipeline(extracter, manifest, PROPERTIES_MANAGER).extractAll(root, consumer);
+                } else if ("async".equals(execution)) {
+                    int nlpThreads = PROPERTIES_MANAGER.get(ConfigKeys.PDF_NLP_THREADS);
+                    int maxDocuments = PROPERTIES_MANAGER.get(ConfigKeys.PDF_ASYNC_DOCUMENTS);
+                    count = new AsyncDirectoryExtracter(extracter, nlpThreads, maxDocuments).extractAll(root, consumer);
+                } else {
+                    int workers = PROPERTIES_MANAGER.get(ConfigKeys.PDF_WORKERS);
+                    int queueSize = PROPERTIES_MANAGER.get(ConfigKeys.PDF_QUEUE_SIZE);
+                    count = new DirectoryExtracter(extracter, workers, queueSize).extractAll(root, consumer);
+                }
+                LOGGER.info(count + " documents found in " + root + ", " + skipped.get() + " unchanged or quarantined : " + timings.get());
+            } else {
+                ExtractionResult result = extracter.extractText(root.toString());
+                if (!result.isSkipped()) {
+                    sink.write(result, recordManifest(manifest, result));
+                    recordMetrics(METRICS_LOGGER, result);
+                }
+                LOGGER.info(root + (result.isSkipped() ? " unchanged or quarantined" : " extracted : " + result.getTimings()));
+            }
+            CacheStats cacheStats = OpenNLP.getSentenceCacheStats();
+            LOGGER.info("Sentence cache hit rate " + cacheStats.hitRate() + " : " + cacheStats);
+        } finally {
+            if (manifest != null) {
+                manifest.close();
+            }
+            if (quarantine != null) {
+                quarantine.close();
+            }
+            METRICS_LOGGER.close();
+        }
+    }
+
+    /**
+     * Build the acknowledgement recording a result in the manifest once the sink wrote it, so a result lost
+     * by the sink leaves its document to extract again
+     *
+     * @param manifest Manifest of the documents already extracted, null without manifest
+     * @param result   Result to write
+     * @return Acknowledgement for {@link ResultSink#write(ExtractionResult, Runnable)}, null if nothing to record
+     */
+    private static Runnable recordManifest(DocumentManifest manifest, ExtractionResult result) {
+        DocumentManifest.DocumentState state = result.getManifestState();
+        if (manifest == null || state == null) {
+            return null;
+        }
+        return () -> {
+            try {
+                manifest.record(state);
+            } catch (IOException e) {
+                LOGGER.warn("Cannot record " + result.getPath() + " in manifest : " + e.getMessage());
+            }
+        };
+    }
 
-        PdfExtracter extracter = new PdfExtracter();
-        extracter.extractText(PROPERTIES_MANAGER.getProperty("pdf.root.path"));
+    /**
+     * Count an extracted document : documents, bytes, characters and entities per type, and the time of its phases
+     *
+     * @param metrics Registry of the metrics
+     * @param result  Result of the extraction
+     */
+    private static void recordMetrics(MetricsLogger metrics, ExtractionResult result) {
+        metrics.counter("documents").increment();
+        metrics.counter("characters").add(result.getCharacters());
+        try {
+            metrics.counter("bytes").add(Files.size(Paths.get(result.getPath())));
+        } catch (IOException e) {
+            LOGGER.debug("Cannot read size of " + result.getPath() + " : " + e.getMessage());
+        }
+        OpenNLP.nerOptions[] types = OpenNLP.nerOptions.values();
+        int[] counts = new int[types.length];
+        for (NamedEntity entity : result.getEntities()) {
+            counts[entity.getType().ordinal()]++;
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (counts[i] > 0) {
+                metrics.counter("entities", "type", types[i].name()).add(counts[i]);
+            }
+        }
+        ExtractionTimings timings = result.getTimings();
+        metrics.histogram("document.latency", "phase", "setup").record(timings.getSetup());
+        metrics.histogram("document.latency", "phase", "parse").record(timings.getParse());
+        metrics.histogram("document.latency", "phase", "nlp").record(timings.getNlp());
+        metrics.histogram("document.latency", "phase", "post").record(timings.getPost());
     }
 
 }
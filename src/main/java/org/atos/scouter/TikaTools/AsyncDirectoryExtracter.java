@@ -0,0 +1,248 @@
+package org.atos.scouter.TikaTools;
+
+import org.atos.scouter.metrics.MetricsLogger;
+import org.atos.scouter.util.nlp.OpenNLP;
+import org.atos.scouter.util.nlp.OpenNLPPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Walk a directory tree and extract every PDF found, one lightweight task per document.
+ * Each document is read and parsed on its own I/O thread, a virtual thread when the JVM provides them
+ * (Java 21 and later) or a thread of an unbounded cached pool otherwise, while the NLP of its chunks runs
+ * on a separate pool sized to the number of cores. Slow storage then blocks only cheap I/O threads
+ * and never leaves the cores idle. At most maxDocuments documents are in flight at once, and at most
+ * {@link AsyncDirectoryExtracter#QUEUED_CHUNKS_PER_THREAD} chunks per NLP thread wait for the NLP : a document
+ * parsed while the queue is full runs the NLP of its chunk itself, which bounds the text held in memory.
+ * Each NLP task borrows an {@link OpenNLP} from {@link OpenNLPPool}, so no instance is tied to a thread.
+ *
+ * @version 1.0
+ * @see PdfExtracter#extractText(String, java.util.concurrent.Executor)
+ */
+public class AsyncDirectoryExtracter {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncDirectoryExtracter.class);
+    /**
+     * Marker put in the output queue once every document has been extracted
+     */
+    private static final ExtractionResult END = new ExtractionResult("", 0, Collections.emptyList());
+    /**
+     * Extension of the documents to extract
+     */
+    private static final String PDF_EXTENSION = ".pdf";
+    /**
+     * Chunks waiting for each NLP thread before the parsing threads run the NLP themselves
+     */
+    private static final int QUEUED_CHUNKS_PER_THREAD = 4;
+    /**
+     * Number of NLP threads
+     */
+    private final int nlpThreads;
+    /**
+     * Maximum number of documents in flight, also capacity of the output queue
+     */
+    private final int maxDocuments;
+    /**
+     * Extracter shared by the tasks
+     */
+    private final PdfExtracter extracter;
+
+    /**
+     * Build a new extracter
+     *
+     * @param extracter    Extracter shared by the tasks
+     * @param nlpThreads   Number of NLP threads, keep it at most nlp.pool.max
+     * @param maxDocuments Maximum number of documents in flight
+     * @throws NullPointerException     if extracter is null
+     * @throws IllegalArgumentException if nlpThreads or maxDocuments is not positive
+     */
+    public AsyncDirectoryExtracter(PdfExtracter extracter, int nlpThreads, int maxDocuments) {
+        if (nlpThreads <= 0 || maxDocuments <= 0) {
+            throw new IllegalArgumentException("NLP threads and documents in flight must be positive");
+        }
+        this.extracter = Objects.requireNonNull(extracter);
+        this.nlpThreads = nlpThreads;
+        this.maxDocuments = maxDocuments;
+    }
+
+    /**
+     * Extract every PDF below root. The walk blocks when maxDocuments documents are in flight
+     * and the tasks block when the consumer is late.
+     *
+     * @param root     Directory to walk
+     * @param consumer Called on the calling thread for each extracted document
+     * @return Number of documents extracted
+     * @throws NullPointerException if root or consumer is null
+     * @throws IOException          if root cannot be walked
+     */
+    public long extractAll(Path root, Consumer<ExtractionResult> consumer) throws IOException {
+        Objects.requireNonNull(root);
+        Objects.requireNonNull(consumer);
+        BlockingQueue<ExtractionResult> results = new ArrayBlockingQueue<>(maxDocuments);
+        ExecutorService ioExecutor = newIoExecutor();
+        ExecutorService nlpExecutor = new ThreadPoolExecutor(nlpThreads, nlpThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(nlpThreads * QUEUED_CHUNKS_PER_THREAD), new NamedThreadFactory("scouter-nlp-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        Semaphore inFlight = new Semaphore(maxDocuments);
+        MetricsLogger metrics = MetricsLogger.getMetricsLogger();
+        metrics.gauge("queue.depth", () -> maxDocuments - inFlight.availablePermits(), "queue", "documents");
+        metrics.gauge("queue.depth", results::size, "queue", "results");
+        AtomicReference<IOException> walkError = new AtomicReference<>();
+        ioExecutor.execute(() -> walk(root, ioExecutor, nlpExecutor, inFlight, results, walkError));
+        long count = 0;
+        try {
+            for (ExtractionResult result = results.take(); result != END; result = results.take()) {
+                consumer.accept(result);
+                count++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Extraction of " + root + " interrupted");
+        } finally {
+            ioExecutor.shutdownNow();
+            nlpExecutor.shutdownNow();
+        }
+        if (walkError.get() != null) {
+            throw walkError.get();
+        }
+        return count;
+    }
+
+    /**
+     * Walk root and start a task for each PDF, then wait for the tasks and close the output queue
+     *
+     * @param root        Directory to walk
+     * @param ioExecutor  Executor of the document tasks
+     * @param nlpExecutor Executor of the NLP of the chunks
+     * @param inFlight    One permit per document which can be in flight
+     * @param results     Output queue
+     * @param walkError   Store the error which stopped the walk
+     */
+    private void walk(Path root, ExecutorService ioExecutor, ExecutorService nlpExecutor, Semaphore inFlight,
+                      BlockingQueue<ExtractionResult> results, AtomicReference<IOException> walkError) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && file.getFileName().toString().toLowerCase().endsWith(PDF_EXTENSION)) {
+                        try {
+                            inFlight.acquire();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return FileVisitResult.TERMINATE;
+                        }
+                        ioExecutor.execute(() -> extract(file, nlpExecutor, inFlight, results));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    LOGGER.warn("Cannot visit " + file + " : " + e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            walkError.set(e);
+        }
+        try {
+            inFlight.acquire(maxDocuments);
+            results.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Extract a document with the shared {@link PdfExtracter} and release its permit
+     *
+     * @param file        Document to extract
+     * @param nlpExecutor Executor of the NLP of the chunks
+     * @param inFlight    Permit of the document
+     * @param results     Output queue
+     */
+    private void extract(Path file, ExecutorService nlpExecutor, Semaphore inFlight,
+                         BlockingQueue<ExtractionResult> results) {
+        try {
+            results.put(extracter.extractText(file.toString(), nlpExecutor));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Cannot extract " + file + " : " + e.getMessage());
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Build the executor of the document tasks : a virtual thread per task when the JVM provides them,
+     * a cached pool of daemon threads otherwise
+     *
+     * @return New executor
+     */
+    private static ExecutorService newIoExecutor() {
+        ExecutorService executor = newVirtualThreadExecutor();
+        if (executor != null) {
+            LOGGER.debug("Documents extracted on virtual threads");
+            return executor;
+        }
+        LOGGER.debug("Virtual threads not available, documents extracted on a cached thread pool");
+        return Executors.newCachedThreadPool(new NamedThreadFactory("scouter-io-"));
+    }
+
+    /**
+     * Build an executor starting a virtual thread per task, looked up by reflection so the code still runs on
+     * the JVMs without virtual threads
+     *
+     * @return New executor, null if the JVM does not provide virtual threads
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Name the threads of a pool, which are daemon threads
+     */
+    static class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        private final String prefix;
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.atos.scouter.TikaTools;
+
+import org.atos.scouter.metrics.MetricsLogger;
+import org.atos.scouter.util.nlp.OpenNLP;
+import org.atos.scouter.util.nlp.OpenNLPPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Walk a directory tree and extract every PDF found with a bounded pool of worker threads.
+ * Each worker borrows an {@link OpenNLP} from {@link OpenNLPPool} per document and pushes its results
+ * in a bounded queue drained by the calling thread.
+ *
+ * @version 1.0
+ */
+public class DirectoryExtracter {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryExtracter.class);
+    /**
+     * Marker put in the output queue once every document has been extracted
+     */
+    private static final ExtractionResult END = new ExtractionResult("", 0, Collections.emptyList());
+    /**
+     * Extension of the documents to extract
+     */
+    private static final String PDF_EXTENSION = ".pdf";
+    /**
+     * Number of worker threads
+     */
+    private final int workers;
+    /**
+     * Capacity of the pending documents queue and of the output queue
+     */
+    private final int queueSize;
+    /**
+     * Extracter shared by the workers
+     */
+    private final PdfExtracter extracter;
+
+    /**
+     * Build a new extracter
+     *
+     * @param extracter Extracter shared by the workers
+     * @param workers   Number of worker threads
+     * @param queueSize Capacity of the pending documents queue and of the output queue
+     * @throws NullPointerException     if extracter is null
+     * @throws IllegalArgumentException if workers or queueSize is not positive
+     */
+    public DirectoryExtracter(PdfExtracter extracter, int workers, int queueSize) {
+        if (workers <= 0 || queueSize <= 0) {
+            throw new IllegalArgumentException("Workers and queue size must be positive");
+        }
+        this.extracter = Objects.requireNonNull(extracter);
+        this.workers = workers;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Extract every PDF below root. Files are discovered by a walker thread and handed to the workers,
+     * the walker blocks when the workers are late and the workers block when the consumer is late.
+     *
+     * @param root     Directory to walk
+     * @param consumer Called on the calling thread for each extracted document
+     * @return Number of documents extracted
+     * @throws NullPointerException if root or consumer is null
+     * @throws IOException          if root cannot be walked
+     */
+    public long extractAll(Path root, Consumer<ExtractionResult> consumer) throws IOException {
+        Objects.requireNonNull(root);
+        Objects.requireNonNull(consumer);
+        BlockingQueue<ExtractionResult> results = new ArrayBlockingQueue<>(queueSize);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new WorkerThreadFactory(), new BlockingPolicy());
+        MetricsLogger metrics = MetricsLogger.getMetricsLogger();
+        metrics.gauge("queue.depth", () -> executor.getQueue().size(), "queue", "documents");
+        metrics.gauge("queue.depth", results::size, "queue", "results");
+        AtomicReference<IOException> walkError = new AtomicReference<>();
+        Thread walker = new Thread(() -> walk(root, executor, results, walkError), "scouter-walker");
+        walker.start();
+        long count = 0;
+        try {
+            for (ExtractionResult result = results.take(); result != END; result = results.take()) {
+                consumer.accept(result);
+                count++;
+            }
+            walker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Extraction of " + root + " interrupted");
+        } finally {
+            walker.interrupt();
+            executor.shutdownNow();
+        }
+        if (walkError.get() != null) {
+            throw walkError.get();
+        }
+        return count;
+    }
+
+    /**
+     * Walk root and submit each PDF to executor, then wait for the workers and close the output queue
+     *
+     * @param root      Directory to walk
+     * @param executor  Workers pool
+     * @param results   Output queue
+     * @param walkError Store the error which stopped the walk
+     */
+    private void walk(Path root, ThreadPoolExecutor executor, BlockingQueue<ExtractionResult> results,
+                      AtomicReference<IOException> walkError) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && file.getFileName().toString().toLowerCase().endsWith(PDF_EXTENSION)) {
+                        executor.execute(() -> extract(file, results));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    LOGGER.warn("Cannot visit " + file + " : " + e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            walkError.set(e);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Walk of " + root + " stopped : " + e.getMessage());
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            results.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Extract a document with the shared {@link PdfExtracter}
+     *
+     * @param file    Document to extract
+     * @param results Output queue
+     */
+    private void extract(Path file, BlockingQueue<ExtractionResult> results) {
+        try {
+            results.put(extracter.extractText(file.toString()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Cannot extract " + file + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Block the submitting thread until the workers queue has room
+     */
+    private static class BlockingPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Workers pool is shut down");
+            }
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(e);
+            }
+        }
+    }
+
+    /**
+     * Name the worker threads
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "scouter-worker-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.atos.scouter.TikaTools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent manifest of the documents already extracted, keyed by path with their size, modification time
+ * and content hash. A document whose size and modification time did not change is skipped without being read,
+ * a document whose size or modification time changed is hashed and skipped if its content is the same.
+ * The manifest is an append-only file, one line per extracted document, compacted when closed.
+ *
+ * @version 1.0
+ */
+public class DocumentManifest implements Closeable {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentManifest.class);
+    /**
+     * Separator of the fields of a line
+     */
+    private static final String SEPARATOR = "\t";
+    /**
+     * File storing the manifest
+     */
+    private final Path file;
+    /**
+     * Last state recorded for each path
+     */
+    private final Map<String, DocumentState> states = new ConcurrentHashMap<>();
+    /**
+     * Append the states recorded during this run
+     */
+    private final BufferedWriter writer;
+
+    /**
+     * Open a manifest, creating its file if needed
+     *
+     * @param file File storing the manifest
+     * @throws NullPointerException if file is null
+     * @throws IOException          if the manifest cannot be read or written
+     */
+    public DocumentManifest(Path file) throws IOException {
+        this.file = Objects.requireNonNull(file);
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(SEPARATOR, 4);
+                    if (fields.length == 4) {
+                        states.put(fields[3], new DocumentState(fields[3], Long.parseLong(fields[1]),
+                                Long.parseLong(fields[2]), fields[0], false));
+                    }
+                }
+            }
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        LOGGER.info(states.size() + " documents in manifest " + file);
+    }
+
+    /**
+     * Compare a document with its recorded state
+     *
+     * @param document Document to check
+     * @return Current state of the document, see {@link DocumentState#isUnchanged()}
+     * @throws NullPointerException if document is null
+     * @throws IOException          if the document cannot be read
+     */
+    public DocumentState check(Path document) throws IOException {
+        Objects.requireNonNull(document);
+        String path = document.toAbsolutePath().toString();
+        BasicFileAttributes attributes = Files.readAttributes(document, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        DocumentState recorded = states.get(path);
+        if (recorded != null && recorded.size == size && recorded.modified == modified) {
+            return new DocumentState(path, size, modified, recorded.hash, true);
+        }
+        String hash = hash(document);
+        return new DocumentState(path, size, modified, hash, recorded != null && recorded.hash.equals(hash));
+    }
+
+    /**
+     * Record the state of a document once it has been extracted, or once found unchanged with a new
+     * modification time
+     *
+     * @param state State returned by {@link DocumentManifest#check(Path)}
+     * @throws NullPointerException if state is null
+     * @throws IOException          if the manifest cannot be written
+     */
+    public void record(DocumentState state) throws IOException {
+        Objects.requireNonNull(state);
+        DocumentState previous = states.put(state.path, state);
+        if (previous != null && previous.size == state.size && previous.modified == state.modified
+                && previous.hash.equals(state.hash)) {
+            return;
+        }
+        synchronized (writer) {
+            writer.write(state.toLine());
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    /**
+     * Close the manifest and rewrite its file with only the last state of each document
+     *
+     * @throws IOException if the manifest cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (DocumentState state : states.values()) {
+                out.write(state.toLine());
+                out.newLine();
+            }
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Compute the SHA-256 of a document
+     *
+     * @param document Document to hash
+     * @return Hash in hexadecimal
+     * @throws IOException if the document cannot be read
+     */
+    private static String hash(Path document) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream stream = Files.newInputStream(document)) {
+            for (int read = stream.read(buffer); read != -1; read = stream.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * State of a document : path, size, modification time and content hash
+     */
+    public static class DocumentState {
+        private final String path;
+        private final long size;
+        private final long modified;
+        private final String hash;
+        private final boolean unchanged;
+
+        private DocumentState(String path, long size, long modified, String hash, boolean unchanged) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.unchanged = unchanged;
+        }
+
+        /**
+         * Tell if the document was already extracted with the same content
+         *
+         * @return True if the document can be skipped
+         */
+        public boolean isUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * Get content hash of the document
+         *
+         * @return SHA-256 in hexadecimal
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        private String toLine() {
+            return hash + SEPARATOR + size + SEPARATOR + modified + SEPARATOR + path;
+        }
+    }
+}
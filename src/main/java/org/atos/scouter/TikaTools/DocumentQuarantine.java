@@ -0,0 +1,125 @@
+package org.atos.scouter.TikaTools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent list of the documents which timed out or broke the parser, keyed by path with their size and
+ * modification time. A quarantined document is not parsed again on the next runs until its size or modification
+ * time changes. The list is an append-only file, one line per quarantined document with the reason.
+ *
+ * @version 1.0
+ */
+public class DocumentQuarantine implements Closeable {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentQuarantine.class);
+    /**
+     * Separator of the fields of a line
+     */
+    private static final String SEPARATOR = "\t";
+    /**
+     * Size and modification time of each quarantined path
+     */
+    private final Map<String, long[]> documents = new ConcurrentHashMap<>();
+    /**
+     * Append the documents quarantined during this run
+     */
+    private final BufferedWriter writer;
+
+    /**
+     * Open a quarantine list, creating its file if needed
+     *
+     * @param file File storing the list
+     * @throws NullPointerException if file is null
+     * @throws IOException          if the list cannot be read or written
+     */
+    public DocumentQuarantine(Path file) throws IOException {
+        Objects.requireNonNull(file);
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(SEPARATOR, 4);
+                    if (fields.length == 4) {
+                        documents.put(fields[3], new long[]{Long.parseLong(fields[0]), Long.parseLong(fields[1])});
+                    }
+                }
+            }
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        LOGGER.info(documents.size() + " documents in quarantine " + file);
+    }
+
+    /**
+     * Tell if a document is quarantined with its current content
+     *
+     * @param document Document to check
+     * @return True if the document was quarantined and did not change since
+     * @throws NullPointerException if document is null
+     * @throws IOException          if the attributes of the document cannot be read
+     */
+    public boolean contains(Path document) throws IOException {
+        long[] recorded = documents.get(document.toAbsolutePath().toString());
+        if (recorded == null) {
+            return false;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(document, BasicFileAttributes.class);
+        return recorded[0] == attributes.size() && recorded[1] == attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Quarantine a document in its current state
+     *
+     * @param document Document to quarantine
+     * @param reason   Why the document is quarantined, logged and written in the list
+     * @throws NullPointerException if document or reason is null
+     * @throws IOException          if the list cannot be written
+     */
+    public void add(Path document, String reason) throws IOException {
+        Objects.requireNonNull(reason);
+        String path = document.toAbsolutePath().toString();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(document, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        documents.put(path, new long[]{size, modified});
+        LOGGER.warn(path + " quarantined : " + reason);
+        synchronized (writer) {
+            writer.write(size + SEPARATOR + modified + SEPARATOR + reason.replaceAll("\\s+", " ") + SEPARATOR + path);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    /**
+     * Close the list
+     *
+     * @throws IOException if the list cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.atos.scouter.TikaTools;
+
+import org.atos.scouter.util.nlp.NamedEntity;
+import org.atos.scouter.util.nlp.OpenNLP;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Result of the extraction of one document by {@link PdfExtracter}
+ *
+ * @version 1.0
+ */
+public class ExtractionResult {
+    /**
+     * Path of the extracted document
+     */
+    private final String path;
+    /**
+     * Number of characters extracted from the document
+     */
+    private final long characters;
+    /**
+     * Named entities found in the document
+     */
+    private final List<NamedEntity> entities;
+    /**
+     * Time spent in each step of the extraction
+     */
+    private final ExtractionTimings timings;
+    /**
+     * The document was skipped because unchanged since its last extraction
+     */
+    private final boolean skipped;
+    /**
+     * Normalized text of the document, null unless kept for the index
+     */
+    private final String text;
+    /**
+     * Language of the document, null if unknown
+     */
+    private final String language;
+    /**
+     * State of the document to record in the manifest once the result is written, null without manifest
+     */
+    private final DocumentManifest.DocumentState manifestState;
+
+    /**
+     * Build the result of an extraction
+     *
+     * @param path       Path of the extracted document
+     * @param characters Number of characters extracted
+     * @param entities   Named entities found in the document
+     * @throws NullPointerException if path or entities is null
+     */
+    public ExtractionResult(String path, long characters, List<NamedEntity> entities) {
+        this(path, characters, Collections.unmodifiableList(new ArrayList<>(Objects.requireNonNull(entities))),
+                ExtractionTimings.ZERO, false, null, null, null);
+    }
+
+    private ExtractionResult(String path, long characters, List<NamedEntity> entities, ExtractionTimings timings,
+                             boolean skipped, String text, String language,
+                             DocumentManifest.DocumentState manifestState) {
+        this.path = Objects.requireNonNull(path);
+        this.characters = characters;
+        this.entities = entities;
+        this.timings = timings;
+        this.skipped = skipped;
+        this.text = text;
+        this.language = language;
+        this.manifestState = manifestState;
+    }
+
+    /**
+     * Build the result of a document skipped because unchanged since its last extraction
+     *
+     * @param path Path of the document
+     * @return Result without entities
+     * @throws NullPointerException if path is null
+     * @see DocumentManifest
+     */
+    public static ExtractionResult skipped(String path) {
+        return new ExtractionResult(path, 0, Collections.emptyList(), ExtractionTimings.ZERO, true, null, null,
+                null);
+    }
+
+    /**
+     * Copy this result with the timings of its extraction
+     *
+     * @param timings Time spent in each step of the extraction
+     * @return Result with timings
+     * @throws NullPointerException if timings is null
+     */
+    public ExtractionResult withTimings(ExtractionTimings timings) {
+        return new ExtractionResult(path, characters, entities, Objects.requireNonNull(timings), skipped, text,
+                language, manifestState);
+    }
+
+    /**
+     * Copy this result with the normalized text of the document
+     *
+     * @param text Normalized text, the entity offsets point in it
+     * @return Result with text
+     * @throws NullPointerException if text is null
+     */
+    public ExtractionResult withText(String text) {
+        return new ExtractionResult(path, characters, entities, timings, skipped, Objects.requireNonNull(text),
+                language, manifestState);
+    }
+
+    /**
+     * Copy this result with the language of the document
+     *
+     * @param language ISO 639-1 code of the language
+     * @return Result with language
+     * @throws NullPointerException if language is null
+     * @see org.atos.scouter.util.nlp.LanguageRouter
+     */
+    public ExtractionResult withLanguage(String language) {
+        return new ExtractionResult(path, characters, entities, timings, skipped, text,
+                Objects.requireNonNull(language), manifestState);
+    }
+
+    /**
+     * Copy this result with the state of its document, to record in the manifest once the result is written
+     *
+     * @param manifestState State returned by {@link DocumentManifest#check(java.nio.file.Path)}
+     * @return Result with manifest state
+     * @throws NullPointerException if manifestState is null
+     */
+    public ExtractionResult withManifestState(DocumentManifest.DocumentState manifestState) {
+        return new ExtractionResult(path, characters, entities, timings, skipped, text, language,
+                Objects.requireNonNull(manifestState));
+    }
+
+    /**
+     * Get state of the document to record in the manifest once the result is written
+     *
+     * @return {@link ExtractionResult#manifestState}, null without manifest
+     * @see DocumentManifest#record(DocumentManifest.DocumentState)
+     */
+    public DocumentManifest.DocumentState getManifestState() {
+        return manifestState;
+    }
+
+    /**
+     * Get language of the document
+     *
+     * @return {@link ExtractionResult#language}, null if unknown
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * Get normalized text of the document
+     *
+     * @return {@link ExtractionResult#text}, null if the text was not kept
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Get path of the extracted document
+     *
+     * @return {@link ExtractionResult#path}
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Get number of characters extracted from the document
+     *
+     * @return {@link ExtractionResult#characters}
+     */
+    public long getCharacters() {
+        return characters;
+    }
+
+    /**
+     * Get named entities found in the document
+     *
+     * @return {@link ExtractionResult#entities}
+     */
+    public List<NamedEntity> getEntities() {
+        return entities;
+    }
+
+    /**
+     * Get time spent in each step of the extraction
+     *
+     * @return {@link ExtractionResult#timings}
+     */
+    public ExtractionTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * Tell if the document was skipped because unchanged since its last extraction
+     *
+     * @return {@link ExtractionResult#skipped}
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Get text of the entities of one type
+     *
+     * @param type Type of entity
+     * @return Text of each entity of this type, in document order
+     * @throws NullPointerException if type is null
+     */
+    public List<String> getEntities(OpenNLP.nerOptions type) {
+        Objects.requireNonNull(type);
+        return entities.stream().filter(e -> e.getType() == type).map(NamedEntity::getText).collect(Collectors.toList());
+    }
+}
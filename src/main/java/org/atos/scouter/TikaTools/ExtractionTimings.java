@@ -0,0 +1,101 @@
+package org.atos.scouter.TikaTools;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent in each step of the extraction of a document, in nanoseconds
+ *
+ * @version 1.0
+ */
+public class ExtractionTimings {
+    /**
+     * No time spent, neutral element of {@link ExtractionTimings#sum(ExtractionTimings)}
+     */
+    public static final ExtractionTimings ZERO = new ExtractionTimings(0, 0, 0, 0);
+    /**
+     * Time to prepare the parse : input stream, handlers, NLP instance
+     */
+    private final long setup;
+    /**
+     * Time spent in Tika, NLP excluded
+     */
+    private final long parse;
+    /**
+     * Time spent in NLP while Tika streams the text
+     */
+    private final long nlp;
+    /**
+     * Time to build the result once the parse is done
+     */
+    private final long post;
+
+    /**
+     * Build new timings
+     *
+     * @param setup Time to prepare the parse
+     * @param parse Time spent in Tika, NLP excluded
+     * @param nlp   Time spent in NLP
+     * @param post  Time to build the result
+     */
+    public ExtractionTimings(long setup, long parse, long nlp, long post) {
+        this.setup = setup;
+        this.parse = parse;
+        this.nlp = nlp;
+        this.post = post;
+    }
+
+    /**
+     * Add two timings, to aggregate the timings of several documents
+     *
+     * @param other Timings to add
+     * @return Sum of this and other
+     * @throws NullPointerException if other is null
+     */
+    public ExtractionTimings sum(ExtractionTimings other) {
+        Objects.requireNonNull(other);
+        return new ExtractionTimings(setup + other.setup, parse + other.parse, nlp + other.nlp, post + other.post);
+    }
+
+    /**
+     * Get time to prepare the parse
+     *
+     * @return {@link ExtractionTimings#setup}
+     */
+    public long getSetup() {
+        return setup;
+    }
+
+    /**
+     * Get time spent in Tika, NLP excluded
+     *
+     * @return {@link ExtractionTimings#parse}
+     */
+    public long getParse() {
+        return parse;
+    }
+
+    /**
+     * Get time spent in NLP
+     *
+     * @return {@link ExtractionTimings#nlp}
+     */
+    public long getNlp() {
+        return nlp;
+    }
+
+    /**
+     * Get time to build the result
+     *
+     * @return {@link ExtractionTimings#post}
+     */
+    public long getPost() {
+        return post;
+    }
+
+    @Override
+    public String toString() {
+        return "setup " + TimeUnit.NANOSECONDS.toMillis(setup) + " ms, parse " + TimeUnit.NANOSECONDS.toMillis(parse)
+                + " ms, nlp " + TimeUnit.NANOSECONDS.toMillis(nlp) + " ms, post " + TimeUnit.NANOSECONDS.toMillis(post) + " ms";
+    }
+}
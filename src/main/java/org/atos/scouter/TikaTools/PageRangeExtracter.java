@@ -0,0 +1,515 @@
+package org.atos.scouter.TikaTools;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.atos.scouter.util.nlp.LanguageRouter;
+import org.atos.scouter.util.nlp.NamedEntity;
+import org.atos.scouter.util.nlp.OpenNLP;
+import org.atos.scouter.util.nlp.OpenNLPPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Extract a large PDF by page ranges in parallel, so one big document uses every core instead of one.
+ * The pages are split in halves on a {@link ForkJoinPool} until a range holds at most rangePages pages;
+ * each range takes a {@link PDDocument} of its own from a {@link SplitDocument}, PDFBox documents are not thread
+ * safe, strips its pages one by one and finds their entities with an {@link OpenNLP} borrowed for the range.
+ * A document is loaded at most once per thread working on it, the load counting its pages included. The pages are merged back in page order,
+ * each entity keeping the number of its page. The first range is stripped before the split and the language of
+ * the document detected on its first pages, so every range uses the same models; the first range is then analyzed
+ * from the text already stripped, while the other ranges run.
+ * Only the PDF of at least minSize bytes and minPages pages are split, the others are cheaper to extract whole.
+ * The parser clock of the budget runs while a page is loaded or stripped, and the characters stripped count
+ * against pdf.max.characters : the ranges stop once it is reached and the text is cut at the cap in page order.
+ *
+ * @version 1.0
+ */
+public class PageRangeExtracter {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageRangeExtracter.class);
+    /**
+     * Main memory used by each open document before PDFBox spills to a scratch file
+     */
+    private static final long DOCUMENT_MEMORY = 64L * 1024 * 1024;
+    /**
+     * Extension of the files which may be split
+     */
+    private static final String PDF_EXTENSION = ".pdf";
+    /**
+     * Maximum number of pages read to detect the language of a document
+     */
+    private static final int LANGUAGE_PAGES = 3;
+    /**
+     * Pool of {@link OpenNLP} instances, one borrowed per range
+     */
+    private final OpenNLPPool nlpPool = OpenNLPPool.getInstance();
+    /**
+     * Run the ranges
+     */
+    private final ForkJoinPool forkJoinPool;
+    /**
+     * Maximum number of pages of a range
+     */
+    private final int rangePages;
+    /**
+     * Minimum number of pages of a split document, 0 to never split
+     */
+    private final int minPages;
+    /**
+     * Minimum size in bytes of a split document
+     */
+    private final long minSize;
+
+    /**
+     * Build a new extracter
+     *
+     * @param threads    Number of threads extracting the ranges
+     * @param rangePages Maximum number of pages of a range
+     * @param minPages   Minimum number of pages of a split document, 0 to never split
+     * @param minSize    Minimum size in bytes of a split document
+     * @throws IllegalArgumentException if threads or rangePages is not positive, or minPages or minSize negative
+     */
+    public PageRangeExtracter(int threads, int rangePages, int minPages, long minSize) {
+        if (threads <= 0 || rangePages <= 0 || minPages < 0 || minSize < 0) {
+            throw new IllegalArgumentException("Threads and range size must be positive, thresholds not negative");
+        }
+        this.forkJoinPool = new ForkJoinPool(threads);
+        this.rangePages = rangePages;
+        this.minPages = minPages;
+        this.minSize = minSize;
+    }
+
+    /**
+     * Load a document worth splitting, the loaded document is then reused by one of its ranges
+     *
+     * @param path   Document
+     * @param budget Budget of the document, its parser clock runs while the document is loaded
+     * @return Document to extract, null if it is not a PDF or is too small to be split
+     * @throws NullPointerException if path or budget is null
+     * @throws IOException          if the document cannot be read
+     */
+    SplitDocument open(Path path, ParseGuard.Budget budget) throws IOException {
+        Objects.requireNonNull(path);
+        Objects.requireNonNull(budget);
+        if (minPages == 0 || !path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(PDF_EXTENSION)
+                || Files.size(path) < minSize) {
+            return null;
+        }
+        PDDocument document;
+        int pages;
+        budget.enterParser();
+        try {
+            document = load(path);
+            pages = document.getNumberOfPages();
+        } finally {
+            budget.leaveParser();
+        }
+        if (pages < minPages) {
+            document.close();
+            return null;
+        }
+        return new SplitDocument(path, pages, document);
+    }
+
+    /**
+     * Extract the pages of a document in parallel
+     *
+     * @param document  Document, closed by the caller
+     * @param pages     Number of pages to extract, at most those of the document
+     * @param chunkSize Size in characters of the chunks handed to {@link OpenNLP}
+     * @param types     Types of entity to find, among those with a model in the language of the document
+     * @param keepText  Keep the normalized text in the result
+     * @param budget    Budget of the document, the ranges stop at the next page once the parse is abandoned or
+     *                  maxCharacters characters were stripped
+     * @return Result of the extraction, the parse and NLP times are summed over the threads
+     * @throws NullPointerException if document, types or budget is null
+     * @throws IOException          if the document cannot be read or the parse is abandoned
+     */
+    ExtractionResult extract(SplitDocument document, int pages, int chunkSize, Set<OpenNLP.nerOptions> types,
+                             boolean keepText, ParseGuard.Budget budget) throws IOException {
+        Objects.requireNonNull(document);
+        Objects.requireNonNull(types);
+        Objects.requireNonNull(budget);
+        Path path = document.path;
+        long start = System.nanoTime();
+        LongAdder parseTime = new LongAdder();
+        LongAdder nlpTime = new LongAdder();
+        int firstLast = Math.min(pages, rangePages);
+        List<String> firstTexts = strip(document, firstLast, budget);
+        String language = LanguageRouter.detect(
+                String.join("\n", firstTexts.subList(0, Math.min(firstTexts.size(), LANGUAGE_PAGES))));
+        Set<OpenNLP.nerOptions> documentTypes = LanguageRouter.getNerTypes(language, types);
+        parseTime.add(System.nanoTime() - start);
+        RangeTask head = new RangeTask(document, 1, firstTexts.size(), chunkSize, language, documentTypes, keepText,
+                budget, parseTime, nlpTime, firstTexts);
+        // Nothing is read after the first range if it reached the cap of characters
+        RangeTask tail = firstLast == pages || firstTexts.size() < firstLast ? null : new RangeTask(document,
+                firstLast + 1, pages, chunkSize, language, documentTypes, keepText, budget, parseTime, nlpTime, null);
+        List<PageText> texts;
+        try {
+            if (tail != null) {
+                forkJoinPool.execute(tail);
+            }
+            texts = new ArrayList<>(forkJoinPool.invoke(head));
+            if (tail != null) {
+                texts.addAll(tail.join());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            // The document is closed by the caller, wait for the ranges still using it
+            if (tail != null) {
+                tail.cancel(false);
+                tail.quietlyJoin();
+            }
+        }
+        long merge = System.nanoTime();
+        List<NamedEntity> entities = new ArrayList<>();
+        StringBuilder documentText = keepText ? new StringBuilder() : null;
+        int maxCharacters = budget.getMaxCharacters() == 0 ? Integer.MAX_VALUE : budget.getMaxCharacters();
+        int offset = 0;
+        int page = 1;
+        // The ranges stopped at the cap may leave pages out, the text ends at the first one missing
+        for (PageText text : texts) {
+            if (text.page != page++ || offset >= maxCharacters) {
+                break;
+            }
+            int length = Math.min(text.length, maxCharacters - offset);
+            for (NamedEntity entity : text.entities) {
+                if (entity.getEnd() <= length) {
+                    entities.add(entity.relocate(offset));
+                }
+            }
+            if (documentText != null) {
+                PdfExtracter.appendChunk(documentText, text.text, offset);
+                documentText.setLength(Math.min(documentText.length(), offset + length));
+            }
+            offset += length + 1;
+        }
+        ExtractionResult result = new ExtractionResult(path.toString(), Math.max(0, offset - 1), entities);
+        if (documentText != null) {
+            result = result.withText(documentText.toString());
+        }
+        result = result.withLanguage(language);
+        LOGGER.debug(path + " : " + pages + " pages extracted by ranges of " + rangePages + " in "
+                + (merge - start) / 1_000_000 + " ms");
+        return result.withTimings(new ExtractionTimings(0, parseTime.sum(), nlpTime.sum(), System.nanoTime() - merge));
+    }
+
+    /**
+     * Strip the text of the first pages of a document, page by page
+     *
+     * @param document Document
+     * @param last     Number of the last page to strip
+     * @param budget   Budget of the document
+     * @return Text of each page
+     * @throws IOException if the document cannot be read or the parse is abandoned
+     */
+    private static List<String> strip(SplitDocument document, int last, ParseGuard.Budget budget)
+            throws IOException {
+        List<String> texts = new ArrayList<>(last);
+        PDDocument loaded = document.take(budget);
+        try {
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int page = 1; page <= last; page++) {
+                String text = stripPage(document, stripper, loaded, page, budget);
+                texts.add(text);
+                if (!budget.addCharacters(text.length())) {
+                    break;
+                }
+            }
+        } finally {
+            document.give(loaded);
+        }
+        return texts;
+    }
+
+    /**
+     * Strip the text of one page, the parser clock of the budget running meanwhile
+     *
+     * @param document Document
+     * @param stripper Stripper used by the calling thread
+     * @param loaded   Instance of the document taken by the calling thread
+     * @param page     Number of the page
+     * @param budget   Budget of the document
+     * @return Text of the page
+     * @throws IOException if the page cannot be read or the parse is abandoned
+     */
+    private static String stripPage(SplitDocument document, PDFTextStripper stripper, PDDocument loaded, int page,
+                                    ParseGuard.Budget budget) throws IOException {
+        if (budget.isAbandoned()) {
+            throw new IOException("Parse of " + document.path + " abandoned");
+        }
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        budget.enterParser();
+        try {
+            return stripper.getText(loaded);
+        } finally {
+            budget.leaveParser();
+        }
+    }
+
+    /**
+     * Load a document, spilling to a scratch file past {@link PageRangeExtracter#DOCUMENT_MEMORY}
+     *
+     * @param path Document
+     * @return Loaded document
+     * @throws IOException if the document cannot be read
+     */
+    private static PDDocument load(Path path) throws IOException {
+        return PDDocument.load(path.toFile(), MemoryUsageSetting.setupMixed(DOCUMENT_MEMORY));
+    }
+
+    /**
+     * PDF split by page ranges, with the {@link PDDocument} instances loaded for it. A range takes an instance
+     * while it strips its pages and gives it back, so a document is loaded at most once per thread working on it
+     */
+    static final class SplitDocument implements Closeable {
+        /**
+         * Path of the document
+         */
+        private final Path path;
+        /**
+         * Number of pages of the document
+         */
+        private final int pages;
+        /**
+         * Loaded instances not used by a range
+         */
+        private final ConcurrentLinkedDeque<PDDocument> idle = new ConcurrentLinkedDeque<>();
+        /**
+         * Every loaded instance, closed with the document
+         */
+        private final ConcurrentLinkedDeque<PDDocument> loaded = new ConcurrentLinkedDeque<>();
+
+        private SplitDocument(Path path, int pages, PDDocument document) {
+            this.path = path;
+            this.pages = pages;
+            idle.add(document);
+            loaded.add(document);
+        }
+
+        /**
+         * Get number of pages of the document
+         *
+         * @return Number of pages
+         */
+        int getPages() {
+            return pages;
+        }
+
+        /**
+         * Take an idle instance, loading a new one if every instance is used
+         *
+         * @param budget Budget of the document, its parser clock runs while an instance is loaded
+         * @return Instance used by the caller only, until given back
+         * @throws IOException if the document cannot be read
+         */
+        private PDDocument take(ParseGuard.Budget budget) throws IOException {
+            PDDocument document = idle.pollFirst();
+            if (document == null) {
+                budget.enterParser();
+                try {
+                    document = load(path);
+                } finally {
+                    budget.leaveParser();
+                }
+                loaded.add(document);
+            }
+            return document;
+        }
+
+        /**
+         * Give back an instance taken by {@link SplitDocument#take(ParseGuard.Budget)}
+         *
+         * @param document Instance no longer used
+         */
+        private void give(PDDocument document) {
+            idle.addFirst(document);
+        }
+
+        /**
+         * Close every loaded instance
+         *
+         * @throws IOException if an instance cannot be closed
+         */
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            PDDocument document;
+            while ((document = loaded.pollFirst()) != null) {
+                try {
+                    document.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            idle.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Text and entities of one page
+     */
+    private static final class PageText {
+        /**
+         * Number of the page
+         */
+        private final int page;
+        /**
+         * Length of the normalized text of the page
+         */
+        private final int length;
+        /**
+         * Entities of the page, offsets relative to the page
+         */
+        private final List<NamedEntity> entities;
+        /**
+         * Normalized text of the page, null unless kept
+         */
+        private final String text;
+
+        private PageText(int page, int length, List<NamedEntity> entities, String text) {
+            this.page = page;
+            this.length = length;
+            this.entities = entities;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Extract the pages first to last, splitting the range while it is larger than rangePages
+     */
+    private final class RangeTask extends RecursiveTask<List<PageText>> {
+        private final SplitDocument document;
+        private final int first;
+        private final int last;
+        private final int chunkSize;
+        private final String language;
+        private final Set<OpenNLP.nerOptions> types;
+        private final boolean keepText;
+        private final ParseGuard.Budget budget;
+        private final LongAdder parseTime;
+        private final LongAdder nlpTime;
+        /**
+         * Text of each page of the range when already stripped, null to strip the pages
+         */
+        private final List<String> stripped;
+
+        private RangeTask(SplitDocument document, int first, int last, int chunkSize, String language,
+                          Set<OpenNLP.nerOptions> types, boolean keepText, ParseGuard.Budget budget,
+                          LongAdder parseTime, LongAdder nlpTime, List<String> stripped) {
+            this.document = document;
+            this.first = first;
+            this.last = last;
+            this.chunkSize = chunkSize;
+            this.language = language;
+            this.types = types;
+            this.keepText = keepText;
+            this.budget = budget;
+            this.parseTime = parseTime;
+            this.nlpTime = nlpTime;
+            this.stripped = stripped;
+        }
+
+        @Override
+        protected List<PageText> compute() {
+            if (last - first < rangePages || stripped != null) {
+                try {
+                    return extractRange();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int middle = (first + last) >>> 1;
+            RangeTask left = new RangeTask(document, first, middle, chunkSize, language, types, keepText, budget,
+                    parseTime, nlpTime, null);
+            RangeTask right = new RangeTask(document, middle + 1, last, chunkSize, language, types, keepText, budget,
+                    parseTime, nlpTime, null);
+            left.fork();
+            List<PageText> texts = new ArrayList<>(right.compute());
+            texts.addAll(0, left.join());
+            return texts;
+        }
+
+        private List<PageText> extractRange() throws IOException {
+            List<PageText> texts = new ArrayList<>(last - first + 1);
+            long parseStart = System.nanoTime();
+            PDDocument loaded = stripped == null ? document.take(budget) : null;
+            try {
+                PDFTextStripper stripper = loaded == null ? null : new PDFTextStripper();
+                // A language without models has no type of entity, its pages are only stripped
+                OpenNLP openNLP = types.isEmpty() ? null : nlpPool.borrow(language);
+                try {
+                    for (int page = first; page <= last; page++) {
+                        // The characters of the pages stripped beforehand are already counted
+                        String text = stripper == null ? stripped.get(page - first)
+                                : stripPage(document, stripper, loaded, page, budget);
+                        boolean capped = stripper != null && !budget.addCharacters(text.length());
+                        long nlpStart = System.nanoTime();
+                        texts.add(analyze(openNLP, page, text));
+                        nlpTime.add(System.nanoTime() - nlpStart);
+                        parseTime.add(nlpStart - parseStart);
+                        parseStart = System.nanoTime();
+                        if (capped) {
+                            break;
+                        }
+                    }
+                } finally {
+                    if (openNLP != null) {
+                        nlpPool.release(openNLP);
+                    }
+                }
+            } finally {
+                if (loaded != null) {
+                    document.give(loaded);
+                }
+            }
+            return texts;
+        }
+
+        private PageText analyze(OpenNLP openNLP, int page, String text) {
+            List<NamedEntity> entities = new ArrayList<>();
+            StringBuilder pageText = keepText ? new StringBuilder() : null;
+            SentenceChunkHandler chunks = new SentenceChunkHandler(chunkSize, (chunk, offset) -> {
+                if (pageText != null) {
+                    PdfExtracter.appendChunk(pageText, chunk, offset);
+                }
+                if (openNLP == null) {
+                    return;
+                }
+                // Every range of the document shares the same instance
+                openNLP.startDocument(document);
+                for (NamedEntity entity : openNLP.findEntities(chunk, types)) {
+                    entities.add(entity.relocate(offset).onPage(page));
+                }
+            });
+            char[] characters = text.toCharArray();
+            chunks.characters(characters, 0, characters.length);
+            chunks.endDocument();
+            return new PageText(page, chunks.getLength(), entities, pageText == null ? null : pageText.toString());
+        }
+    }
+}
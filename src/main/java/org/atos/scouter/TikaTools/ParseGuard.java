@@ -0,0 +1,609 @@
+package org.atos.scouter.TikaTools;
+
+import com.google.common.base.Throwables;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.apache.tika.sax.WriteOutContentHandler;
+import org.atos.scouter.metrics.MetricsLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resource guards of the parse of a document : a timeout on the parser and caps on the characters and on the pages
+ * read. With a timeout, each parse runs on a parse thread of its own and the caller waits until the parser itself
+ * ran for the timeout, see {@link Budget#enterParser()} : the time spent in the chunk listeners, the NLP and the
+ * joins of its tasks is not counted, so a document is not failed because the NLP or the sink was slow. The caller
+ * still stops waiting once the parse took the ceiling of wall-clock time, whether or not the parser clock runs.
+ * The parse threads are virtual threads when the callers run on virtual threads, a fixed pool otherwise : a parse
+ * which found no free thread before the ceiling is refused, not quarantined. A parse over the timeout is abandoned :
+ * no chunk is handed to the listener
+ * anymore and its thread is interrupted. The thread only stops if the parser reaches its next SAX event or page;
+ * a parser stuck inside PDFBox, loading the document, repairing its cross-reference table or reading its fonts,
+ * keeps its thread until it returns, if ever. At most maxAbandoned such threads are left behind : past that,
+ * the documents are refused without being parsed until an abandoned parse ends.
+ * A document over a cap is truncated, the text read up to the cap is kept. A document whose parser timed out or
+ * failed is put in the {@link DocumentQuarantine}, the next runs skip it until it changes.
+ * The parser runs in this JVM : an {@link OutOfMemoryError} or a {@link StackOverflowError} it throws is reported
+ * as the failure of its document, but the heap is shared and the other threads may fail as well, it is not isolated.
+ *
+ * @version 1.0
+ */
+class ParseGuard {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParseGuard.class);
+    /**
+     * Documents which failed are quarantined, null to retry them on every run
+     */
+    private final DocumentQuarantine quarantine;
+    /**
+     * Run the parses, virtual threads or a fixed pool of daemon threads so an abandoned parse never holds the JVM
+     */
+    private final ExecutorService executor;
+    /**
+     * Number of abandoned parses still running
+     */
+    private final AtomicInteger abandoned = new AtomicInteger();
+    /**
+     * Registry of the metrics
+     */
+    private final MetricsLogger metrics = MetricsLogger.getMetricsLogger();
+    /**
+     * Time the parser may run on a document in nanoseconds, 0 to wait forever, follows the configuration. Only the
+     * time spent in the parser counts, see {@link Budget#enterParser()}
+     */
+    private volatile long timeout;
+    /**
+     * Wall-clock time after which the caller stops waiting for a parse in nanoseconds, even if its parser clock is
+     * stopped, at least the timeout, follows the configuration
+     */
+    private volatile long ceiling;
+    /**
+     * Maximum number of characters read from a document, 0 for no cap, follows the configuration
+     */
+    private volatile int maxCharacters;
+    /**
+     * Maximum number of pages read from a document, 0 for no cap, follows the configuration
+     */
+    private volatile int maxPages;
+    /**
+     * Maximum number of abandoned parses still running before the documents are refused, follows the configuration
+     */
+    private volatile int maxAbandoned = Integer.MAX_VALUE;
+
+    /**
+     * Build a guard without timeout nor caps, see {@link ParseGuard#configure(Duration, Duration, int, int, int)}
+     *
+     * @param quarantine     Documents which failed are quarantined, null to retry them on every run
+     * @param virtualThreads Parse on a virtual thread per document when the JVM provides them, for callers which
+     *                       run on virtual threads themselves
+     * @param threads        Number of parse threads otherwise, the callers parsing at once plus the abandoned parses
+     *                       allowed
+     * @throws IllegalArgumentException if threads is not positive
+     */
+    ParseGuard(DocumentQuarantine quarantine, boolean virtualThreads, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Parse threads must be positive");
+        }
+        this.quarantine = quarantine;
+        ExecutorService virtual = virtualThreads ? AsyncDirectoryExtracter.newVirtualThreadExecutor() : null;
+        this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(threads,
+                new AsyncDirectoryExtracter.NamedThreadFactory("scouter-parse-"));
+        metrics.gauge("parse.abandoned", abandoned::get);
+    }
+
+    /**
+     * Set the timeout and the caps, a parse uses the values read when it started
+     *
+     * @param timeout       Time the parser may run on a document, 0 to wait forever
+     * @param ceiling       Wall-clock time after which a parse is abandoned even if its parser clock is stopped,
+     *                      raised to the timeout if shorter
+     * @param maxCharacters Maximum number of characters read from a document, 0 for no cap
+     * @param maxPages      Maximum number of pages read from a document, 0 for no cap
+     * @param maxAbandoned  Maximum number of abandoned parses still running before the documents are refused
+     * @throws NullPointerException     if timeout or ceiling is null
+     * @throws IllegalArgumentException if an argument is negative or maxAbandoned is not positive
+     */
+    void configure(Duration timeout, Duration ceiling, int maxCharacters, int maxPages, int maxAbandoned) {
+        if (timeout.isNegative() || ceiling.isNegative() || maxCharacters < 0 || maxPages < 0 || maxAbandoned <= 0) {
+            throw new IllegalArgumentException("Timeout and caps must not be negative");
+        }
+        this.timeout = timeout.toNanos();
+        this.ceiling = Math.max(ceiling.toNanos(), this.timeout);
+        this.maxCharacters = maxCharacters;
+        this.maxPages = maxPages;
+        this.maxAbandoned = maxAbandoned;
+    }
+
+    /**
+     * Tell if a document is quarantined with its current content
+     *
+     * @param document Document to check
+     * @return True if the document must be skipped
+     * @throws NullPointerException if document is null
+     * @throws IOException          if the attributes of the document cannot be read
+     */
+    boolean isQuarantined(Path document) throws IOException {
+        Objects.requireNonNull(document);
+        if (quarantine == null || !quarantine.contains(document)) {
+            return false;
+        }
+        metrics.counter("documents.quarantined").increment();
+        LOGGER.debug(document + " skipped, quarantined");
+        return true;
+    }
+
+    /**
+     * Parse a document within the timeout and the caps
+     *
+     * @param name     Name of the document in the logs
+     * @param document File of the document, quarantined if the parser fails or times out, null for a stream
+     * @param task     Parse of the document, reading through the handlers of its {@link Budget} and timing its
+     *                 parser with {@link Budget#enterParser()}
+     * @param <T>      Type of the result
+     * @return Result of the task
+     * @throws NullPointerException if name or task is null
+     * @throws IOException          if the document cannot be read, the parser throws an {@link OutOfMemoryError} or
+     *                              a {@link StackOverflowError}, the parser runs longer than the timeout, the parse
+     *                              takes longer than the ceiling, or too many abandoned parses are still running
+     */
+    <T> T run(String name, Path document, Task<T> task) throws IOException {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(task);
+        Budget budget = new Budget(maxCharacters, maxPages);
+        long limit = timeout;
+        long wall = ceiling;
+        int stuck = abandoned.get();
+        if (limit > 0 && stuck >= maxAbandoned) {
+            // Not quarantined, the document is parsed again on the next run
+            metrics.counter("parse.refused").increment();
+            throw new IOException(name + " not parsed, " + stuck + " abandoned parses still running");
+        }
+        T result;
+        if (limit == 0) {
+            try {
+                result = task.parse(budget);
+            } catch (TikaException | SAXException | OutOfMemoryError | StackOverflowError e) {
+                throw failure(name, document, budget, e);
+            }
+        } else {
+            long deadline = System.nanoTime() + wall;
+            Future<T> future = executor.submit(() -> {
+                if (!budget.start()) {
+                    // Abandoned while waiting for a parse thread, nobody waits for the result anymore
+                    return null;
+                }
+                try {
+                    return task.parse(budget);
+                } finally {
+                    if (!budget.finish()) {
+                        abandoned.decrementAndGet();
+                    }
+                }
+            });
+            try {
+                result = await(future, budget, limit, deadline);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandon(budget, future);
+                throw new InterruptedIOException("Interrupted while parsing " + name);
+            } catch (TimeoutException e) {
+                if (!abandon(budget, future)) {
+                    // Not quarantined, the document is parsed again on the next run
+                    metrics.counter("parse.refused").increment();
+                    throw new IOException(name + " not parsed, no parse thread free for "
+                            + TimeUnit.NANOSECONDS.toMillis(wall) + " ms");
+                }
+                String reason = budget.getParserNanos() >= limit
+                        ? "parser ran more than " + TimeUnit.NANOSECONDS.toMillis(limit) + " ms"
+                        : "parse took more than " + TimeUnit.NANOSECONDS.toMillis(wall) + " ms";
+                quarantine(document, reason, "timeout");
+                throw new IOException(name + " " + reason);
+            } catch (ExecutionException e) {
+                throw failure(name, document, budget, e.getCause());
+            }
+        }
+        if (budget.truncation != null) {
+            metrics.counter("documents.truncated", "limit", budget.truncation).increment();
+            LOGGER.warn(name + " truncated, more than pdf.max." + budget.truncation);
+        }
+        return result;
+    }
+
+    /**
+     * Wait for a parse until its parser ran for limit, the time spent out of the parser is not counted, or until
+     * the deadline whatever the parser clock says
+     *
+     * @param future   Parse
+     * @param budget   Budget of the parse, timing its parser
+     * @param limit    Time the parser may run in nanoseconds
+     * @param deadline Time to stop waiting, from {@link System#nanoTime()}
+     * @param <T>      Type of the result
+     * @return Result of the parse
+     * @throws InterruptedException if the calling thread is interrupted
+     * @throws ExecutionException   if the parse failed
+     * @throws TimeoutException     if the parser ran for limit or the deadline passed
+     */
+    private static <T> T await(Future<T> future, Budget budget, long limit, long deadline)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        while (true) {
+            long remaining = Math.min(limit - budget.getParserNanos(), deadline - System.nanoTime());
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            try {
+                return future.get(remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // The parser clock stops outside the parser, check how long it actually ran
+            }
+        }
+    }
+
+    /**
+     * Abandon a parse : no chunk is handed to the listener once this returns and the parse thread is interrupted.
+     * The thread stops at the next SAX event or page, if the parser reaches one. A parse still waiting for a thread
+     * never starts and is not counted as abandoned
+     *
+     * @param budget Budget of the parse
+     * @param future Parse
+     * @return False if the parse had not started
+     */
+    private boolean abandon(Budget budget, Future<?> future) {
+        abandoned.incrementAndGet();
+        int previous = budget.abandon();
+        if (previous != Budget.RUNNING) {
+            abandoned.decrementAndGet();
+        }
+        future.cancel(true);
+        // Wait for the chunk being handed to the listener, if any
+        synchronized (budget) {
+            LOGGER.debug("Parse abandoned, " + abandoned.get() + " abandoned parses still running");
+        }
+        return previous != Budget.WAITING;
+    }
+
+    /**
+     * Quarantine a document which broke the parser and get the exception to throw. A failure of the listener,
+     * even reported by the parser, does not quarantine the document
+     *
+     * @param name     Name of the document in the logs
+     * @param document File of the document, null for a stream
+     * @param budget   Budget of the parse
+     * @param cause    Failure of the parse
+     * @return Exception to throw
+     */
+    private IOException failure(String name, Path document, Budget budget, Throwable cause) {
+        if (budget.listenerFailure != null) {
+            throw Throwables.propagate(budget.listenerFailure);
+        }
+        if (cause instanceof TikaException || cause instanceof SAXException) {
+            quarantine(document, cause.toString(), "parser");
+            throw Throwables.propagate(cause);
+        }
+        if (cause instanceof OutOfMemoryError || cause instanceof StackOverflowError) {
+            quarantine(document, cause.toString(), "resources");
+            return new IOException(name + " exhausted the parser : " + cause, cause);
+        }
+        Throwables.propagateIfPossible(cause, IOException.class);
+        throw new IllegalStateException(cause);
+    }
+
+    /**
+     * Count a failed parse and quarantine its document
+     *
+     * @param document File of the document, null for a stream
+     * @param reason   Why the parse failed
+     * @param cause    Tag of the failure in the metrics
+     */
+    private void quarantine(Path document, String reason, String cause) {
+        metrics.counter("parse.failures", "cause", cause).increment();
+        if (quarantine == null || document == null) {
+            return;
+        }
+        try {
+            quarantine.add(document, reason);
+        } catch (IOException e) {
+            LOGGER.error("Cannot quarantine " + document + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parse of a document
+     *
+     * @param <T> Type of the result
+     */
+    @FunctionalInterface
+    interface Task<T> {
+        /**
+         * Parse the document
+         *
+         * @param budget Caps of the document, see {@link Budget#decorate(ContentHandler)}, and clock of its parser,
+         *               see {@link Budget#enterParser()}
+         * @return Result of the parse
+         * @throws IOException   if the document cannot be read
+         * @throws TikaException if the document cannot be parsed
+         * @throws SAXException  if a handler fails
+         */
+        T parse(Budget budget) throws IOException, TikaException, SAXException;
+    }
+
+    /**
+     * Caps, state and parser clock of the parse of one document
+     */
+    static final class Budget {
+        private static final int WAITING = 0;
+        private static final int RUNNING = 1;
+        private static final int FINISHED = 2;
+        private static final int ABANDONED = 3;
+        /**
+         * Maximum number of characters read, 0 for no cap
+         */
+        private final int maxCharacters;
+        /**
+         * Maximum number of pages read, 0 for no cap
+         */
+        private final int maxPages;
+        /**
+         * WAITING for a parse thread, RUNNING, then FINISHED or ABANDONED
+         */
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        /**
+         * Stop the handlers at maxCharacters characters, null without cap
+         */
+        private WriteOutContentHandler writeLimit;
+        /**
+         * Characters read by the page ranges
+         */
+        private final AtomicLong characters = new AtomicLong();
+        /**
+         * Cap reached, characters or pages, null if the document was read whole
+         */
+        private volatile String truncation;
+        /**
+         * Failure of the listener given to {@link Budget#gate(SentenceChunkHandler.ChunkListener)}, null if none
+         */
+        private volatile RuntimeException listenerFailure;
+        /**
+         * Guards the parser clock, apart from this which is held while a chunk is handed to the listener
+         */
+        private final Object clock = new Object();
+        /**
+         * Number of threads running the parser
+         */
+        private int parsing;
+        /**
+         * Time the number of threads running the parser left 0
+         */
+        private long parsingSince;
+        /**
+         * Parser time before parsingSince
+         */
+        private long parsed;
+
+        private Budget(int maxCharacters, int maxPages) {
+            this.maxCharacters = maxCharacters;
+            this.maxPages = maxPages;
+        }
+
+        /**
+         * Wrap the handler of the document : stop the parse at maxCharacters characters or at page maxPages + 1
+         * with an exception recognized by {@link Budget#isLimitReached(Throwable)}, and once the parse is abandoned
+         *
+         * @param handler Handler of the document
+         * @return Handler to give to the parser
+         * @throws NullPointerException if handler is null
+         */
+        ContentHandler decorate(ContentHandler handler) {
+            ContentHandler guarded = new ContentHandlerDecorator(Objects.requireNonNull(handler)) {
+                private int pages;
+
+                @Override
+                public void startElement(String uri, String localName, String name, Attributes atts)
+                        throws SAXException {
+                    checkAbandoned();
+                    if (maxPages > 0 && "div".equals(localName) && "page".equals(atts.getValue("class"))
+                            && ++pages > maxPages) {
+                        truncation = "pages";
+                        throw new PageLimitException();
+                    }
+                    super.startElement(uri, localName, name, atts);
+                }
+
+                @Override
+                public void characters(char[] ch, int start, int length) throws SAXException {
+                    checkAbandoned();
+                    super.characters(ch, start, length);
+                }
+            };
+            if (maxCharacters == 0) {
+                return guarded;
+            }
+            writeLimit = new WriteOutContentHandler(guarded, maxCharacters);
+            return writeLimit;
+        }
+
+        /**
+         * Tell if a parse failure is a cap being reached, the text read up to the cap is then valid
+         *
+         * @param e Failure of the parse
+         * @return True if the document was truncated
+         */
+        boolean isLimitReached(Throwable e) {
+            if (writeLimit != null && writeLimit.isWriteLimitReached(e)) {
+                truncation = "characters";
+                return true;
+            }
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t instanceof PageLimitException) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Stop handing chunks to a listener once the parse is abandoned. The listener is called from the parser,
+         * the parser clock is stopped while it runs
+         *
+         * @param listener Listener of the chunks of the document
+         * @return Listener to give to the {@link SentenceChunkHandler}
+         * @throws NullPointerException if listener is null
+         */
+        SentenceChunkHandler.ChunkListener gate(SentenceChunkHandler.ChunkListener listener) {
+            Objects.requireNonNull(listener);
+            return (chunk, offset) -> {
+                synchronized (this) {
+                    if (isAbandoned()) {
+                        throw new IllegalStateException("Parse abandoned");
+                    }
+                    leaveParser();
+                    try {
+                        listener.onChunk(chunk, offset);
+                    } catch (RuntimeException e) {
+                        listenerFailure = e;
+                        throw e;
+                    } finally {
+                        enterParser();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Start the parser clock for the calling thread, until {@link Budget#leaveParser()}. The timeout counts
+         * the time during which at least one thread runs the parser
+         */
+        void enterParser() {
+            synchronized (clock) {
+                if (parsing++ == 0) {
+                    parsingSince = System.nanoTime();
+                }
+            }
+        }
+
+        /**
+         * Stop the parser clock for the calling thread
+         */
+        void leaveParser() {
+            synchronized (clock) {
+                if (--parsing == 0) {
+                    parsed += System.nanoTime() - parsingSince;
+                }
+            }
+        }
+
+        /**
+         * Get time during which the parser ran
+         *
+         * @return Parser time in nanoseconds
+         */
+        long getParserNanos() {
+            synchronized (clock) {
+                return parsing == 0 ? parsed : parsed + System.nanoTime() - parsingSince;
+            }
+        }
+
+        /**
+         * Count characters read outside the handlers, by the page ranges
+         *
+         * @param count Number of characters read
+         * @return False once maxCharacters characters were read, the reading should stop
+         */
+        boolean addCharacters(int count) {
+            if (maxCharacters == 0 || characters.addAndGet(count) <= maxCharacters) {
+                return true;
+            }
+            truncation = "characters";
+            return false;
+        }
+
+        /**
+         * Get maximum number of characters read
+         *
+         * @return {@link Budget#maxCharacters}, 0 for no cap
+         */
+        int getMaxCharacters() {
+            return maxCharacters;
+        }
+
+        /**
+         * Get maximum number of pages read
+         *
+         * @return {@link Budget#maxPages}, 0 for no cap
+         */
+        int getMaxPages() {
+            return maxPages;
+        }
+
+        /**
+         * Record that the pages after maxPages were not read
+         */
+        void truncatePages() {
+            truncation = "pages";
+        }
+
+        /**
+         * Tell if the caller stopped waiting for the parse, which should stop as soon as possible
+         *
+         * @return True if the result of the parse will be ignored
+         */
+        boolean isAbandoned() {
+            return state.get() == ABANDONED;
+        }
+
+        private void checkAbandoned() throws SAXException {
+            if (isAbandoned()) {
+                throw new SAXException("Parse abandoned");
+            }
+        }
+
+        private boolean start() {
+            return state.compareAndSet(WAITING, RUNNING);
+        }
+
+        private boolean finish() {
+            return state.compareAndSet(RUNNING, FINISHED);
+        }
+
+        /**
+         * Abandon the parse if it is waiting or running
+         *
+         * @return State before the call
+         */
+        private int abandon() {
+            while (true) {
+                int current = state.get();
+                if (current == FINISHED || current == ABANDONED || state.compareAndSet(current, ABANDONED)) {
+                    return current;
+                }
+            }
+        }
+    }
+
+    /**
+     * Thrown by the handlers at page maxPages + 1
+     */
+    private static final class PageLimitException extends SAXException {
+        private PageLimitException() {
+            super("Page limit reached");
+        }
+    }
+}
@@ -2,67 +2,501 @@ package org.atos.scouter.TikaTools;
 
 import com.google.common.base.Throwables;
 import org.apache.tika.config.TikaConfig;
+import org.apache.tika.exception.TikaException;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.BodyContentHandler;
-import org.apache.tika.sax.WriteOutContentHandler;
+import org.atos.scouter.util.ConfigKeys;
+import org.atos.scouter.util.PropertiesManager;
+import org.atos.scouter.util.nlp.LanguageRouter;
+import org.atos.scouter.util.nlp.NamedEntity;
 import org.atos.scouter.util.nlp.OpenNLP;
+import org.atos.scouter.util.nlp.OpenNLPPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 
 
 public class PdfExtracter{
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PdfExtracter.class);
 
-    private final OpenNLP openNLP = OpenNLP.getOpenNLP(Thread.currentThread());
+    /**
+     * Tika configuration, scanning the service loaders and the MIME registry is done once
+     */
+    private static final TikaConfig TIKA_CONFIG;
 
-    public void extractText(String path)
+    /**
+     * Parser shared by every document and every thread, Tika parsers are thread safe
+     */
+    private static final Parser PARSER;
+
+    static {
+        try {
+            TIKA_CONFIG = new TikaConfig(PdfExtracter.class.getClassLoader());
+            PARSER = new AutoDetectParser(TIKA_CONFIG);
+        } catch (TikaException | IOException e) {
+            LOGGER.error(e.getMessage());
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final OpenNLPPool nlpPool = OpenNLPPool.getInstance();
+
+    /**
+     * Manifest of the documents already extracted, null to extract every document
+     */
+    private final DocumentManifest manifest;
+
+    /**
+     * Timeout and caps of the parse of each document
+     */
+    private final ParseGuard guard;
+
+    /**
+     * Extract the large PDF by page ranges in parallel
+     */
+    private final PageRangeExtracter pageRanges;
+
+    /**
+     * Keep the normalized text in the results, for the index, from index.enabled
+     */
+    private final boolean keepText;
+
+    /**
+     * Size in characters of the text chunks handed to {@link OpenNLP}, from pdf.chunk.size, follows the configuration
+     */
+    private volatile int chunkSize;
+
+    /**
+     * Types of entity to find, from pdf.ner.types, follows the configuration
+     */
+    private volatile Set<OpenNLP.nerOptions> nerTypes;
+
+    /**
+     * Build an extracter which extracts every document
+     */
+    public PdfExtracter() {
+        this(null);
+    }
+
+    /**
+     * Build an extracter which skips the documents unchanged since their last extraction
+     *
+     * @param manifest Manifest of the documents already extracted, null to extract every document
+     */
+    public PdfExtracter(DocumentManifest manifest) {
+        this(manifest, null);
+    }
+
+    /**
+     * Build an extracter which skips the documents unchanged since their last extraction and the documents
+     * quarantined by a previous run
+     *
+     * @param manifest   Manifest of the documents already extracted, null to extract every document
+     * @param quarantine Documents which timed out or broke the parser, null to retry them on every run
+     */
+    public PdfExtracter(DocumentManifest manifest, DocumentQuarantine quarantine) {
+        this.manifest = manifest;
+        PropertiesManager propertiesManager = PropertiesManager.getInstance();
+        this.guard = newGuard(quarantine, propertiesManager);
+        this.keepText = propertiesManager.get(ConfigKeys.INDEX_ENABLED);
+        this.pageRanges = new PageRangeExtracter(propertiesManager.get(ConfigKeys.PDF_PAGES_THREADS),
+                propertiesManager.get(ConfigKeys.PDF_PAGES_RANGE), propertiesManager.get(ConfigKeys.PDF_PAGES_MIN),
+                propertiesManager.get(ConfigKeys.PDF_PAGES_MIN_SIZE));
+        configure(propertiesManager);
+        propertiesManager.addListener((previous, current) -> configure(propertiesManager));
+    }
+
+    /**
+     * Build the guard of the parses, its parse threads follow the threads calling the extracter : a virtual thread
+     * per document in the async execution mode, otherwise a pool of one thread per caller plus pdf.abandoned.max
+     * threads, so the abandoned parses do not take the threads of the next documents
+     *
+     * @param quarantine        Documents which timed out or broke the parser, null to retry them on every run
+     * @param propertiesManager Configuration
+     * @return New guard
+     */
+    private static ParseGuard newGuard(DocumentQuarantine quarantine, PropertiesManager propertiesManager) {
+        boolean server = "server".equals(propertiesManager.get(ConfigKeys.SCOUTER_MODE));
+        String execution = server ? null : propertiesManager.get(ConfigKeys.PDF_EXECUTION);
+        int callers;
+        if (server) {
+            callers = propertiesManager.get(ConfigKeys.SERVER_WORKERS);
+        } else if ("async".equals(execution)) {
+            callers = propertiesManager.get(ConfigKeys.PDF_ASYNC_DOCUMENTS);
+        } else if ("pipeline".equals(execution)) {
+            callers = propertiesManager.get(ConfigKeys.PIPELINE_PARSE_THREADS);
+        } else {
+            callers = propertiesManager.get(ConfigKeys.PDF_WORKERS);
+        }
+        return new ParseGuard(quarantine, "async".equals(execution),
+                callers + propertiesManager.get(ConfigKeys.PDF_ABANDONED_MAX));
+    }
+
+    /**
+     * Read the tuning of the extraction, a document uses the values read when it started
+     *
+     * @param propertiesManager Configuration
+     */
+    private void configure(PropertiesManager propertiesManager) {
+        chunkSize = propertiesManager.get(ConfigKeys.PDF_CHUNK_SIZE);
+        nerTypes = propertiesManager.get(ConfigKeys.PDF_NER_TYPES);
+        guard.configure(propertiesManager.get(ConfigKeys.PDF_TIMEOUT),
+                propertiesManager.get(ConfigKeys.PDF_TIMEOUT_CEILING),
+                propertiesManager.get(ConfigKeys.PDF_MAX_CHARACTERS), propertiesManager.get(ConfigKeys.PDF_MAX_PAGES),
+                propertiesManager.get(ConfigKeys.PDF_ABANDONED_MAX));
+    }
+
+    /**
+     * Get size in characters of the text chunks handed to {@link OpenNLP}
+     *
+     * @return {@link PdfExtracter#chunkSize}
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Tell if the results carry the normalized text of their document
+     *
+     * @return {@link PdfExtracter#keepText}
+     */
+    public boolean isKeepText() {
+        return keepText;
+    }
+
+    /**
+     * Tell if a document timed out or broke the parser in a previous run and did not change since
+     *
+     * @param path Document
+     * @return True if the document must be skipped
+     * @throws NullPointerException if path is null
+     * @throws IOException          if the attributes of the document cannot be read
+     */
+    public boolean isQuarantined(Path path) throws IOException {
+        return guard.isQuarantined(path);
+    }
+
+    /**
+     * Append a chunk to the text of its document, at its offset
+     *
+     * @param text   Text of the chunks before this one
+     * @param chunk  Chunk to append
+     * @param offset Offset of the chunk in the document
+     */
+    static void appendChunk(StringBuilder text, String chunk, int offset) {
+        while (text.length() < offset) {
+            text.append(' ');
+        }
+        text.append(chunk);
+    }
+
+    /**
+     * Get types of entity to find
+     *
+     * @return {@link PdfExtracter#nerTypes}
+     */
+    public Set<OpenNLP.nerOptions> getNerTypes() {
+        return nerTypes;
+    }
+
+    /**
+     * Extract the text of a document and find the entities it mentions.
+     * The text is streamed to {@link OpenNLP} chunk by chunk while Tika parses, it is never held whole in memory.
+     * With a {@link DocumentManifest}, a document unchanged since its last extraction is skipped, the result of
+     * the others carries the state to record once written, see {@link ExtractionResult#getManifestState()}.
+     *
+     * @param path Path of the document to extract
+     * @return Result of the extraction
+     * @throws NullPointerException if path is null
+     * @throws IOException          if the document cannot be read
+     */
+    public ExtractionResult extractText(String path)
             throws IOException
     {
-        WriteOutContentHandler wrapped = new WriteOutContentHandler();
-        ContentHandler handler = new BodyContentHandler(wrapped);
-        try
-        {
-            TikaInputStream inputStream = TikaInputStream.get(new File(path));
+        return extractText(path, null);
+    }
 
-            Metadata meta = new Metadata();
-            Parser parser = new AutoDetectParser(new TikaConfig(getClass().getClassLoader()));
-            parser.parse(inputStream, handler, meta, new ParseContext());
+    /**
+     * Extract the text of a document and find the entities it mentions, the NLP of each chunk running on nlpExecutor.
+     * The calling thread only reads and parses the document, which suits a thread blocked on I/O, while the chunks
+     * already parsed are analyzed on nlpExecutor, each task borrowing its own {@link OpenNLP} from {@link OpenNLPPool}.
+     * The language of the document is detected on its first chunk and selects the models, a document in a language
+     * without models skips the NLP, see {@link LanguageRouter}.
+     * The chunk tasks are joined before returning and cancelled if the parse fails.
+     * The NLP time of the result is the time spent by the tasks, which overlaps the parse time.
+     * A PDF of at least pdf.pages.min pages and pdf.pages.min.size bytes is instead extracted by page ranges
+     * in parallel with {@link PageRangeExtracter}, its entities carrying their page number.
+     * The extraction is abandoned once the parser itself ran pdf.timeout, the NLP and the waits for it not counted,
+     * and reads at most pdf.max.characters characters and pdf.max.pages pages. A document whose parser timed out or
+     * failed is quarantined and skipped until it changes, see {@link ParseGuard}.
+     *
+     * @param path        Path of the document to extract
+     * @param nlpExecutor Executor of the NLP of each chunk, null to run it on the calling thread. Its queue holds the
+     *                    pending chunks, bound it and run the rejected chunks on the caller to bound the memory
+     * @return Result of the extraction
+     * @throws NullPointerException if path is null
+     * @throws IOException          if the document cannot be read or its parser runs longer than pdf.timeout
+     */
+    public ExtractionResult extractText(String path, Executor nlpExecutor)
+            throws IOException
+    {
+        Objects.requireNonNull(path);
+        long start = System.nanoTime();
+        Path file = Paths.get(path);
+        if (guard.isQuarantined(file)) {
+            return ExtractionResult.skipped(path);
+        }
+        DocumentManifest.DocumentState state = null;
+        if (manifest != null) {
+            state = manifest.check(file);
+            if (state.isUnchanged()) {
+                manifest.record(state);
+                return ExtractionResult.skipped(path);
+            }
+        }
+        int size = chunkSize;
+        Set<OpenNLP.nerOptions> types = nerTypes;
+        ExtractionResult result = guard.run(path, file,
+                budget -> extract(path, start, size, types, nlpExecutor, budget));
+        // Recorded by the caller once the result is written, a result lost by the sink is extracted again
+        return state == null ? result : result.withManifestState(state);
+    }
+
+    /**
+     * Extract a document within the caps of its budget, on the parse thread
+     *
+     * @param path        Path of the document to extract
+     * @param start       Start of the extraction, from {@link System#nanoTime()}
+     * @param chunkSize   Size in characters of the chunks handed to {@link OpenNLP}
+     * @param types       Types of entity to find
+     * @param nlpExecutor Executor of the NLP of each chunk, null to run it on the parse thread
+     * @param budget      Caps of the document
+     * @return Result of the extraction
+     * @throws IOException   if the document cannot be read
+     * @throws TikaException if the document cannot be parsed
+     * @throws SAXException  if a handler fails
+     */
+    private ExtractionResult extract(String path, long start, int chunkSize, Set<OpenNLP.nerOptions> types,
+                                     Executor nlpExecutor, ParseGuard.Budget budget)
+            throws IOException, TikaException, SAXException
+    {
+        try (PageRangeExtracter.SplitDocument document = pageRanges.open(Paths.get(path), budget)) {
+            if (document != null) {
+                int pages = document.getPages();
+                if (budget.getMaxPages() > 0 && pages > budget.getMaxPages()) {
+                    budget.truncatePages();
+                    pages = budget.getMaxPages();
+                }
+                long setup = System.nanoTime() - start;
+                ExtractionResult result = pageRanges.extract(document, pages, chunkSize, types, keepText, budget);
+                ExtractionTimings timings = result.getTimings();
+                return result.withTimings(new ExtractionTimings(setup, timings.getParse(), timings.getNlp(),
+                        timings.getPost()));
+            }
+        }
+        List<CompletableFuture<List<NamedEntity>>> chunkEntities = new ArrayList<>();
+        LongAdder nlpTime = new LongAdder();
+        LanguageRouter.Route route = new LanguageRouter.Route(types);
+        // Borrowed on the first chunk, once the language is known, when the NLP runs on the parse thread
+        OpenNLP[] openNLP = new OpenNLP[1];
+        StringBuilder text = keepText ? new StringBuilder() : null;
+        try (TikaInputStream inputStream = TikaInputStream.get(new File(path)))
+        {
+            SentenceChunkHandler chunks = new SentenceChunkHandler(chunkSize, budget.gate((chunk, offset) -> {
+                if (text != null) {
+                    appendChunk(text, chunk, offset);
+                }
+                Set<OpenNLP.nerOptions> documentTypes = route.accept(chunk).getNerTypes();
+                if (documentTypes.isEmpty()) {
+                    return;
+                }
+                String language = route.getLanguage();
+                if (nlpExecutor == null) {
+                    if (openNLP[0] == null) {
+                        openNLP[0] = nlpPool.borrow(language);
+                    }
+                    chunkEntities.add(CompletableFuture.completedFuture(
+                            findNames(openNLP[0], route, chunk, offset, documentTypes, nlpTime)));
+                } else {
+                    chunkEntities.add(CompletableFuture.supplyAsync(
+                            () -> findNames(language, route, chunk, offset, documentTypes, nlpTime), nlpExecutor));
+                }
+            }));
+            long parseStart = System.nanoTime();
 
-            String out = handler.toString().trim().replaceAll(" +", " ");
-            //.replace("\n", "").replace("\r", "")
+            parse(inputStream, chunks, budget);
 
-            findNames("Bonjour Monsieur Ahmad");
+            long parseEnd = System.nanoTime();
+            List<NamedEntity> entities = new ArrayList<>();
+            for (CompletableFuture<List<NamedEntity>> future : chunkEntities) {
+                entities.addAll(future.join());
+            }
+            ExtractionResult result = new ExtractionResult(path, chunks.getLength(), entities);
+            if (text != null) {
+                result = result.withText(text.toString());
+            }
+            if (route.getLanguage() != null) {
+                result = result.withLanguage(route.getLanguage());
+            }
+            long parse = parseEnd - parseStart - (nlpExecutor == null ? nlpTime.sum() : 0);
+            ExtractionTimings timings = new ExtractionTimings(parseStart - start, parse, nlpTime.sum(),
+                    System.nanoTime() - parseEnd);
+            LOGGER.debug(path + " : " + timings);
+            return result.withTimings(timings);
         }
-        catch( Exception t )
+        catch( CompletionException e )
         {
-            if( wrapped.isWriteLimitReached(t) )
-            {
-                // keep going
-                LOGGER.debug("PDF size limit reached.  Indexing truncated text");
-                return;
+            throw Throwables.propagate(e.getCause());
+        }
+        finally
+        {
+            for (CompletableFuture<List<NamedEntity>> future : chunkEntities) {
+                future.cancel(false);
+            }
+            if (openNLP[0] != null) {
+                nlpPool.release(openNLP[0]);
             }
-            throw Throwables.propagate(t);
         }
     }
 
-    private void findNames (String input){
+    /**
+     * Parse a document and stream its normalized text, without NLP, to run the following steps elsewhere
+     *
+     * @param path     Path of the document to parse
+     * @param unicode  Normalize the chunks with {@link SentenceChunkHandler#normalize(String)}, false if the
+     *                 caller does it itself
+     * @param listener Receive the chunks of the document, in document order
+     * @return Length of the normalized text of the document
+     * @throws NullPointerException if path or listener is null
+     * @throws IOException          if the document cannot be read or its parser runs longer than pdf.timeout
+     * @see SentenceChunkHandler
+     */
+    public int streamText(String path, boolean unicode, SentenceChunkHandler.ChunkListener listener)
+            throws IOException
+    {
+        Objects.requireNonNull(path);
+        int size = chunkSize;
+        return guard.run(path, Paths.get(path), budget -> {
+            try (TikaInputStream inputStream = TikaInputStream.get(new File(path)))
+            {
+                return streamText(inputStream, size, unicode, listener, budget);
+            }
+        });
+    }
 
-       // String [] tokens = openNLP.learnableTokenize(input);
+    /**
+     * Parse a document read from a stream and stream its normalized text, without NLP.
+     * The document is never written to disk, the caller closes input.
+     * The listener is not called anymore once the parse is abandoned, its parser having run pdf.timeout
+     *
+     * @param input    Content of the document
+     * @param listener Receive the chunks of the document, in document order
+     * @return Length of the normalized text of the document
+     * @throws NullPointerException if input or listener is null
+     * @throws IOException          if the document cannot be read or its parser runs longer than pdf.timeout
+     * @see SentenceChunkHandler
+     */
+    public int streamText(InputStream input, SentenceChunkHandler.ChunkListener listener)
+            throws IOException
+    {
+        Objects.requireNonNull(input);
+        int size = chunkSize;
+        return guard.run("document", null, budget -> streamText(input, size, true, listener, budget));
+    }
+
+    private static int streamText(InputStream input, int chunkSize, boolean unicode,
+                                  SentenceChunkHandler.ChunkListener listener, ParseGuard.Budget budget)
+            throws IOException, TikaException, SAXException
+    {
+        SentenceChunkHandler chunks = new SentenceChunkHandler(chunkSize, unicode, budget.gate(listener));
+        parse(input, chunks, budget);
+        return chunks.getLength();
+    }
+
+    /**
+     * Parse a document into a chunk handler, stopping at the caps of its budget. The parser clock of the budget
+     * runs meanwhile
+     *
+     * @param input  Content of the document
+     * @param chunks Handler of the text
+     * @param budget Caps of the document
+     * @throws IOException   if the document cannot be read
+     * @throws TikaException if the document cannot be parsed
+     * @throws SAXException  if a handler fails
+     */
+    private static void parse(InputStream input, SentenceChunkHandler chunks, ParseGuard.Budget budget)
+            throws IOException, TikaException, SAXException
+    {
+        budget.enterParser();
+        try
+        {
+            PARSER.parse(input, new BodyContentHandler(budget.decorate(chunks)), new Metadata(), new ParseContext());
+        }
+        catch( TikaException | SAXException e )
+        {
+            if (!budget.isLimitReached(e)) {
+                throw e;
+            }
+            // The text read up to the cap is kept, emit the chunk still buffered
+            chunks.endDocument();
+        }
+        finally
+        {
+            budget.leaveParser();
+        }
+    }
+
+    /**
+     * Find the entities of a chunk with an {@link OpenNLP} borrowed for the chunk
+     *
+     * @param language Language of the document
+     * @param document Identity of the document, see {@link OpenNLP#startDocument(Object)}
+     * @param input    Chunk to analyze
+     * @param offset   Offset of the chunk in the document
+     * @param types    Types of entity to find
+     * @param nlpTime  Accumulate the time spent
+     * @return Entities with offsets relative to the document
+     */
+    private List<NamedEntity> findNames (String language, Object document, String input, int offset,
+                                         Set<OpenNLP.nerOptions> types, LongAdder nlpTime){
+        OpenNLP openNLP = nlpPool.borrow(language);
+        try {
+            return findNames(openNLP, document, input, offset, types, nlpTime);
+        } finally {
+            nlpPool.release(openNLP);
+        }
+    }
 
-        List<String> persons =  openNLP.applyNLPner(input,OpenNLP.nerOptions.PERSON);
-        for (String s: persons) {
-            System.out.println(s);
+    private List<NamedEntity> findNames (OpenNLP openNLP, Object document, String input, int offset,
+                                         Set<OpenNLP.nerOptions> types, LongAdder nlpTime){
+        long nlpStart = System.nanoTime();
+        openNLP.startDocument(document);
+        List<NamedEntity> found = openNLP.findEntities(input, types);
+        List<NamedEntity> entities = new ArrayList<>(found.size());
+        for (NamedEntity entity : found) {
+            entities.add(entity.relocate(offset));
         }
+        nlpTime.add(System.nanoTime() - nlpStart);
+        return entities;
     }
 
-}
\ No newline at end of file
+}
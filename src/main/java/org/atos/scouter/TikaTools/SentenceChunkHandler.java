@@ -0,0 +1,193 @@
+package org.atos.scouter.TikaTools;
+
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.text.Normalizer;
+import java.util.Objects;
+
+/**
+ * SAX handler which normalizes whitespace while Tika parses a document and emits the text in chunks
+ * of complete sentences. Runs of spaces collapse into one space, runs containing a line break collapse
+ * into one line break, and the text is trimmed. Each chunk is then normalized with
+ * {@link SentenceChunkHandler#normalize(String)}, unless the caller does it itself as the normalize stage of the
+ * pipeline, so every execution mode analyzes the same text with the same offsets. Only the current chunk is buffered.
+ *
+ * @version 1.0
+ */
+public class SentenceChunkHandler extends DefaultHandler {
+    /**
+     * Receive the chunks emitted by a {@link SentenceChunkHandler}
+     */
+    @FunctionalInterface
+    public interface ChunkListener {
+        /**
+         * Called for each chunk, in document order
+         *
+         * @param chunk  Normalized text made of complete sentences
+         * @param offset Offset of the chunk in the normalized text of the document, separators included
+         */
+        void onChunk(String chunk, int offset);
+    }
+
+    /**
+     * Soft hyphen, left by PDF line breaks inside words
+     */
+    private static final char SOFT_HYPHEN = '\u00AD';
+    /**
+     * Receive the chunks
+     */
+    private final ChunkListener listener;
+    /**
+     * Apply {@link SentenceChunkHandler#normalize(String)} to the chunks
+     */
+    private final boolean unicode;
+    /**
+     * Size from which a chunk is emitted at the last sentence boundary
+     */
+    private final int chunkSize;
+    /**
+     * Size from which a chunk is emitted even without sentence boundary
+     */
+    private final int maxChunkSize;
+    /**
+     * Text not emitted yet
+     */
+    private final StringBuilder buffer;
+    /**
+     * Index in buffer of the separator following the last sentence end, -1 if none
+     */
+    private int lastBoundary = -1;
+    /**
+     * Whitespace was read since the last character appended
+     */
+    private boolean pendingSpace;
+    /**
+     * A line break was read since the last character appended
+     */
+    private boolean pendingLineBreak;
+    /**
+     * Offset in the normalized document of the first character of buffer
+     */
+    private int offset;
+
+    /**
+     * Build a new handler emitting chunks normalized with {@link SentenceChunkHandler#normalize(String)}
+     *
+     * @param chunkSize Size from which a chunk is emitted at the last sentence boundary
+     * @param listener  Receive the chunks
+     * @throws NullPointerException     if listener is null
+     * @throws IllegalArgumentException if chunkSize is not positive
+     */
+    public SentenceChunkHandler(int chunkSize, ChunkListener listener) {
+        this(chunkSize, true, listener);
+    }
+
+    /**
+     * Build a new handler
+     *
+     * @param chunkSize Size from which a chunk is emitted at the last sentence boundary
+     * @param unicode   Normalize the chunks with {@link SentenceChunkHandler#normalize(String)}, false to emit them
+     *                  with their whitespace normalized only, the offsets then being those of that text
+     * @param listener  Receive the chunks
+     * @throws NullPointerException     if listener is null
+     * @throws IllegalArgumentException if chunkSize is not positive
+     */
+    public SentenceChunkHandler(int chunkSize, boolean unicode, ChunkListener listener) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.listener = Objects.requireNonNull(listener);
+        this.unicode = unicode;
+        this.chunkSize = chunkSize;
+        // Capped so a huge pdf.chunk.size does not overflow
+        this.maxChunkSize = Math.min(Integer.MAX_VALUE / 4, chunkSize) * 4;
+        this.buffer = new StringBuilder(maxChunkSize + 1);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            append(ch[i]);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        characters(ch, start, length);
+    }
+
+    @Override
+    public void endDocument() {
+        if (buffer.length() > 0) {
+            emit(buffer.length());
+        }
+    }
+
+    /**
+     * Get length of the normalized text emitted so far
+     *
+     * @return Number of characters, separators between chunks included
+     */
+    public int getLength() {
+        return offset + buffer.length();
+    }
+
+    private void append(char c) {
+        if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+            if (buffer.length() > 0) {
+                pendingSpace = true;
+                pendingLineBreak |= c == '\n' || c == '\r';
+            }
+            return;
+        }
+        if (pendingSpace) {
+            if (isSentenceEnd(buffer.charAt(buffer.length() - 1))) {
+                lastBoundary = buffer.length();
+            }
+            buffer.append(pendingLineBreak ? '\n' : ' ');
+            pendingSpace = false;
+            pendingLineBreak = false;
+        }
+        buffer.append(c);
+        if (buffer.length() >= chunkSize && lastBoundary > 0) {
+            emit(lastBoundary);
+        } else if (buffer.length() >= maxChunkSize) {
+            int space = buffer.lastIndexOf(" ");
+            emit(space > 0 ? space : buffer.length());
+        }
+    }
+
+    /**
+     * Emit the first end characters of buffer and drop the separator which follows them
+     *
+     * @param end Length of the chunk
+     */
+    private void emit(int end) {
+        String chunk = unicode ? normalize(buffer.substring(0, end)) : buffer.substring(0, end);
+        listener.onChunk(chunk, offset);
+        int consumed = end < buffer.length() ? end + 1 : end;
+        buffer.delete(0, consumed);
+        offset += chunk.length() + consumed - end;
+        lastBoundary = -1;
+    }
+
+    /**
+     * Unicode compatibility composition (NFKC), which splits the ligatures PDF fonts use (the single character fi
+     * into f and i), and removal of soft hyphens
+     *
+     * @param text Text of a chunk
+     * @return Normalized text
+     * @throws NullPointerException if text is null
+     */
+    public static String normalize(String text) {
+        if (Normalizer.isNormalized(text, Normalizer.Form.NFKC) && text.indexOf(SOFT_HYPHEN) < 0) {
+            return text;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return normalized.indexOf(SOFT_HYPHEN) < 0 ? normalized : normalized.replace(String.valueOf(SOFT_HYPHEN), "");
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+}
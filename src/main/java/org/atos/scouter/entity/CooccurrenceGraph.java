@@ -0,0 +1,155 @@
+package org.atos.scouter.entity;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Co-occurrence graph of the entities registered in an {@link EntityRegistry} : two entities are linked when they
+ * appear in the same document, and the link counts the sentences and the documents they share.
+ * Each worker counts its documents in its own {@link Shard}, then publishes it to a lock-free queue, so
+ * the workers never wait for each other. The shards are merged by the single thread calling
+ * {@link CooccurrenceGraph#drain()}, which takes the counts added since its last call, for example to export them.
+ *
+ * @version 1.0
+ * @see CooccurrenceStore
+ */
+public class CooccurrenceGraph {
+    /**
+     * Shards published and not drained yet
+     */
+    private final ConcurrentLinkedQueue<Shard> published = new ConcurrentLinkedQueue<>();
+    /**
+     * Number of documents counted by the published shards
+     */
+    private final AtomicLong documents = new AtomicLong();
+
+    /**
+     * Publish the counts of a shard, the shard must not be used afterwards
+     *
+     * @param shard Shard filled by one worker
+     * @throws NullPointerException if shard is null
+     */
+    public void publish(Shard shard) {
+        Objects.requireNonNull(shard);
+        if (shard.documents > 0) {
+            published.offer(shard);
+            documents.addAndGet(shard.documents);
+        }
+    }
+
+    /**
+     * Merge and remove the published shards. Called by one thread at a time
+     *
+     * @return Counts published since the last call
+     */
+    PairCounts drain() {
+        PairCounts merged = new PairCounts();
+        for (Shard shard = published.poll(); shard != null; shard = published.poll()) {
+            merged.addAll(shard.counts);
+        }
+        return merged;
+    }
+
+    /**
+     * Publish again counts taken by {@link CooccurrenceGraph#drain()} and not exported, their documents stay counted
+     *
+     * @param counts Counts to export with the next drain
+     */
+    void restore(PairCounts counts) {
+        Shard shard = new Shard();
+        shard.counts.addAll(counts);
+        published.offer(shard);
+    }
+
+    /**
+     * Get number of documents counted since this graph was built
+     *
+     * @return Number of documents of the published shards
+     */
+    public long getDocuments() {
+        return documents.get();
+    }
+
+    /**
+     * Counts of the documents of one worker. Not thread safe
+     */
+    public static final class Shard {
+        /**
+         * Counts of the pairs of this shard
+         */
+        private final PairCounts counts = new PairCounts();
+        /**
+         * Number of documents counted
+         */
+        private long documents;
+
+        /**
+         * Count the pairs of entities of one document. Two entities share a sentence when they follow each other
+         * in the list with the same sentence index, as the entities of a sentence are listed together
+         *
+         * @param ids       Id of each entity, -1 to ignore an entity
+         * @param sentences Sentence index of each entity
+         * @return this
+         * @throws NullPointerException     if ids or sentences is null
+         * @throws IllegalArgumentException if the arrays have different lengths
+         * @see EntityRegistry#addDocument(org.atos.scouter.util.nlp.OpenNLP, java.util.List)
+         */
+        public Shard addDocument(int[] ids, int[] sentences) {
+            Objects.requireNonNull(ids);
+            Objects.requireNonNull(sentences);
+            if (ids.length != sentences.length) {
+                throw new IllegalArgumentException("Expected the sentence of " + ids.length + " entities");
+            }
+            int[] distinct = distinct(ids, 0, ids.length);
+            for (int i = 0; i < distinct.length; i++) {
+                for (int j = i + 1; j < distinct.length; j++) {
+                    counts.add(distinct[i], distinct[j], 0, 1);
+                }
+            }
+            for (int start = 0, end; start < ids.length; start = end) {
+                end = start + 1;
+                while (end < ids.length && sentences[end] == sentences[start]) {
+                    end++;
+                }
+                int[] sentence = distinct(ids, start, end);
+                for (int i = 0; i < sentence.length; i++) {
+                    for (int j = i + 1; j < sentence.length; j++) {
+                        counts.add(sentence[i], sentence[j], 1, 0);
+                    }
+                }
+            }
+            documents++;
+            return this;
+        }
+
+        /**
+         * Add the counts of another shard to this one, to combine the shards of parallel tasks
+         *
+         * @param other Shard to add, unchanged
+         * @return this
+         * @throws NullPointerException if other is null
+         */
+        public Shard addAll(Shard other) {
+            counts.addAll(other.counts);
+            documents += other.documents;
+            return this;
+        }
+
+        /**
+         * Get the distinct non negative ids of a range, sorted
+         */
+        private static int[] distinct(int[] ids, int from, int to) {
+            int[] sorted = Arrays.copyOfRange(ids, from, to);
+            Arrays.sort(sorted);
+            int size = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (sorted[i] >= 0 && (size == 0 || sorted[i] != sorted[size - 1])) {
+                    sorted[size++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, size);
+        }
+    }
+}
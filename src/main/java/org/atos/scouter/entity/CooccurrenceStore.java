@@ -0,0 +1,222 @@
+package org.atos.scouter.entity;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.atos.scouter.util.nlp.OpenNLP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Local Jena TDB store of the co-occurrence graph, which keeps growing from one run to the next.
+ * Each entity is a resource typed by its type of entity, labelled by its canonical form and carrying its
+ * document frequency. Two entities which appeared together are linked both ways by cooccursWith, and by a
+ * cooccurrence resource counting the sentences and the documents they share.
+ * Every export adds the counts drained from a {@link CooccurrenceGraph} in one write transaction,
+ * SPARQL queries run in read transactions meanwhile.
+ *
+ * @version 1.0
+ */
+public class CooccurrenceStore implements Closeable {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CooccurrenceStore.class);
+    /**
+     * Namespace of the resources and properties of scouter
+     */
+    public static final String NS = "http://atos.org/scouter#";
+    /**
+     * Links two entities which appeared together
+     */
+    public static final Property COOCCURS_WITH = ResourceFactory.createProperty(NS, "cooccursWith");
+    /**
+     * Entity of a cooccurrence with the smaller id
+     */
+    public static final Property SOURCE = ResourceFactory.createProperty(NS, "source");
+    /**
+     * Entity of a cooccurrence with the larger id
+     */
+    public static final Property TARGET = ResourceFactory.createProperty(NS, "target");
+    /**
+     * Sentences shared by the entities of a cooccurrence
+     */
+    public static final Property SENTENCES = ResourceFactory.createProperty(NS, "sentences");
+    /**
+     * Documents shared by the entities of a cooccurrence
+     */
+    public static final Property DOCUMENTS = ResourceFactory.createProperty(NS, "documents");
+    /**
+     * Documents mentioning an entity
+     */
+    public static final Property DOCUMENT_FREQUENCY = ResourceFactory.createProperty(NS, "documentFrequency");
+    /**
+     * Class of the cooccurrences
+     */
+    public static final Resource COOCCURRENCE = ResourceFactory.createResource(NS + "Cooccurrence");
+    /**
+     * Directory of the store
+     */
+    private final Path path;
+    /**
+     * TDB dataset, the graph is its default model
+     */
+    private final Dataset dataset;
+
+    /**
+     * Open or create a store
+     *
+     * @param path Directory of the store
+     * @throws NullPointerException if path is null
+     */
+    public CooccurrenceStore(Path path) {
+        this.path = Objects.requireNonNull(path);
+        this.dataset = TDBFactory.createDataset(path.toString());
+    }
+
+    /**
+     * Add the counts published to a graph since the last export. The registry is written first, so the exported
+     * ids are in its snapshot; the counts stay in the graph for the next export if the registry or the store
+     * cannot be written
+     *
+     * @param graph    Graph to drain, by one thread at a time
+     * @param registry Registry giving the form, the type and the document frequency of the ids
+     * @return Number of pairs exported
+     * @throws NullPointerException if graph or registry is null
+     */
+    public int export(CooccurrenceGraph graph, EntityRegistry registry) {
+        Objects.requireNonNull(graph);
+        Objects.requireNonNull(registry);
+        try {
+            registry.snapshot();
+        } catch (IOException e) {
+            LOGGER.error("Cannot write entity registry, cooccurrences not exported : " + e.getMessage());
+            return 0;
+        }
+        PairCounts counts = graph.drain();
+        if (counts.size() == 0) {
+            return 0;
+        }
+        dataset.begin(ReadWrite.WRITE);
+        try {
+            Model model = dataset.getDefaultModel();
+            BitSet entities = new BitSet();
+            counts.forEach((first, second, sentences, documents) -> {
+                Resource source = entity(model, first);
+                Resource target = entity(model, second);
+                Resource cooccurrence = model.createResource(NS + "cooccurrence/" + first + "-" + second);
+                if (!model.contains(cooccurrence, RDF.type)) {
+                    cooccurrence.addProperty(RDF.type, COOCCURRENCE)
+                            .addProperty(SOURCE, source)
+                            .addProperty(TARGET, target);
+                    source.addProperty(COOCCURS_WITH, target);
+                    target.addProperty(COOCCURS_WITH, source);
+                }
+                addLiteral(cooccurrence, SENTENCES, sentences);
+                addLiteral(cooccurrence, DOCUMENTS, documents);
+                entities.set(first);
+                entities.set(second);
+            });
+            for (int id = entities.nextSetBit(0); id >= 0; id = entities.nextSetBit(id + 1)) {
+                Resource entity = entity(model, id);
+                entity.removeAll(RDF.type).removeAll(RDFS.label).removeAll(DOCUMENT_FREQUENCY)
+                        .addProperty(RDF.type, model.createResource(NS + className(registry.getType(id))))
+                        .addProperty(RDFS.label, registry.getForm(id))
+                        .addLiteral(DOCUMENT_FREQUENCY, (long) registry.getDocumentFrequency(id));
+            }
+            dataset.commit();
+        } catch (RuntimeException e) {
+            dataset.abort();
+            graph.restore(counts);
+            LOGGER.error("Cannot export " + counts.size() + " cooccurrences to " + path + " : " + e.getMessage());
+            return 0;
+        } finally {
+            dataset.end();
+        }
+        return counts.size();
+    }
+
+    /**
+     * Answer a SPARQL query : SELECT and ASK results are written in JSON, CONSTRUCT and DESCRIBE graphs in N-Triples
+     *
+     * @param sparql SPARQL query
+     * @param out    Destination of the results
+     * @return Media type of the results written
+     * @throws NullPointerException               if sparql or out is null
+     * @throws org.apache.jena.query.QueryException if the query is invalid
+     */
+    public String query(String sparql, OutputStream out) {
+        Objects.requireNonNull(out);
+        Query query = QueryFactory.create(Objects.requireNonNull(sparql));
+        dataset.begin(ReadWrite.READ);
+        try (QueryExecution execution = QueryExecutionFactory.create(query, dataset)) {
+            if (query.isSelectType()) {
+                ResultSetFormatter.outputAsJSON(out, execution.execSelect());
+            } else if (query.isAskType()) {
+                ResultSetFormatter.outputAsJSON(out, execution.execAsk());
+            } else {
+                Model model = query.isConstructType() ? execution.execConstruct() : execution.execDescribe();
+                RDFDataMgr.write(out, model, Lang.NTRIPLES);
+                return "application/n-triples";
+            }
+            return "application/sparql-results+json";
+        } finally {
+            dataset.end();
+        }
+    }
+
+    /**
+     * Close the dataset
+     */
+    @Override
+    public void close() {
+        dataset.close();
+    }
+
+    private static Resource entity(Model model, int id) {
+        return model.createResource(NS + "entity/" + id);
+    }
+
+    /**
+     * Add to a count stored as a literal
+     */
+    private static void addLiteral(Resource resource, Property property, long value) {
+        Statement statement = resource.getProperty(property);
+        long total = value;
+        if (statement != null) {
+            total += statement.getLong();
+            resource.removeAll(property);
+        }
+        resource.addLiteral(property, total);
+    }
+
+    /**
+     * Name of the class of a type of entity : Person, Organization or Location
+     */
+    private static String className(OpenNLP.nerOptions type) {
+        String name = type.name();
+        return name.charAt(0) + name.substring(1).toLowerCase(Locale.ROOT);
+    }
+}
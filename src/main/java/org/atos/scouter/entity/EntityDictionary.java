@@ -0,0 +1,243 @@
+package org.atos.scouter.entity;
+
+import org.atos.scouter.util.nlp.OpenNLP;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Compact dictionary giving a stable int id to each (type, canonical form) of entity.
+ * The forms are packed in one char array, the ids are found through an open-addressing table of ints,
+ * so an entity costs a few bytes over its characters and no object. Ids are assigned in order from 0
+ * and never change, even across a {@link EntityDictionary#write(DataOutput)} and
+ * {@link EntityDictionary#read(DataInput)}. Not thread safe.
+ *
+ * @version 1.0
+ */
+final class EntityDictionary {
+    /**
+     * Marker of an empty slot of the table
+     */
+    private static final int EMPTY = -1;
+    /**
+     * Types of entity, indexed by ordinal
+     */
+    private static final OpenNLP.nerOptions[] TYPES = OpenNLP.nerOptions.values();
+    /**
+     * Characters of every form, in id order
+     */
+    private char[] pool = new char[1024];
+    /**
+     * Number of characters used in pool
+     */
+    private int poolSize;
+    /**
+     * Offset of each form in pool, the form of id i ends at offsets[i + 1]
+     */
+    private int[] offsets = new int[65];
+    /**
+     * Type ordinal of each id
+     */
+    private byte[] types = new byte[64];
+    /**
+     * Open-addressing table of ids, a power of two at most half full
+     */
+    private int[] table = newTable(128);
+    /**
+     * Number of ids
+     */
+    private int size;
+
+    /**
+     * Get the id of an entity
+     *
+     * @param type Type of the entity
+     * @param form Canonical form of the entity
+     * @return Id, or -1 if the entity is unknown
+     */
+    int find(OpenNLP.nerOptions type, CharSequence form) {
+        int mask = table.length - 1;
+        for (int slot = hash(type, form) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (id == EMPTY) {
+                return EMPTY;
+            }
+            if (matches(id, type, form)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Get the id of an entity, assigning the next id if it is unknown
+     *
+     * @param type Type of the entity
+     * @param form Canonical form of the entity
+     * @return Id of the entity
+     * @throws NullPointerException if type or form is null
+     */
+    int add(OpenNLP.nerOptions type, CharSequence form) {
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(form);
+        int mask = table.length - 1;
+        int slot = hash(type, form) & mask;
+        for (int id = table[slot]; id != EMPTY; slot = (slot + 1) & mask, id = table[slot]) {
+            if (matches(id, type, form)) {
+                return id;
+            }
+        }
+        int id = size++;
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2 + 1);
+        }
+        if (poolSize + form.length() > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + form.length()));
+        }
+        for (int i = 0; i < form.length(); i++) {
+            pool[poolSize++] = form.charAt(i);
+        }
+        offsets[id + 1] = poolSize;
+        types[id] = (byte) type.ordinal();
+        table[slot] = id;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * Get canonical form of an id
+     *
+     * @param id Id of the entity
+     * @return Canonical form
+     * @throws IndexOutOfBoundsException if the id is unknown
+     */
+    String getForm(int id) {
+        checkId(id);
+        return new String(pool, offsets[id], offsets[id + 1] - offsets[id]);
+    }
+
+    /**
+     * Get type of an id
+     *
+     * @param id Id of the entity
+     * @return Type of the entity
+     * @throws IndexOutOfBoundsException if the id is unknown
+     */
+    OpenNLP.nerOptions getType(int id) {
+        checkId(id);
+        return TYPES[types[id]];
+    }
+
+    /**
+     * Get number of ids
+     *
+     * @return {@link EntityDictionary#size}
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Write every entity in id order
+     *
+     * @param out Destination
+     * @throws IOException if out cannot be written
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int id = 0; id < size; id++) {
+            out.writeByte(types[id]);
+            out.writeUTF(getForm(id));
+        }
+    }
+
+    /**
+     * Read the entities written by {@link EntityDictionary#write(DataOutput)}, keeping their ids
+     *
+     * @param in Source
+     * @return Dictionary read
+     * @throws IOException if in cannot be read or is not a dictionary
+     */
+    static EntityDictionary read(DataInput in) throws IOException {
+        EntityDictionary dictionary = new EntityDictionary();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int type = in.readByte();
+            if (type < 0 || type >= TYPES.length) {
+                throw new IOException("Unknown entity type " + type);
+            }
+            String form = in.readUTF();
+            if (dictionary.add(TYPES[type], form) != i) {
+                throw new IOException("Duplicate entity " + form);
+            }
+        }
+        return dictionary;
+    }
+
+    private boolean matches(int id, OpenNLP.nerOptions type, CharSequence form) {
+        int start = offsets[id];
+        int length = offsets[id + 1] - start;
+        if (types[id] != type.ordinal() || length != form.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (pool[start + i] != form.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        table = newTable(capacity);
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hash(id) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id;
+        }
+    }
+
+    private int hash(int id) {
+        int h = types[id];
+        for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+            h = 31 * h + pool[i];
+        }
+        return mix(h);
+    }
+
+    private static int hash(OpenNLP.nerOptions type, CharSequence form) {
+        int h = type.ordinal();
+        for (int i = 0; i < form.length(); i++) {
+            h = 31 * h + form.charAt(i);
+        }
+        return mix(h);
+    }
+
+    /**
+     * Spread the bits of a hash, the table index uses its low bits
+     */
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] newTable = new int[capacity];
+        Arrays.fill(newTable, EMPTY);
+        return newTable;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown entity id " + id);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package org.atos.scouter.entity;
+
+import org.atos.scouter.util.nlp.NamedEntity;
+import org.atos.scouter.util.nlp.OpenNLP;
+import org.atos.scouter.util.nlp.TextAnnotations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the entities found in every document. An entity is identified by its type and its canonical form,
+ * the lemmas of its tokens case folded, so "Ahmad", "AHMAD" and "M. Ahmad" share one stable int id.
+ * The registry counts the documents mentioning each id and is written to a snapshot file every snapshotInterval
+ * and when closed, the ids and the counts are read back when the registry is opened again.
+ *
+ * @version 1.0
+ */
+public class EntityRegistry implements Closeable {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityRegistry.class);
+    /**
+     * First int of a snapshot file
+     */
+    private static final int MAGIC = 0x53454E54;
+    /**
+     * Snapshot file
+     */
+    private final Path file;
+    /**
+     * Ids of the entities, guarded by this
+     */
+    private final EntityDictionary dictionary;
+    /**
+     * Number of documents mentioning each id, guarded by this
+     */
+    private int[] documentFrequencies;
+    /**
+     * Entities or documents added since the last snapshot, guarded by this
+     */
+    private boolean dirty;
+    /**
+     * Write the periodic snapshots, null if disabled
+     */
+    private final ScheduledExecutorService snapshotter;
+
+    /**
+     * Open a registry, reading its snapshot file if it exists
+     *
+     * @param file             Snapshot file
+     * @param snapshotInterval Time between two snapshots, 0 to only write one when closed
+     * @param unit             Unit of snapshotInterval
+     * @throws NullPointerException     if file or unit is null
+     * @throws IllegalArgumentException if snapshotInterval is negative
+     * @throws IOException              if the snapshot file cannot be read
+     */
+    public EntityRegistry(Path file, long snapshotInterval, TimeUnit unit) throws IOException {
+        this.file = Objects.requireNonNull(file);
+        Objects.requireNonNull(unit);
+        if (snapshotInterval < 0) {
+            throw new IllegalArgumentException("Snapshot interval must not be negative");
+        }
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(file + " is not an entity registry");
+                }
+                dictionary = EntityDictionary.read(in);
+                documentFrequencies = new int[Math.max(64, dictionary.size())];
+                for (int id = 0; id < dictionary.size(); id++) {
+                    documentFrequencies[id] = in.readInt();
+                }
+            }
+        } else {
+            dictionary = new EntityDictionary();
+            documentFrequencies = new int[64];
+        }
+        LOGGER.info(dictionary.size() + " entities in registry " + file);
+        if (snapshotInterval > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "scouter-entity-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(this::periodicSnapshot, snapshotInterval, snapshotInterval, unit);
+        } else {
+            snapshotter = null;
+        }
+    }
+
+    /**
+     * Get the canonical form of an entity : the lemma of each token, without punctuation, case folded and
+     * separated by one space. The initials of a person are dropped when a longer token remains
+     *
+     * @param openNLP Instance used by the calling thread only
+     * @param type    Type of the entity
+     * @param text    Text covered by the entity
+     * @return Canonical form, empty if the text has no word
+     * @throws NullPointerException if an argument is null
+     */
+    public static String canonicalize(OpenNLP openNLP, OpenNLP.nerOptions type, String text) {
+        return canonicalize(openNLP, type, text, new TextAnnotations());
+    }
+
+    private static String canonicalize(OpenNLP openNLP, OpenNLP.nerOptions type, String text,
+                                       TextAnnotations lemmas) {
+        Objects.requireNonNull(openNLP);
+        Objects.requireNonNull(type);
+        openNLP.annotateLemmas(Objects.requireNonNull(text), lemmas);
+        boolean dropInitials = false;
+        if (type == OpenNLP.nerOptions.PERSON) {
+            for (int i = 0; i < lemmas.size() && !dropInitials; i++) {
+                dropInitials = letters(lemmas.getLabel(i)) > 1;
+            }
+        }
+        StringBuilder form = new StringBuilder(text.length());
+        for (int i = 0; i < lemmas.size(); i++) {
+            String lemma = lemmas.getLabel(i);
+            int letters = letters(lemma);
+            if (letters == 0 || (dropInitials && letters == 1)) {
+                continue;
+            }
+            if (form.length() > 0) {
+                form.append(' ');
+            }
+            form.append(lemma.toLowerCase(Locale.ROOT));
+        }
+        return form.toString();
+    }
+
+    /**
+     * Register the entities of one document : each entity gets the id of its canonical form, and the
+     * document frequency of each distinct id grows by one
+     *
+     * @param openNLP  Instance used by the calling thread only
+     * @param entities Entities found in the document
+     * @return Id of each entity, in the order of entities, -1 for an entity without word
+     * @throws NullPointerException if openNLP or entities is null
+     */
+    public int[] addDocument(OpenNLP openNLP, List<NamedEntity> entities) {
+        Objects.requireNonNull(openNLP);
+        Objects.requireNonNull(entities);
+        // Lemmatize outside of the lock, only the dictionary is shared
+        String[] forms = new String[entities.size()];
+        TextAnnotations lemmas = new TextAnnotations();
+        for (int i = 0; i < forms.length; i++) {
+            NamedEntity entity = entities.get(i);
+            forms[i] = canonicalize(openNLP, entity.getType(), entity.getText(), lemmas);
+        }
+        int[] ids = new int[forms.length];
+        synchronized (this) {
+            for (int i = 0; i < forms.length; i++) {
+                ids[i] = forms[i].isEmpty() ? -1 : add(entities.get(i).getType(), forms[i]);
+            }
+            int[] distinct = ids.clone();
+            Arrays.sort(distinct);
+            for (int i = 0; i < distinct.length; i++) {
+                if (distinct[i] >= 0 && (i == 0 || distinct[i] != distinct[i - 1])) {
+                    documentFrequencies[distinct[i]]++;
+                    dirty = true;
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Get the id of a canonical form, assigning the next id if it is unknown
+     *
+     * @param type Type of the entity
+     * @param form Canonical form, see {@link EntityRegistry#canonicalize(OpenNLP, OpenNLP.nerOptions, String)}
+     * @return Id of the entity
+     * @throws NullPointerException if type or form is null
+     */
+    public synchronized int getId(OpenNLP.nerOptions type, String form) {
+        return add(type, form);
+    }
+
+    /**
+     * Find the id of a canonical form
+     *
+     * @param type Type of the entity
+     * @param form Canonical form, see {@link EntityRegistry#canonicalize(OpenNLP, OpenNLP.nerOptions, String)}
+     * @return Id of the entity, -1 if it is unknown
+     * @throws NullPointerException if type or form is null
+     */
+    public synchronized int find(OpenNLP.nerOptions type, String form) {
+        return dictionary.find(Objects.requireNonNull(type), Objects.requireNonNull(form));
+    }
+
+    /**
+     * Get canonical form of an id
+     *
+     * @param id Id of the entity
+     * @return Canonical form
+     * @throws IndexOutOfBoundsException if the id is unknown
+     */
+    public synchronized String getForm(int id) {
+        return dictionary.getForm(id);
+    }
+
+    /**
+     * Get type of an id
+     *
+     * @param id Id of the entity
+     * @return Type of the entity
+     * @throws IndexOutOfBoundsException if the id is unknown
+     */
+    public synchronized OpenNLP.nerOptions getType(int id) {
+        return dictionary.getType(id);
+    }
+
+    /**
+     * Get number of documents mentioning an id
+     *
+     * @param id Id of the entity
+     * @return Document frequency
+     * @throws IndexOutOfBoundsException if the id is unknown
+     */
+    public synchronized int getDocumentFrequency(int id) {
+        if (id < 0 || id >= dictionary.size()) {
+            throw new IndexOutOfBoundsException("Unknown entity id " + id);
+        }
+        return documentFrequencies[id];
+    }
+
+    /**
+     * Get number of ids
+     *
+     * @return Number of distinct entities
+     */
+    public synchronized int size() {
+        return dictionary.size();
+    }
+
+    /**
+     * Write the registry to its snapshot file, replaced atomically
+     *
+     * @throws IOException if the snapshot file cannot be written
+     */
+    public void snapshot() throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        synchronized (this) {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                dictionary.write(out);
+                for (int id = 0; id < dictionary.size(); id++) {
+                    out.writeInt(documentFrequencies[id]);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        }
+    }
+
+    /**
+     * Stop the periodic snapshots and write a last one
+     *
+     * @throws IOException if the snapshot file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        snapshot();
+        LOGGER.info(size() + " entities written to registry " + file);
+    }
+
+    private int add(OpenNLP.nerOptions type, String form) {
+        int id = dictionary.add(type, form);
+        if (id == documentFrequencies.length) {
+            documentFrequencies = Arrays.copyOf(documentFrequencies, id * 2);
+        }
+        dirty = true;
+        return id;
+    }
+
+    private void periodicSnapshot() {
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+        }
+        try {
+            snapshot();
+        } catch (IOException e) {
+            LOGGER.error("Cannot write entity registry " + file + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Count the letters and digits of a token
+     */
+    private static int letters(String token) {
+        int letters = 0;
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.isLetterOrDigit(token.charAt(i))) {
+                letters++;
+            }
+        }
+        return letters;
+    }
+}
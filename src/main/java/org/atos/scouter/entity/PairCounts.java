@@ -0,0 +1,166 @@
+package org.atos.scouter.entity;
+
+import java.util.Arrays;
+
+/**
+ * Co-occurrence counts of pairs of entity ids : the number of sentences and the number of documents in which
+ * both entities appear. A pair is packed in one long, the smaller id first, and found through an open-addressing
+ * table, so a pair costs a long and two ints and no object. Not thread safe.
+ *
+ * @version 1.0
+ */
+final class PairCounts {
+    /**
+     * Marker of an empty slot, ids are never negative
+     */
+    private static final long EMPTY = -1L;
+    /**
+     * Pair of each slot, a power of two at most half full
+     */
+    private long[] pairs = newTable(64);
+    /**
+     * Sentences of each slot
+     */
+    private int[] sentences = new int[64];
+    /**
+     * Documents of each slot
+     */
+    private int[] documents = new int[64];
+    /**
+     * Number of pairs
+     */
+    private int size;
+
+    /**
+     * Add to the counts of a pair
+     *
+     * @param first     Id of an entity
+     * @param second    Id of the other entity
+     * @param sentences Sentences to add
+     * @param documents Documents to add
+     * @throws IllegalArgumentException if an id is negative or both ids are the same
+     */
+    void add(int first, int second, int sentences, int documents) {
+        if (first < 0 || second < 0 || first == second) {
+            throw new IllegalArgumentException("Invalid pair " + first + ", " + second);
+        }
+        add(pack(Math.min(first, second), Math.max(first, second)), sentences, documents);
+    }
+
+    /**
+     * Add every count of another table to this one
+     *
+     * @param other Counts to add, unchanged
+     */
+    void addAll(PairCounts other) {
+        for (int slot = 0; slot < other.pairs.length; slot++) {
+            if (other.pairs[slot] != EMPTY) {
+                add(other.pairs[slot], other.sentences[slot], other.documents[slot]);
+            }
+        }
+    }
+
+    /**
+     * Call a visitor on each pair, in no particular order
+     *
+     * @param visitor Visitor of the pairs
+     */
+    void forEach(PairVisitor visitor) {
+        for (int slot = 0; slot < pairs.length; slot++) {
+            long pair = pairs[slot];
+            if (pair != EMPTY) {
+                visitor.visit((int) (pair >>> 32), (int) pair, sentences[slot], documents[slot]);
+            }
+        }
+    }
+
+    /**
+     * Get number of pairs
+     *
+     * @return {@link PairCounts#size}
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Remove every pair, keeping the tables
+     */
+    void clear() {
+        Arrays.fill(pairs, EMPTY);
+        size = 0;
+    }
+
+    private void add(long pair, int sentenceCount, int documentCount) {
+        int mask = pairs.length - 1;
+        int slot = mix(pair) & mask;
+        while (pairs[slot] != EMPTY && pairs[slot] != pair) {
+            slot = (slot + 1) & mask;
+        }
+        if (pairs[slot] == EMPTY) {
+            pairs[slot] = pair;
+            sentences[slot] = 0;
+            documents[slot] = 0;
+            size++;
+        }
+        sentences[slot] += sentenceCount;
+        documents[slot] += documentCount;
+        if (size * 2 > pairs.length) {
+            rehash(pairs.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldPairs = pairs;
+        int[] oldSentences = sentences;
+        int[] oldDocuments = documents;
+        pairs = newTable(capacity);
+        sentences = new int[capacity];
+        documents = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldPairs.length; i++) {
+            if (oldPairs[i] != EMPTY) {
+                int slot = mix(oldPairs[i]) & mask;
+                while (pairs[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                pairs[slot] = oldPairs[i];
+                sentences[slot] = oldSentences[i];
+                documents[slot] = oldDocuments[i];
+            }
+        }
+    }
+
+    private static long pack(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Spread the bits of a pair, the table index uses its low bits
+     */
+    private static int mix(long pair) {
+        long h = pair * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32);
+    }
+
+    private static long[] newTable(int capacity) {
+        long[] newTable = new long[capacity];
+        Arrays.fill(newTable, EMPTY);
+        return newTable;
+    }
+
+    /**
+     * Visitor of the pairs of a table
+     */
+    interface PairVisitor {
+        /**
+         * Visit a pair
+         *
+         * @param first     Smaller id of the pair
+         * @param second    Larger id of the pair
+         * @param sentences Sentences in which both entities appear
+         * @param documents Documents in which both entities appear
+         */
+        void visit(int first, int second, int sentences, int documents);
+    }
+}
@@ -0,0 +1,65 @@
+package org.atos.scouter.metrics;
+
+import org.influxdb.dto.Point;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Append the points to a file in InfluxDB line protocol, for the runs without InfluxDB.
+ * The file can be loaded later with influx -import or curl on /write. Thread safe.
+ *
+ * @version 1.0
+ */
+public class FileMetricsWriter implements MetricsWriter {
+    /**
+     * File written
+     */
+    private final Path path;
+    /**
+     * Writer of the file
+     */
+    private final BufferedWriter writer;
+
+    /**
+     * Open the file, created if needed and appended otherwise
+     *
+     * @param path File to write
+     * @throws NullPointerException if path is null
+     * @throws IOException          if the file cannot be opened
+     */
+    public FileMetricsWriter(Path path) throws IOException {
+        this.path = Objects.requireNonNull(path);
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void write(List<Point> points) throws IOException {
+        for (Point point : points) {
+            writer.write(point.lineProtocol());
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Get file written
+     *
+     * @return {@link FileMetricsWriter#path}
+     */
+    public Path getPath() {
+        return path;
+    }
+}
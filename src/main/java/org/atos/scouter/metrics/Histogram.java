@@ -0,0 +1,180 @@
+package org.atos.scouter.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values, typically latencies in nanoseconds, with log-linear buckets in the manner of
+ * HdrHistogram : each power of two is split in {@value #SUB_BUCKETS} buckets, so a percentile is off by at most
+ * 1/{@value #SUB_BUCKETS} of its value whatever its magnitude. Recording is a few bit operations and one atomic
+ * increment, without allocation nor lock. Thread safe.
+ *
+ * @version 1.0
+ */
+public class Histogram {
+    /**
+     * Log2 of the number of buckets per power of two
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+    /**
+     * Number of buckets per power of two
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Number of buckets, enough for every positive long
+     */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    /**
+     * Number of values recorded in each bucket since the last snapshot
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /**
+     * Sum of the values recorded since the last snapshot
+     */
+    private final LongAdder sum = new LongAdder();
+    /**
+     * Largest value recorded since the last snapshot
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value, a negative value is recorded as 0
+     *
+     * @param value Value to record
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(bucket(v));
+        sum.add(v);
+        long current = max.get();
+        while (v > current && !max.compareAndSet(current, v)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Take the values recorded since the last snapshot and start a new interval.
+     * Values recorded while the snapshot is taken go to this snapshot or to the next one, none is lost
+     *
+     * @return Values recorded since the last snapshot
+     */
+    public Snapshot snapshotAndReset() {
+        long[] taken = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts.get(i) != 0) {
+                taken[i] = counts.getAndSet(i, 0);
+                count += taken[i];
+            }
+        }
+        return new Snapshot(taken, count, sum.sumThenReset(), max.getAndSet(0));
+    }
+
+    /**
+     * Get bucket of a value
+     *
+     * @param value Non-negative value
+     * @return Index of its bucket
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Get middle of the values of a bucket
+     *
+     * @param bucket Index of the bucket
+     * @return Value representing the bucket
+     */
+    static long value(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lowest + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * Values recorded during an interval, immutable
+     */
+    public static final class Snapshot {
+        /**
+         * Number of values in each bucket
+         */
+        private final long[] counts;
+        /**
+         * Number of values
+         */
+        private final long count;
+        /**
+         * Sum of the values
+         */
+        private final long sum;
+        /**
+         * Largest value
+         */
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Get value below which a proportion of the values fall
+         *
+         * @param quantile Proportion, between 0 and 1
+         * @return Approximate quantile, 0 if no value was recorded
+         */
+        public long quantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(value(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Get number of values
+         *
+         * @return {@link Snapshot#count}
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Get mean of the values
+         *
+         * @return Mean, 0 if no value was recorded
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Get largest value
+         *
+         * @return {@link Snapshot#max}
+         */
+        public long getMax() {
+            return max;
+        }
+    }
+}
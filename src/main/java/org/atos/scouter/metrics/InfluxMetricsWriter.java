@@ -0,0 +1,86 @@
+package org.atos.scouter.metrics;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDBFactory;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Write the points of each report to InfluxDB in one batch.
+ * When InfluxDB cannot be reached, the points go to a fallback writer instead of being lost.
+ *
+ * @version 1.0
+ */
+public class InfluxMetricsWriter implements MetricsWriter {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(InfluxMetricsWriter.class);
+    /**
+     * Client of InfluxDB
+     */
+    private final InfluxDB influxDB;
+    /**
+     * Database of the points
+     */
+    private final String database;
+    /**
+     * Receive the points InfluxDB refused, null to drop them
+     */
+    private final MetricsWriter fallback;
+    /**
+     * True once the database is known to exist
+     */
+    private boolean databaseCreated;
+
+    /**
+     * Build a new writer, InfluxDB is contacted on the first write
+     *
+     * @param url      Address of InfluxDB
+     * @param user     User name
+     * @param password Password
+     * @param database Database of the points, created if needed
+     * @param fallback Receive the points InfluxDB refused, null to drop them
+     * @throws NullPointerException if url, user, password or database is null
+     */
+    public InfluxMetricsWriter(String url, String user, String password, String database, MetricsWriter fallback) {
+        this.influxDB = InfluxDBFactory.connect(Objects.requireNonNull(url), Objects.requireNonNull(user),
+                Objects.requireNonNull(password));
+        this.database = Objects.requireNonNull(database);
+        this.fallback = fallback;
+    }
+
+    @Override
+    public synchronized void write(List<Point> points) throws IOException {
+        try {
+            if (!databaseCreated) {
+                influxDB.createDatabase(database);
+                databaseCreated = true;
+            }
+            BatchPoints batch = BatchPoints.database(database).build();
+            for (Point point : points) {
+                batch.point(point);
+            }
+            influxDB.write(batch);
+        } catch (RuntimeException e) {
+            if (fallback == null) {
+                throw new IOException("Cannot write metrics to InfluxDB", e);
+            }
+            LOGGER.warn("Cannot write metrics to InfluxDB, using the fallback : " + e.getMessage());
+            fallback.write(points);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fallback != null) {
+            fallback.close();
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package org.atos.scouter.metrics;
+
+import org.atos.scouter.util.ConfigKeys;
+import org.atos.scouter.util.PropertiesManager;
+import org.influxdb.dto.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the metrics of scouter : counters, latency {@link Histogram} and gauges, each identified by a
+ * measurement name and optional tags. Every interval, a report turns them into InfluxDB points handed in one batch
+ * to a {@link MetricsWriter}. Counters give their total and their rate over the interval, histograms the count,
+ * mean, p50, p90, p99 and max of the interval. Heap and garbage collector gauges are always registered.
+ * Callers on a hot path keep the counter or histogram they got instead of looking it up for each value. Thread safe.
+ *
+ * @version 1.0
+ */
+public class MetricsLogger implements AutoCloseable {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsLogger.class);
+    /**
+     * Shared registry configured from {@link PropertiesManager}
+     *
+     * @see MetricsLogger#getMetricsLogger()
+     */
+    private static MetricsLogger metricsLogger;
+    /**
+     * Metrics by measurement name and tags
+     */
+    private final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>();
+    /**
+     * Destination of the reports, null to only keep the metrics in memory
+     */
+    private final MetricsWriter writer;
+    /**
+     * Run the periodic reports, null without writer
+     */
+    private final ScheduledExecutorService reporter;
+    /**
+     * Time of the last report
+     */
+    private long lastReport = System.nanoTime();
+
+    /**
+     * Build a new registry
+     *
+     * @param writer   Destination of the reports, null to only keep the metrics in memory
+     * @param interval Time between two reports
+     * @param unit     Unit of interval
+     * @throws NullPointerException     if unit is null
+     * @throws IllegalArgumentException if interval is not positive
+     */
+    public MetricsLogger(MetricsWriter writer, long interval, TimeUnit unit) {
+        Objects.requireNonNull(unit);
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Metrics interval must be positive");
+        }
+        this.writer = writer;
+        registerJvmGauges();
+        if (writer == null) {
+            reporter = null;
+        } else {
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "scouter-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(this::report, interval, interval, unit);
+        }
+    }
+
+    /**
+     * Get the shared registry. metrics.type chooses the destination : none (default), influx or file.
+     * Points go to metrics.influx.url / database every metrics.interval, or to the line protocol file
+     * metrics.file.path, which also receives the points InfluxDB refused
+     *
+     * @return Shared instance of {@link MetricsLogger}
+     * @throws IllegalStateException if the metrics file cannot be opened
+     */
+    public static synchronized MetricsLogger getMetricsLogger() {
+        if (metricsLogger == null) {
+            PropertiesManager propertiesManager = PropertiesManager.getInstance();
+            String type = propertiesManager.get(ConfigKeys.METRICS_TYPE);
+            Path file = propertiesManager.get(ConfigKeys.METRICS_FILE_PATH);
+            MetricsWriter writer = null;
+            try {
+                MetricsWriter fileWriter = "none".equals(type) || file == null ? null : new FileMetricsWriter(file);
+                if ("influx".equals(type)) {
+                    writer = new InfluxMetricsWriter(propertiesManager.get(ConfigKeys.METRICS_INFLUX_URL),
+                            propertiesManager.get(ConfigKeys.METRICS_INFLUX_USER),
+                            propertiesManager.get(ConfigKeys.METRICS_INFLUX_PASSWORD),
+                            propertiesManager.get(ConfigKeys.METRICS_INFLUX_DATABASE), fileWriter);
+                } else {
+                    writer = fileWriter;
+                }
+            } catch (IOException e) {
+                LOGGER.error("Cannot open metrics file " + file + " : " + e.getMessage());
+                throw new IllegalStateException(e);
+            }
+            metricsLogger = new MetricsLogger(writer, propertiesManager.get(ConfigKeys.METRICS_INTERVAL).toNanos(),
+                    TimeUnit.NANOSECONDS);
+        }
+        return metricsLogger;
+    }
+
+    /**
+     * Get a counter, created on the first call
+     *
+     * @param name Measurement name
+     * @param tags Tag names and values, alternated
+     * @return Counter to increment
+     * @throws NullPointerException     if name or a tag is null
+     * @throws IllegalArgumentException if tags has an odd length or if the metric is not a counter
+     */
+    public LongAdder counter(String name, String... tags) {
+        return lookup(name, tags, CounterMetric.class, () -> new CounterMetric(name, tags)).counter;
+    }
+
+    /**
+     * Get a histogram, created on the first call
+     *
+     * @param name Measurement name
+     * @param tags Tag names and values, alternated
+     * @return Histogram to record values in
+     * @throws NullPointerException     if name or a tag is null
+     * @throws IllegalArgumentException if tags has an odd length or if the metric is not a histogram
+     */
+    public Histogram histogram(String name, String... tags) {
+        return histogram(name, new Histogram(), tags);
+    }
+
+    /**
+     * Report a histogram owned by the caller, the first histogram registered under a name and tags is kept
+     *
+     * @param name      Measurement name
+     * @param histogram Histogram to report
+     * @param tags      Tag names and values, alternated
+     * @return Histogram reported under name and tags
+     * @throws NullPointerException     if name, histogram or a tag is null
+     * @throws IllegalArgumentException if tags has an odd length or if the metric is not a histogram
+     */
+    public Histogram histogram(String name, Histogram histogram, String... tags) {
+        Objects.requireNonNull(histogram);
+        return lookup(name, tags, HistogramMetric.class, () -> new HistogramMetric(name, tags, histogram)).histogram;
+    }
+
+    /**
+     * Report a value read at each report, replacing the gauge registered under the same name and tags
+     *
+     * @param name  Measurement name
+     * @param value Read the value
+     * @param tags  Tag names and values, alternated
+     * @throws NullPointerException     if name, value or a tag is null
+     * @throws IllegalArgumentException if tags has an odd length
+     */
+    public void gauge(String name, LongSupplier value, String... tags) {
+        Objects.requireNonNull(value);
+        GaugeMetric gauge = new GaugeMetric(name, tags, value);
+        metrics.put(gauge.id, gauge);
+    }
+
+    /**
+     * Write a report now
+     */
+    public synchronized void report() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-9, (now - lastReport) / 1e9);
+        lastReport = now;
+        long time = System.currentTimeMillis();
+        List<Point> points = new ArrayList<>(metrics.size());
+        for (Metric metric : metrics.values()) {
+            try {
+                Point.Builder point = Point.measurement(metric.name).time(time, TimeUnit.MILLISECONDS);
+                for (Map.Entry<String, String> tag : metric.tags.entrySet()) {
+                    point.tag(tag.getKey(), tag.getValue());
+                }
+                if (metric.fields(point, seconds)) {
+                    points.add(point.build());
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Cannot read metric " + metric.id + " : " + e.getMessage());
+            }
+        }
+        if (writer == null || points.isEmpty()) {
+            return;
+        }
+        try {
+            writer.write(points);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write " + points.size() + " metrics : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the periodic reports, write a last report and close the writer
+     */
+    @Override
+    public void close() {
+        if (reporter == null) {
+            return;
+        }
+        reporter.shutdownNow();
+        report();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.warn("Cannot close metrics writer : " + e.getMessage());
+        }
+    }
+
+    private <M extends Metric> M lookup(String name, String[] tags, Class<M> type,
+                                        Supplier<M> factory) {
+        String id = Metric.id(name, Metric.tags(tags));
+        Metric metric = metrics.get(id);
+        if (metric == null) {
+            metric = metrics.computeIfAbsent(id, k -> factory.get());
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + id + " is not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    private void registerJvmGauges() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        gauge("jvm.heap.used", () -> memory.getHeapMemoryUsage().getUsed());
+        gauge("jvm.heap.committed", () -> memory.getHeapMemoryUsage().getCommitted());
+        gauge("jvm.heap.max", () -> memory.getHeapMemoryUsage().getMax());
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gauge("jvm.gc.count", gc::getCollectionCount, "gc", gc.getName());
+            gauge("jvm.gc.time", gc::getCollectionTime, "gc", gc.getName());
+        }
+    }
+
+    /**
+     * Metric reported as one point
+     */
+    private abstract static class Metric {
+        /**
+         * Measurement name
+         */
+        final String name;
+        /**
+         * Tags, sorted by name
+         */
+        final Map<String, String> tags;
+        /**
+         * Measurement name and tags, key of the registry
+         */
+        final String id;
+
+        private Metric(String name, String[] tags) {
+            this.name = Objects.requireNonNull(name);
+            this.tags = tags(tags);
+            this.id = id(name, this.tags);
+        }
+
+        /**
+         * Add the fields of the metric to its point
+         *
+         * @param point   Point of the report
+         * @param seconds Time since the last report
+         * @return False if the metric has nothing to report
+         */
+        abstract boolean fields(Point.Builder point, double seconds);
+
+        private static Map<String, String> tags(String[] tags) {
+            if (tags.length % 2 != 0) {
+                throw new IllegalArgumentException("Tags must be pairs of name and value");
+            }
+            Map<String, String> sorted = new TreeMap<>();
+            for (int i = 0; i < tags.length; i += 2) {
+                sorted.put(Objects.requireNonNull(tags[i]), Objects.requireNonNull(tags[i + 1]));
+            }
+            return sorted;
+        }
+
+        private static String id(String name, Map<String, String> tags) {
+            StringBuilder id = new StringBuilder(name);
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                id.append(',').append(tag.getKey()).append('=').append(tag.getValue());
+            }
+            return id.toString();
+        }
+    }
+
+    private static final class CounterMetric extends Metric {
+        private final LongAdder counter = new LongAdder();
+        private long reported;
+
+        private CounterMetric(String name, String[] tags) {
+            super(name, tags);
+        }
+
+        @Override
+        boolean fields(Point.Builder point, double seconds) {
+            long total = counter.sum();
+            point.addField("count", total).addField("rate", (total - reported) / seconds);
+            reported = total;
+            return true;
+        }
+    }
+
+    private static final class HistogramMetric extends Metric {
+        private final Histogram histogram;
+
+        private HistogramMetric(String name, String[] tags, Histogram histogram) {
+            super(name, tags);
+            this.histogram = histogram;
+        }
+
+        @Override
+        boolean fields(Point.Builder point, double seconds) {
+            Histogram.Snapshot snapshot = histogram.snapshotAndReset();
+            if (snapshot.getCount() == 0) {
+                return false;
+            }
+            point.addField("count", snapshot.getCount())
+                    .addField("mean", snapshot.getMean())
+                    .addField("p50", snapshot.quantile(0.5))
+                    .addField("p90", snapshot.quantile(0.9))
+                    .addField("p99", snapshot.quantile(0.99))
+                    .addField("max", snapshot.getMax());
+            return true;
+        }
+    }
+
+    private static final class GaugeMetric extends Metric {
+        private final LongSupplier value;
+
+        private GaugeMetric(String name, String[] tags, LongSupplier value) {
+            super(name, tags);
+            this.value = value;
+        }
+
+        @Override
+        boolean fields(Point.Builder point, double seconds) {
+            point.addField("value", value.getAsLong());
+            return true;
+        }
+    }
+}
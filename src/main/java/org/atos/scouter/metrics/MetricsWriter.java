@@ -0,0 +1,22 @@
+package org.atos.scouter.metrics;
+
+import org.influxdb.dto.Point;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the points reported by {@link MetricsLogger}
+ *
+ * @version 1.0
+ */
+public interface MetricsWriter extends Closeable {
+    /**
+     * Write the points of one report
+     *
+     * @param points Points to write
+     * @throws IOException if the points cannot be written
+     */
+    void write(List<Point> points) throws IOException;
+}
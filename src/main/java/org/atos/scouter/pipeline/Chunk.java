@@ -0,0 +1,69 @@
+package org.atos.scouter.pipeline;
+
+import opennlp.tools.util.Span;
+import org.atos.scouter.util.nlp.NamedEntity;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Chunk of a document flowing through the stages of a {@link Pipeline}, each stage filling its own field.
+ * A chunk is handled by one stage at a time, the queues between stages publish its fields to the next stage.
+ *
+ * @version 1.0
+ */
+final class Chunk {
+    /**
+     * Document of the chunk
+     */
+    final DocumentContext document;
+    /**
+     * Index of the chunk in its document
+     */
+    final int sequence;
+    /**
+     * Offset of the chunk in the text emitted by the chunk handler, before normalization
+     */
+    final int offset;
+    /**
+     * Length of the chunk before normalization
+     */
+    final int length;
+    /**
+     * Text of the chunk, normalized by the normalize stage
+     */
+    String text;
+    /**
+     * Position of each sentence in text, set by the sentence stage
+     */
+    Span[] sentences = new Span[0];
+    /**
+     * Position of each token in its sentence, set by the token stage
+     */
+    Span[][] tokens = new Span[0][];
+    /**
+     * Entities found in the chunk with offsets relative to text, set by the ner stage
+     */
+    List<NamedEntity> entities = Collections.emptyList();
+
+    /**
+     * Build a new chunk
+     *
+     * @param document Document of the chunk
+     * @param sequence Index of the chunk in its document
+     * @param offset   Offset of the chunk given by the chunk handler
+     * @param text     Text of the chunk
+     */
+    Chunk(DocumentContext document, int sequence, int offset, String text) {
+        this.document = document;
+        this.sequence = sequence;
+        this.offset = offset;
+        this.length = text.length();
+        this.text = text;
+    }
+
+    @Override
+    public String toString() {
+        return document.getPath() + "#" + sequence;
+    }
+}
@@ -0,0 +1,177 @@
+package org.atos.scouter.pipeline;
+
+import org.atos.scouter.TikaTools.DocumentManifest;
+import org.atos.scouter.util.nlp.LanguageRouter;
+import org.atos.scouter.util.nlp.OpenNLP;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * State of a document whose chunks flow through a {@link Pipeline}. The chunks are processed concurrently
+ * and in any order, the output stage merges them back once the last one arrived.
+ *
+ * @version 1.0
+ */
+final class DocumentContext {
+    /**
+     * Path of the document
+     */
+    private final String path;
+    /**
+     * Types of entity to find, read when the document started then restricted to its language
+     */
+    private volatile Set<OpenNLP.nerOptions> nerTypes;
+    /**
+     * Language of the document, null until its first chunk
+     */
+    private volatile String language;
+    /**
+     * Chunks which reached the output stage
+     */
+    private final List<Chunk> received = new ArrayList<>();
+    /**
+     * Time spent in the NLP stages on the chunks of the document
+     */
+    private final LongAdder nlpNanos = new LongAdder();
+    /**
+     * Number of chunks of the document, -1 until the parse is over
+     */
+    private volatile int chunkCount = -1;
+    /**
+     * Error which stopped the extraction, null if none
+     */
+    private volatile Throwable failure;
+    /**
+     * The document is unchanged since its last extraction
+     */
+    private volatile boolean skipped;
+    /**
+     * State to record in the manifest once the result is written, null without manifest
+     */
+    private volatile DocumentManifest.DocumentState state;
+    /**
+     * Time to check the manifest
+     */
+    private volatile long setupNanos;
+    /**
+     * Time spent in the parse stage
+     */
+    private volatile long parseNanos;
+
+    DocumentContext(String path, Set<OpenNLP.nerOptions> nerTypes) {
+        this.path = path;
+        this.nerTypes = nerTypes;
+    }
+
+    /**
+     * Add a chunk which reached the output stage
+     *
+     * @param chunk Processed chunk
+     * @return The chunks of the document sorted by sequence once they all arrived, null before
+     */
+    synchronized List<Chunk> add(Chunk chunk) {
+        received.add(chunk);
+        if (received.size() != chunkCount) {
+            return null;
+        }
+        received.sort(Comparator.comparingInt(c -> c.sequence));
+        return received;
+    }
+
+    /**
+     * Tell if the chunks of this document must still be processed
+     *
+     * @return False if the document failed or was skipped
+     */
+    boolean isActive() {
+        return failure == null && !skipped;
+    }
+
+    void fail(Throwable failure) {
+        if (this.failure == null) {
+            this.failure = failure;
+        }
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    Set<OpenNLP.nerOptions> getNerTypes() {
+        return nerTypes;
+    }
+
+    /**
+     * Detect the language of the document on its first chunk, called by the parse stage before the chunk is queued
+     *
+     * @param chunk Text of the first chunk
+     */
+    void route(String chunk) {
+        if (language == null) {
+            LanguageRouter.Route route = new LanguageRouter.Route(nerTypes).accept(chunk);
+            nerTypes = route.getNerTypes();
+            language = route.getLanguage();
+        }
+    }
+
+    /**
+     * Tell if the NLP stages must analyze the chunks of this document
+     *
+     * @return False if the document has no text or no models for its language
+     */
+    boolean isAnalyzed() {
+        return language != null && !nerTypes.isEmpty();
+    }
+
+    String getLanguage() {
+        return language;
+    }
+
+    LongAdder getNlpNanos() {
+        return nlpNanos;
+    }
+
+    void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    Throwable getFailure() {
+        return failure;
+    }
+
+    boolean isSkipped() {
+        return skipped;
+    }
+
+    void setSkipped(boolean skipped) {
+        this.skipped = skipped;
+    }
+
+    DocumentManifest.DocumentState getState() {
+        return state;
+    }
+
+    void setState(DocumentManifest.DocumentState state) {
+        this.state = state;
+    }
+
+    long getSetupNanos() {
+        return setupNanos;
+    }
+
+    void setSetupNanos(long setupNanos) {
+        this.setupNanos = setupNanos;
+    }
+
+    long getParseNanos() {
+        return parseNanos;
+    }
+
+    void setParseNanos(long parseNanos) {
+        this.parseNanos = parseNanos;
+    }
+}
@@ -0,0 +1,400 @@
+package org.atos.scouter.pipeline;
+
+import opennlp.tools.util.Span;
+import org.atos.scouter.TikaTools.DocumentManifest;
+import org.atos.scouter.TikaTools.ExtractionResult;
+import org.atos.scouter.TikaTools.ExtractionTimings;
+import org.atos.scouter.TikaTools.PdfExtracter;
+import org.atos.scouter.TikaTools.SentenceChunkHandler;
+import org.atos.scouter.metrics.MetricsLogger;
+import org.atos.scouter.util.ConfigKey;
+import org.atos.scouter.util.ConfigKeys;
+import org.atos.scouter.util.PropertiesManager;
+import org.atos.scouter.util.nlp.NamedEntity;
+import org.atos.scouter.util.nlp.OpenNLP;
+import org.atos.scouter.util.nlp.OpenNLPPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Extraction split in stages, each with its own threads and a bounded queue :
+ * parse (Tika) -&gt; normalize (Unicode NFKC, see {@link SentenceChunkHandler#normalize(String)}) -&gt; sentence
+ * -&gt; token -&gt; ner -&gt; output.
+ * Thread counts are read from pipeline.&lt;stage&gt;.threads to give the cores to the slowest stage,
+ * which the metrics logged every pipeline.report.interval seconds point out.
+ * The chunks of a document are processed concurrently and merged back by the output stage, so the offsets
+ * of the entities are relative to the normalized text of the document, chunks separated as the chunk handler
+ * emitted them : the same text and offsets as the other execution modes.
+ * The parse stage detects the language of a document on its first chunk, the NLP stages borrow the models of that
+ * language and let the chunks of a language without models pass through.
+ * A pipeline is used once.
+ *
+ * @version 1.0
+ */
+public class Pipeline {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Pipeline.class);
+    /**
+     * Extension of the documents to extract
+     */
+    private static final String PDF_EXTENSION = ".pdf";
+    /**
+     * Parse the documents into chunks
+     */
+    private final Stage<Path, Chunk> parse;
+    /**
+     * Every stage, in order
+     */
+    private final List<Stage<?, ?>> stages;
+    /**
+     * Extracter parsing the documents
+     */
+    private final PdfExtracter extracter;
+    /**
+     * Manifest of the documents already extracted, null to extract every document
+     */
+    private final DocumentManifest manifest;
+    /**
+     * Pool of the NLP instances used by the NLP stages
+     */
+    private final OpenNLPPool nlpPool = OpenNLPPool.getInstance();
+    /**
+     * Interval between two metrics reports, in seconds, 0 for a report at the end only
+     */
+    private final long reportInterval;
+    /**
+     * Number of documents output
+     */
+    private final AtomicLong documents = new AtomicLong();
+    /**
+     * The pipeline already ran
+     */
+    private final AtomicBoolean used = new AtomicBoolean();
+    /**
+     * Receive the results, set by {@link Pipeline#extractAll(Path, Consumer)}
+     */
+    private volatile Consumer<ExtractionResult> consumer;
+
+    /**
+     * Build a new pipeline configured by pipeline.&lt;stage&gt;.threads (default 1 for parse, normalize and output),
+     * pipeline.queue.size (default 64) and pipeline.report.interval (default 10 seconds). Each thread of the NLP
+     * stages borrows an {@link OpenNLP} of the pool, so their threads default to a share of nlp.pool.max : a
+     * quarter for the sentence and token stages, the rest for the ner stage, at least 1 each
+     *
+     * @param extracter         Extracter parsing the documents
+     * @param manifest          Manifest of the documents already extracted, null to extract every document
+     * @param propertiesManager Configuration
+     * @throws NullPointerException     if extracter or propertiesManager is null
+     * @throws IllegalArgumentException if the threads of an NLP stage are negative
+     */
+    public Pipeline(PdfExtracter extracter, DocumentManifest manifest, PropertiesManager propertiesManager) {
+        this.extracter = Objects.requireNonNull(extracter);
+        Objects.requireNonNull(propertiesManager);
+        this.manifest = manifest;
+        int queueSize = propertiesManager.get(ConfigKeys.PIPELINE_QUEUE_SIZE);
+        this.reportInterval = propertiesManager.get(ConfigKeys.PIPELINE_REPORT_INTERVAL).getSeconds();
+        parse = new Stage<>("parse", propertiesManager.get(ConfigKeys.PIPELINE_PARSE_THREADS), queueSize, this::parse);
+        Stage<Chunk, Chunk> normalize = new Stage<>("normalize", propertiesManager.get(ConfigKeys.PIPELINE_NORMALIZE_THREADS),
+                queueSize, step(chunk -> chunk.text = SentenceChunkHandler.normalize(chunk.text)));
+        int poolMax = propertiesManager.get(ConfigKeys.NLP_POOL_MAX);
+        int sentenceThreads = nlpThreads(propertiesManager, ConfigKeys.PIPELINE_SENTENCE_THREADS, poolMax / 4);
+        int tokenThreads = nlpThreads(propertiesManager, ConfigKeys.PIPELINE_TOKEN_THREADS, poolMax / 4);
+        int nerThreads = nlpThreads(propertiesManager, ConfigKeys.PIPELINE_NER_THREADS,
+                poolMax - sentenceThreads - tokenThreads);
+        Stage<Chunk, Chunk> sentence = new Stage<>("sentence", sentenceThreads, queueSize,
+                nlpStep((openNLP, chunk) -> chunk.sentences = openNLP.sentencePositions(chunk.text)));
+        Stage<Chunk, Chunk> token = new Stage<>("token", tokenThreads, queueSize, nlpStep(Pipeline::tokenize));
+        Stage<Chunk, Chunk> ner = new Stage<>("ner", nerThreads, queueSize,
+                nlpStep((openNLP, chunk) -> chunk.entities = openNLP.findEntities(chunk.text, chunk.sentences,
+                        chunk.tokens, chunk.document.getNerTypes())));
+        Stage<Chunk, Void> output = new Stage<>("output", propertiesManager.get(ConfigKeys.PIPELINE_OUTPUT_THREADS),
+                queueSize, (chunk, out) -> output(chunk));
+        output.start(null);
+        ner.start(output);
+        token.start(ner);
+        sentence.start(token);
+        normalize.start(sentence);
+        parse.start(normalize);
+        stages = Collections.unmodifiableList(Arrays.asList(parse, normalize, sentence, token, ner, output));
+        MetricsLogger metrics = MetricsLogger.getMetricsLogger();
+        for (Stage<?, ?> stage : stages) {
+            metrics.histogram("stage.latency", stage.getLatency(), "stage", stage.getName());
+            metrics.gauge("queue.depth", stage::getQueueDepth, "queue", stage.getName());
+        }
+    }
+
+    /**
+     * Extract root, a PDF or a directory walked for PDF. The walk blocks when the parse stage is full.
+     *
+     * @param root     PDF or directory to extract
+     * @param consumer Called on an output thread for each extracted document, must be thread safe
+     *                 if pipeline.output.threads is greater than 1
+     * @return Number of documents extracted
+     * @throws NullPointerException  if root or consumer is null
+     * @throws IllegalStateException if the pipeline already ran
+     * @throws IOException           if root cannot be walked
+     */
+    public long extractAll(Path root, Consumer<ExtractionResult> consumer) throws IOException {
+        Objects.requireNonNull(root);
+        this.consumer = Objects.requireNonNull(consumer);
+        if (!used.compareAndSet(false, true)) {
+            throw new IllegalStateException("Pipeline already used");
+        }
+        long start = System.nanoTime();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "scouter-pipeline-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (reportInterval > 0) {
+            reporter.scheduleAtFixedRate(() -> report(System.nanoTime() - start), reportInterval, reportInterval,
+                    TimeUnit.SECONDS);
+        }
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && file.getFileName().toString().toLowerCase().endsWith(PDF_EXTENSION)) {
+                        try {
+                            parse.put(file);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return FileVisitResult.TERMINATE;
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    LOGGER.warn("Cannot visit " + file + " : " + e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            parse.finish();
+            stages.get(stages.size() - 1).awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Extraction of " + root + " interrupted");
+        } finally {
+            reporter.shutdownNow();
+            for (Stage<?, ?> stage : stages) {
+                stage.stop();
+            }
+            report(System.nanoTime() - start);
+        }
+        return documents.get();
+    }
+
+    /**
+     * Get stages of the pipeline, to read their metrics
+     *
+     * @return {@link Pipeline#stages}
+     */
+    public List<Stage<?, ?>> getStages() {
+        return stages;
+    }
+
+    /**
+     * Parse stage : stream the chunks of a document. The last chunk, empty if the document has no text or failed,
+     * is emitted once the number of chunks is known. A quarantined document is skipped like an unchanged one
+     *
+     * @param file   Document to parse
+     * @param output Next stage
+     */
+    private void parse(Path file, Consumer<Chunk> output) {
+        DocumentContext document = new DocumentContext(file.toString(), extracter.getNerTypes());
+        long start = System.nanoTime();
+        Chunk[] pending = new Chunk[1];
+        try {
+            if (extracter.isQuarantined(file)) {
+                document.setSkipped(true);
+            } else if (manifest != null) {
+                DocumentManifest.DocumentState state = manifest.check(file);
+                if (state.isUnchanged()) {
+                    manifest.record(state);
+                    document.setSkipped(true);
+                }
+                document.setState(state);
+            }
+            long parseStart = System.nanoTime();
+            document.setSetupNanos(parseStart - start);
+            if (document.isActive()) {
+                extracter.streamText(document.getPath(), false, (text, offset) -> {
+                    if (pending[0] != null) {
+                        output.accept(pending[0]);
+                    }
+                    document.route(text);
+                    pending[0] = new Chunk(document, pending[0] == null ? 0 : pending[0].sequence + 1, offset, text);
+                });
+            }
+            document.setParseNanos(System.nanoTime() - parseStart);
+        } catch (IOException | RuntimeException e) {
+            document.fail(e);
+        }
+        Chunk last = pending[0] != null ? pending[0] : new Chunk(document, 0, 0, "");
+        document.setChunkCount(last.sequence + 1);
+        output.accept(last);
+    }
+
+    /**
+     * Output stage : merge the chunks of a document once they all arrived and hand the result to the consumer
+     *
+     * @param chunk Processed chunk
+     */
+    private void output(Chunk chunk) {
+        DocumentContext document = chunk.document;
+        List<Chunk> chunks = document.add(chunk);
+        if (chunks == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (document.getFailure() != null) {
+            LOGGER.error("Cannot extract " + document.getPath() + " : " + document.getFailure().getMessage());
+            return;
+        }
+        documents.incrementAndGet();
+        if (document.isSkipped()) {
+            consumer.accept(ExtractionResult.skipped(document.getPath()));
+            return;
+        }
+        List<NamedEntity> entities = new ArrayList<>();
+        StringBuilder text = extracter.isKeepText() ? new StringBuilder() : null;
+        int offset = 0;
+        Chunk previous = null;
+        for (Chunk c : chunks) {
+            if (previous != null) {
+                // Keep the separator the chunk handler dropped between the two chunks, none after a chunk cut
+                // inside a word
+                offset += previous.text.length() + (c.offset - previous.offset - previous.length);
+            }
+            for (NamedEntity entity : c.entities) {
+                entities.add(entity.relocate(offset));
+            }
+            if (text != null) {
+                while (text.length() < offset) {
+                    text.append(' ');
+                }
+                text.append(c.text);
+            }
+            previous = c;
+        }
+        int characters = previous == null ? 0 : offset + previous.text.length();
+        ExtractionResult result = new ExtractionResult(document.getPath(), characters, entities);
+        if (text != null) {
+            result = result.withText(text.toString());
+        }
+        if (document.getLanguage() != null) {
+            result = result.withLanguage(document.getLanguage());
+        }
+        if (document.getState() != null) {
+            result = result.withManifestState(document.getState());
+        }
+        consumer.accept(result.withTimings(new ExtractionTimings(document.getSetupNanos(), document.getParseNanos(),
+                document.getNlpNanos().sum(), System.nanoTime() - start)));
+    }
+
+    /**
+     * Log the metrics of every stage
+     *
+     * @param elapsedNanos Time since the start
+     */
+    private void report(long elapsedNanos) {
+        for (Stage<?, ?> stage : stages) {
+            LOGGER.info(stage.report(elapsedNanos));
+        }
+    }
+
+    /**
+     * Build a stage function applying a step to the chunks of the documents still active.
+     * A failing step fails the document, its chunks keep flowing to the output stage which drops it
+     *
+     * @param step Step to apply
+     * @return Stage function
+     */
+    private static Stage.StageFunction<Chunk, Chunk> step(Consumer<Chunk> step) {
+        return (chunk, output) -> {
+            if (chunk.document.isActive()) {
+                try {
+                    step.accept(chunk);
+                } catch (RuntimeException e) {
+                    chunk.document.fail(e);
+                }
+            }
+            output.accept(chunk);
+        };
+    }
+
+    /**
+     * Build a stage function applying an NLP step with an {@link OpenNLP} of the language of the document
+     * borrowed for the chunk. The chunks of a document without models for its language pass through
+     *
+     * @param step Step to apply
+     * @return Stage function
+     */
+    private Stage.StageFunction<Chunk, Chunk> nlpStep(BiConsumer<OpenNLP, Chunk> step) {
+        return step(chunk -> {
+            if (!chunk.document.isAnalyzed()) {
+                return;
+            }
+            long start = System.nanoTime();
+            OpenNLP openNLP = nlpPool.borrow(chunk.document.getLanguage());
+            long borrowed = System.nanoTime();
+            // Waiting for an instance is not work of the stage, it would hide the bottleneck
+            Stage.recordWait(borrowed - start);
+            try {
+                openNLP.startDocument(chunk.document);
+                step.accept(openNLP, chunk);
+            } finally {
+                nlpPool.release(openNLP);
+                chunk.document.getNlpNanos().add(System.nanoTime() - borrowed);
+            }
+        });
+    }
+
+    /**
+     * Get number of threads of an NLP stage
+     *
+     * @param propertiesManager Configuration
+     * @param key               Threads of the stage, 0 for its share of nlp.pool.max
+     * @param share             Share of nlp.pool.max of the stage
+     * @return Number of threads, at least 1
+     * @throws IllegalArgumentException if the value of key is negative
+     */
+    private static int nlpThreads(PropertiesManager propertiesManager, ConfigKey<Integer> key, int share) {
+        int threads = propertiesManager.get(key);
+        if (threads < 0) {
+            throw new IllegalArgumentException(key + " must not be negative");
+        }
+        return threads == 0 ? Math.max(1, share) : threads;
+    }
+
+    private static void tokenize(OpenNLP openNLP, Chunk chunk) {
+        chunk.tokens = new Span[chunk.sentences.length][];
+        for (int s = 0; s < chunk.sentences.length; s++) {
+            chunk.tokens[s] = openNLP.tokenPositions(
+                    chunk.text.substring(chunk.sentences[s].getStart(), chunk.sentences[s].getEnd()));
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package org.atos.scouter.pipeline;
+
+import org.atos.scouter.metrics.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Step of a {@link Pipeline} : a bounded input queue drained by its own threads, which hand their outputs
+ * to the next stage. A stage whose next stage is full blocks, so a slow stage slows down the stages before it
+ * instead of filling the memory. Queue depth, throughput, busy time and time blocked on the next stage are
+ * measured to find the bottleneck.
+ *
+ * @param <I> Type of the inputs
+ * @param <O> Type of the outputs
+ * @version 1.0
+ */
+public class Stage<I, O> {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Stage.class);
+    /**
+     * Marker put in the queue once per thread when the input is finished
+     */
+    private static final Object END = new Object();
+    /**
+     * Time the current stage thread waited for shared resources while processing its current input
+     */
+    private static final ThreadLocal<long[]> WAITED = new ThreadLocal<>();
+    /**
+     * Name of the stage, used for its threads and its metrics
+     */
+    private final String name;
+    /**
+     * Number of threads
+     */
+    private final int threads;
+    /**
+     * Capacity of the input queue
+     */
+    private final int capacity;
+    /**
+     * Pending inputs, and END markers
+     */
+    private final BlockingQueue<Object> queue;
+    /**
+     * Work done on each input
+     */
+    private final StageFunction<I, O> function;
+    /**
+     * Threads of the stage, started by {@link Stage#start(Stage)}
+     */
+    private final List<Thread> workers = new ArrayList<>();
+    /**
+     * Threads still running
+     */
+    private final AtomicInteger running = new AtomicInteger();
+    /**
+     * Released when every thread has stopped
+     */
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    /**
+     * Number of inputs processed
+     */
+    private final LongAdder processed = new LongAdder();
+    /**
+     * Time spent processing the inputs, time blocked on the next stage excluded
+     */
+    private final LongAdder busyNanos = new LongAdder();
+    /**
+     * Time spent waiting for room in the queue of the next stage
+     */
+    private final LongAdder blockedNanos = new LongAdder();
+    /**
+     * Time spent waiting for shared resources, see {@link Stage#recordWait(long)}
+     */
+    private final LongAdder waitNanos = new LongAdder();
+    /**
+     * Time spent processing each input, time blocked on the next stage excluded
+     */
+    private final Histogram latency = new Histogram();
+    /**
+     * Next stage, null for the last stage
+     */
+    private Stage<O, ?> next;
+
+    /**
+     * Work done by a stage on each input
+     *
+     * @param <I> Type of the inputs
+     * @param <O> Type of the outputs
+     */
+    @FunctionalInterface
+    public interface StageFunction<I, O> {
+        /**
+         * Process an input
+         *
+         * @param input  Input to process
+         * @param output Hand an output to the next stage, may be called any number of times
+         */
+        void apply(I input, Consumer<O> output);
+    }
+
+    /**
+     * Record time the calling stage thread spent waiting for a shared resource, such as a pooled instance,
+     * counted apart from the busy time. Ignored outside of a stage thread
+     *
+     * @param nanos Time waited in nanoseconds
+     */
+    public static void recordWait(long nanos) {
+        long[] waited = WAITED.get();
+        if (waited != null) {
+            waited[0] += nanos;
+        }
+    }
+
+    /**
+     * Build a new stage
+     *
+     * @param name     Name of the stage
+     * @param threads  Number of threads
+     * @param capacity Capacity of the input queue
+     * @param function Work done on each input
+     * @throws NullPointerException     if name or function is null
+     * @throws IllegalArgumentException if threads or capacity is not positive
+     */
+    public Stage(String name, int threads, int capacity, StageFunction<I, O> function) {
+        if (threads <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Threads and capacity of stage " + name + " must be positive");
+        }
+        this.name = Objects.requireNonNull(name);
+        this.function = Objects.requireNonNull(function);
+        this.threads = threads;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Start the threads of the stage
+     *
+     * @param next Next stage, null for the last stage
+     * @throws IllegalStateException if the stage is already started
+     */
+    public synchronized void start(Stage<O, ?> next) {
+        if (!workers.isEmpty()) {
+            throw new IllegalStateException("Stage " + name + " already started");
+        }
+        this.next = next;
+        running.set(threads);
+        for (int i = 1; i <= threads; i++) {
+            Thread worker = new Thread(this::run, "scouter-" + name + "-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Hand an input to the stage, waiting while its queue is full
+     *
+     * @param input Input to process
+     * @throws NullPointerException if input is null
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void put(I input) throws InterruptedException {
+        queue.put(Objects.requireNonNull(input));
+    }
+
+    /**
+     * Tell the stage that no more input will come. The stage stops once its queue is drained,
+     * then finishes the next stage
+     *
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public void finish() throws InterruptedException {
+        for (int i = 0; i < threads; i++) {
+            queue.put(END);
+        }
+    }
+
+    /**
+     * Wait until every thread of the stage has stopped
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitTermination() throws InterruptedException {
+        terminated.await();
+    }
+
+    /**
+     * Interrupt the threads of the stage, the pending inputs are lost
+     */
+    public synchronized void stop() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run() {
+        long[] blocked = new long[1];
+        Consumer<O> output = o -> {
+            if (next == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                next.put(o);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Stage " + name + " interrupted", e);
+            } finally {
+                blocked[0] += System.nanoTime() - start;
+            }
+        };
+        long[] waited = new long[1];
+        WAITED.set(waited);
+        try {
+            for (Object input = queue.take(); input != END; input = queue.take()) {
+                blocked[0] = 0;
+                waited[0] = 0;
+                long start = System.nanoTime();
+                try {
+                    function.apply((I) input, output);
+                } catch (RuntimeException e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    LOGGER.error("Stage " + name + " failed on " + input + " : " + e.getMessage());
+                }
+                long busy = System.nanoTime() - start - blocked[0] - waited[0];
+                busyNanos.add(busy);
+                latency.record(busy);
+                blockedNanos.add(blocked[0]);
+                waitNanos.add(waited[0]);
+                processed.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            WAITED.remove();
+            if (running.decrementAndGet() == 0) {
+                finishNext();
+                terminated.countDown();
+            }
+        }
+    }
+
+    private void finishNext() {
+        if (next != null && !Thread.currentThread().isInterrupted()) {
+            try {
+                next.finish();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Get name of the stage
+     *
+     * @return {@link Stage#name}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get number of threads
+     *
+     * @return {@link Stage#threads}
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Get capacity of the input queue
+     *
+     * @return {@link Stage#capacity}
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get number of inputs waiting in the queue
+     *
+     * @return Current queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Get number of inputs processed
+     *
+     * @return {@link Stage#processed}
+     */
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    /**
+     * Get time spent processing the inputs, time blocked on the next stage excluded
+     *
+     * @return {@link Stage#busyNanos} in nanoseconds
+     */
+    public long getBusyNanos() {
+        return busyNanos.sum();
+    }
+
+    /**
+     * Get time spent processing each input, time blocked on the next stage excluded
+     *
+     * @return {@link Stage#latency} in nanoseconds
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Get time spent waiting for room in the queue of the next stage
+     *
+     * @return {@link Stage#blockedNanos} in nanoseconds
+     */
+    public long getBlockedNanos() {
+        return blockedNanos.sum();
+    }
+
+    /**
+     * Get time spent waiting for shared resources
+     *
+     * @return {@link Stage#waitNanos} in nanoseconds
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    /**
+     * Describe the metrics of the stage. A stage busy close to 100% is the bottleneck,
+     * a stage often blocked waits for a slower stage after it, a stage often waiting lacks pooled instances
+     *
+     * @param elapsedNanos Time since the stage started
+     * @return Threads, queue depth, throughput, busy, blocked and waiting ratios
+     */
+    public String report(long elapsedNanos) {
+        double threadNanos = Math.max(1, elapsedNanos) * (double) threads;
+        return String.format("%s : %d threads, queue %d/%d, %d processed (%.1f/s), busy %.0f%%, blocked %.0f%%, "
+                        + "waiting %.0f%%",
+                name, threads, getQueueDepth(), capacity, getProcessed(),
+                getProcessed() / (double) Math.max(1, TimeUnit.NANOSECONDS.toMillis(elapsedNanos)) * 1000,
+                100 * getBusyNanos() / threadNanos, 100 * getBlockedNanos() / threadNanos,
+                100 * getWaitNanos() / threadNanos);
+    }
+}
@@ -0,0 +1,478 @@
+package org.atos.scouter.server;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.apache.jena.query.QueryException;
+import org.apache.tika.io.TikaInputStream;
+import org.atos.scouter.TikaTools.PdfExtracter;
+import org.atos.scouter.TikaTools.SentenceChunkHandler;
+import org.atos.scouter.entity.CooccurrenceStore;
+import org.atos.scouter.metrics.Histogram;
+import org.atos.scouter.metrics.MetricsLogger;
+import org.atos.scouter.sink.ResultSinks;
+import org.atos.scouter.util.ConfigKeys;
+import org.atos.scouter.util.PropertiesManager;
+import org.atos.scouter.util.nlp.LanguageRouter;
+import org.atos.scouter.util.nlp.NamedEntity;
+import org.atos.scouter.util.nlp.OpenNLP;
+import org.atos.scouter.util.nlp.OpenNLPPool;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Long-running HTTP server extracting the entities of the documents posted to it, with the models kept warm
+ * between requests.
+ * <ul>
+ * <li>POST /extract : the body is a document (PDF or any format Tika parses)</li>
+ * <li>POST /analyze : the body is UTF-8 text</li>
+ * <li>GET /health : number of requests in flight</li>
+ * <li>GET /sparql?query= : SPARQL query on the co-occurrence graph, when entity.graph.path is set</li>
+ * </ul>
+ * The body is read in memory, up to server.body.limit bytes, and never written to disk. The extraction runs on a
+ * worker pool of server.workers threads, off the event loop, and at most server.max.requests requests are accepted
+ * at once, the others are answered 503. A request leaves the count once answered, or as soon as it fails or its
+ * connection closes. The response is streamed as JSON lines : one line per entity, written as soon as the chunk
+ * holding it is analyzed, then a summary line with the name and the length of the document, or an error line if the
+ * extraction failed midway. The worker waits for a slow client to drain the response before writing more.
+ *
+ * @version 1.0
+ */
+public class ExtractionServer implements AutoCloseable {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExtractionServer.class);
+    /**
+     * Name of the document when the request has no name parameter
+     */
+    private static final String DEFAULT_NAME = "upload";
+    /**
+     * Extracter parsing the documents
+     */
+    private final PdfExtracter extracter;
+    /**
+     * Pool of {@link OpenNLP} instances, one borrowed per request
+     */
+    private final OpenNLPPool nlpPool = OpenNLPPool.getInstance();
+    /**
+     * Vert.x instance running the server
+     */
+    private final Vertx vertx;
+    /**
+     * Run the extractions
+     */
+    private final WorkerExecutor workers;
+    /**
+     * Requests accepted and not answered yet
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /**
+     * Maximum number of requests in flight
+     */
+    private final int maxRequests;
+    /**
+     * Maximum size of a request body in bytes
+     */
+    private final long bodyLimit;
+    /**
+     * Address the server listens on
+     */
+    private final String host;
+    /**
+     * Port the server listens on
+     */
+    private final int port;
+    /**
+     * Registry of the request metrics
+     */
+    private final MetricsLogger metrics = MetricsLogger.getMetricsLogger();
+    /**
+     * Co-occurrence graph answering the SPARQL queries, null if entity.graph.path is not set
+     */
+    private final CooccurrenceStore store;
+    /**
+     * Listening server, null until started
+     */
+    private HttpServer server;
+
+    /**
+     * Build a server configured by server.host, server.port, server.body.limit, server.workers,
+     * server.max.requests and entity.graph.path
+     *
+     * @param extracter         Extracter parsing the documents
+     * @param propertiesManager Configuration
+     * @throws NullPointerException if extracter or propertiesManager is null
+     */
+    public ExtractionServer(PdfExtracter extracter, PropertiesManager propertiesManager) {
+        this.extracter = Objects.requireNonNull(extracter);
+        Objects.requireNonNull(propertiesManager);
+        this.host = propertiesManager.get(ConfigKeys.SERVER_HOST);
+        this.port = propertiesManager.get(ConfigKeys.SERVER_PORT);
+        this.bodyLimit = propertiesManager.get(ConfigKeys.SERVER_BODY_LIMIT);
+        this.maxRequests = propertiesManager.get(ConfigKeys.SERVER_MAX_REQUESTS);
+        this.vertx = Vertx.vertx();
+        this.workers = vertx.createSharedWorkerExecutor("scouter-server-worker",
+                propertiesManager.get(ConfigKeys.SERVER_WORKERS));
+        Path graphPath = propertiesManager.get(ConfigKeys.ENTITY_GRAPH_PATH);
+        this.store = graphPath == null ? null : new CooccurrenceStore(graphPath);
+        metrics.gauge("server.inflight", inFlight::get);
+    }
+
+    /**
+     * Load the models, then start listening. Returns once the server listens
+     *
+     * @throws IllegalStateException if the server is already started or cannot listen
+     */
+    public synchronized void start() {
+        if (server != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        warmUp();
+        Router router = Router.router(vertx);
+        router.post("/extract").handler(context -> accept(context, "extract"));
+        router.post("/analyze").handler(context -> accept(context, "analyze"));
+        router.get("/health").handler(context -> context.response()
+                .putHeader("Content-Type", "application/json")
+                .end(new Document("status", "up").append("inFlight", inFlight.get()).toJson()));
+        if (store != null) {
+            router.get("/sparql").handler(this::sparql);
+        }
+        CompletableFuture<HttpServer> listening = new CompletableFuture<>();
+        vertx.createHttpServer(new HttpServerOptions().setHost(host).setPort(port))
+                .requestHandler(router::accept)
+                .listen(result -> {
+                    if (result.succeeded()) {
+                        listening.complete(result.result());
+                    } else {
+                        listening.completeExceptionally(result.cause());
+                    }
+                });
+        try {
+            server = listening.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while starting the server", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot listen on " + host + ":" + port, e.getCause());
+        }
+        LOGGER.info("Listening on " + host + ":" + port);
+    }
+
+    /**
+     * Stop listening and release the worker threads, the requests in flight are dropped
+     */
+    @Override
+    public synchronized void close() {
+        workers.close();
+        vertx.close();
+        if (store != null) {
+            store.close();
+        }
+        server = null;
+    }
+
+    /**
+     * Run the NLP once so the models are loaded before the first request
+     */
+    private void warmUp() {
+        OpenNLP openNLP = nlpPool.borrow();
+        try {
+            openNLP.findEntities("Jean Dupont travaille chez Atos a Paris.", extracter.getNerTypes());
+        } catch (IllegalStateException e) {
+            LOGGER.warn("Cannot warm up the models : " + e.getMessage());
+        } finally {
+            nlpPool.release(openNLP);
+        }
+    }
+
+    /**
+     * Admit a request, read its body, then hand it to the workers
+     *
+     * @param context  Request
+     * @param endpoint Name of the endpoint, extract for a document and analyze for text
+     */
+    private void accept(RoutingContext context, String endpoint) {
+        HttpServerRequest request = context.request();
+        HttpServerResponse response = context.response();
+        String length = request.getHeader("Content-Length");
+        if (length != null) {
+            long declared;
+            try {
+                declared = Long.parseLong(length.trim());
+            } catch (NumberFormatException e) {
+                response.setStatusCode(400).end();
+                return;
+            }
+            if (declared > bodyLimit) {
+                response.setStatusCode(413).end();
+                return;
+            }
+        }
+        if (inFlight.incrementAndGet() > maxRequests) {
+            inFlight.decrementAndGet();
+            metrics.counter("server.rejected").increment();
+            response.setStatusCode(503).end();
+            return;
+        }
+        long start = System.nanoTime();
+        Admission admission = new Admission();
+        request.exceptionHandler(e -> {
+            LOGGER.debug("Request failed : " + e.getMessage());
+            admission.leave();
+        });
+        response.closeHandler(v -> admission.leave());
+        Buffer body = Buffer.buffer();
+        boolean[] tooLarge = new boolean[1];
+        request.handler(data -> {
+            if (tooLarge[0]) {
+                return;
+            }
+            if (body.length() + data.length() > bodyLimit) {
+                tooLarge[0] = true;
+                admission.leave();
+                response.setStatusCode(413).end();
+                response.close();
+                return;
+            }
+            body.appendBuffer(data);
+        });
+        request.endHandler(v -> {
+            if (!tooLarge[0] && admission.isActive()) {
+                process(endpoint, request.getParam("name"), body, response, start, admission);
+            }
+        });
+    }
+
+    /**
+     * Answer a SPARQL query on a worker, 400 if the query is missing or invalid
+     *
+     * @param context Request
+     */
+    private void sparql(RoutingContext context) {
+        String query = context.request().getParam("query");
+        HttpServerResponse response = context.response();
+        if (query == null) {
+            response.setStatusCode(400).end();
+            return;
+        }
+        long start = System.nanoTime();
+        ByteArrayOutputStream results = new ByteArrayOutputStream();
+        workers.<String>executeBlocking(future -> {
+            try {
+                future.complete(store.query(query, results));
+            } catch (RuntimeException e) {
+                future.fail(e);
+            }
+        }, false, result -> {
+            metrics.counter("server.requests", "endpoint", "sparql", "status", result.succeeded() ? "ok" : "failed")
+                    .increment();
+            metrics.histogram("server.latency", "endpoint", "sparql").record(System.nanoTime() - start);
+            if (result.succeeded()) {
+                response.putHeader("Content-Type", result.result()).end(Buffer.buffer(results.toByteArray()));
+            } else {
+                response.setStatusCode(result.cause() instanceof QueryException ? 400 : 500)
+                        .end(String.valueOf(result.cause().getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Extract a body on a worker, streaming the entities to the response
+     *
+     * @param endpoint  Name of the endpoint
+     * @param name      Name of the document, null for {@link ExtractionServer#DEFAULT_NAME}
+     * @param body      Document or text
+     * @param response  Response of the request
+     * @param start     Time the request was accepted
+     * @param admission Slot of the request
+     */
+    private void process(String endpoint, String name, Buffer body, HttpServerResponse response, long start,
+                         Admission admission) {
+        Context context = Vertx.currentContext();
+        String documentName = name == null ? DEFAULT_NAME : name;
+        response.setChunked(true).putHeader("Content-Type", "application/x-ndjson");
+        workers.<Document>executeBlocking(future -> {
+            try {
+                future.complete(extract("extract".equals(endpoint), documentName, body, context, response,
+                        admission));
+            } catch (IOException | RuntimeException e) {
+                future.fail(e);
+            }
+        }, false, result -> {
+            admission.leave();
+            metrics.counter("server.requests", "endpoint", endpoint, "status", result.succeeded() ? "ok" : "failed")
+                    .increment();
+            metrics.histogram("server.latency", "endpoint", endpoint).record(System.nanoTime() - start);
+            if (response.closed() || response.ended()) {
+                return;
+            }
+            if (result.succeeded()) {
+                response.end(result.result().toJson() + "\n");
+            } else {
+                LOGGER.warn("Cannot extract " + documentName + " : " + result.cause().getMessage());
+                if (!response.headWritten()) {
+                    response.setStatusCode(422);
+                }
+                response.end(new Document("name", documentName)
+                        .append("error", String.valueOf(result.cause().getMessage())).toJson() + "\n");
+            }
+        });
+    }
+
+    /**
+     * Find the entities of a document or a text with an {@link OpenNLP} of its language borrowed for the request.
+     * The entities of each chunk are written to the response on the event loop of the request, once the previous
+     * write is drained. The chunks are no longer analyzed once the request left
+     *
+     * @param document  True if body is a document, false if it is UTF-8 text
+     * @param name      Name of the document
+     * @param body      Document or text
+     * @param context   Context of the request
+     * @param response  Response of the request
+     * @param admission Slot of the request
+     * @return Summary of the extraction
+     * @throws IOException if the document cannot be read
+     */
+    private Document extract(boolean document, String name, Buffer body, Context context, HttpServerResponse response,
+                             Admission admission) throws IOException {
+        LanguageRouter.Route route = new LanguageRouter.Route(extracter.getNerTypes());
+        Histogram nlpLatency = metrics.histogram("server.nlp.latency");
+        int[] entities = new int[1];
+        // Borrowed on the first chunk, once the language is known
+        OpenNLP[] openNLP = new OpenNLP[1];
+        try {
+            SentenceChunkHandler.ChunkListener listener = (chunk, offset) -> {
+                Set<OpenNLP.nerOptions> types = route.accept(chunk).getNerTypes();
+                if (types.isEmpty() || !admission.isActive()) {
+                    return;
+                }
+                if (openNLP[0] == null) {
+                    openNLP[0] = nlpPool.borrow(route.getLanguage());
+                }
+                long nlpStart = System.nanoTime();
+                openNLP[0].startDocument(route);
+                List<NamedEntity> found = openNLP[0].findEntities(chunk, types);
+                nlpLatency.record(System.nanoTime() - nlpStart);
+                if (found.isEmpty()) {
+                    return;
+                }
+                Buffer lines = Buffer.buffer();
+                for (NamedEntity entity : found) {
+                    lines.appendString(ResultSinks.toDocument(entity.relocate(offset)).toJson()).appendString("\n");
+                }
+                entities[0] += found.size();
+                admission.awaitWritable();
+                CompletableFuture<Void> written = admission.nextWrite();
+                context.runOnContext(v -> {
+                    if (response.closed() || response.ended()) {
+                        written.complete(null);
+                        return;
+                    }
+                    response.write(lines);
+                    if (response.writeQueueFull()) {
+                        response.drainHandler(drained -> written.complete(null));
+                    } else {
+                        written.complete(null);
+                    }
+                });
+            };
+            int characters;
+            if (document) {
+                try (TikaInputStream input = TikaInputStream.get(body.getBytes())) {
+                    characters = extracter.streamText(input, listener);
+                }
+            } else {
+                char[] text = body.toString(StandardCharsets.UTF_8.name()).toCharArray();
+                SentenceChunkHandler chunks = new SentenceChunkHandler(extracter.getChunkSize(), listener);
+                chunks.characters(text, 0, text.length);
+                chunks.endDocument();
+                characters = chunks.getLength();
+            }
+            return new Document("name", name)
+                    .append("characters", characters)
+                    .append("language", route.getLanguage())
+                    .append("entities", entities[0]);
+        } finally {
+            if (openNLP[0] != null) {
+                nlpPool.release(openNLP[0]);
+            }
+        }
+    }
+
+    /**
+     * Slot of an admitted request in {@link ExtractionServer#inFlight}, and the write its worker waits for
+     */
+    private final class Admission {
+        /**
+         * True until the request leaves the count
+         */
+        private final AtomicBoolean active = new AtomicBoolean(true);
+        /**
+         * Completed once the last write of the response is drained or the request left
+         */
+        private final AtomicReference<CompletableFuture<Void>> writable =
+                new AtomicReference<>(CompletableFuture.completedFuture(null));
+
+        /**
+         * Tell if the request still holds its slot
+         *
+         * @return True until answered, failed or closed
+         */
+        private boolean isActive() {
+            return active.get();
+        }
+
+        /**
+         * Release the slot, only the first call counts. Unblocks a worker waiting for the response to drain
+         */
+        private void leave() {
+            if (active.compareAndSet(true, false)) {
+                inFlight.decrementAndGet();
+            }
+            writable.get().complete(null);
+        }
+
+        /**
+         * Block the worker until the last write is drained or the request left
+         */
+        private void awaitWritable() {
+            writable.get().join();
+        }
+
+        /**
+         * Start a write, to be completed once drained
+         *
+         * @return Future of the new write
+         */
+        private CompletableFuture<Void> nextWrite() {
+            CompletableFuture<Void> written = new CompletableFuture<>();
+            writable.set(written);
+            if (!active.get()) {
+                written.complete(null);
+            }
+            return written;
+        }
+    }
+}
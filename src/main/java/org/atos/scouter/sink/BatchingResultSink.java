@@ -0,0 +1,263 @@
+package org.atos.scouter.sink;
+
+import org.atos.scouter.TikaTools.ExtractionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link ResultSink} which queues the results and writes them by batches on its own thread.
+ * A batch is written when it reaches batchSize results or when flushInterval elapsed since the last write.
+ * {@link BatchingResultSink#write(ExtractionResult)} only waits when queueSize results are pending, or when the
+ * pending results keep queueCharacters characters of text, that is when the destination is durably slower than the
+ * extraction. A result whose text is larger than queueCharacters waits until no other text is pending.
+ *
+ * @version 1.0
+ */
+public abstract class BatchingResultSink implements ResultSink {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchingResultSink.class);
+    /**
+     * Results waiting to be written
+     */
+    private final BlockingQueue<Pending> queue;
+    /**
+     * Characters of text the pending results may still keep, null if not bounded
+     */
+    private final Semaphore characters;
+    /**
+     * Maximum number of characters of text kept by the pending results
+     */
+    private final int maxCharacters;
+    /**
+     * Maximum number of results per batch
+     */
+    private final int batchSize;
+    /**
+     * Maximum time between two writes
+     */
+    private final long flushIntervalNanos;
+    /**
+     * Thread writing the batches
+     */
+    private final Thread flusher;
+    /**
+     * No more results are accepted
+     */
+    private volatile boolean closed;
+    /**
+     * Held for reading by the writes while they check closed and queue, for writing by close, so no result is
+     * queued once the sink thread may have stopped
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    /**
+     * Build a new sink, subclasses call {@link BatchingResultSink#start()} once constructed
+     *
+     * @param name            Name of the sink, used to name its thread
+     * @param queueSize       Maximum number of pending results
+     * @param queueCharacters Maximum number of characters of text kept by the pending results, 0 for no bound
+     * @param batchSize       Maximum number of results per batch
+     * @param flushInterval   Maximum time between two writes
+     * @param unit            Unit of flushInterval
+     * @throws NullPointerException     if name or unit is null
+     * @throws IllegalArgumentException if queueSize, batchSize or flushInterval is not positive, or queueCharacters
+     *                                  negative
+     */
+    protected BatchingResultSink(String name, int queueSize, long queueCharacters, int batchSize, long flushInterval,
+                                 TimeUnit unit) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(unit);
+        if (queueSize <= 0 || queueCharacters < 0 || batchSize <= 0 || flushInterval <= 0) {
+            throw new IllegalArgumentException("Queue size, batch size and flush interval must be positive");
+        }
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.maxCharacters = (int) Math.min(Integer.MAX_VALUE, queueCharacters);
+        this.characters = queueCharacters == 0 ? null : new Semaphore(maxCharacters);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = unit.toNanos(flushInterval);
+        this.flusher = new Thread(this::run, "scouter-sink-" + name);
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Start the thread writing the batches
+     */
+    protected final void start() {
+        flusher.start();
+    }
+
+    /**
+     * Write a batch of results, called on the sink thread only. The batch is written once this method returns
+     *
+     * @param batch Results to write, owned by the callee
+     */
+    protected abstract void writeBatch(List<ExtractionResult> batch);
+
+    /**
+     * Write a batch of results and call written once it is written, never if the write failed.
+     * Called on the sink thread only, sinks writing asynchronously override this method
+     *
+     * @param batch   Results to write, owned by the callee
+     * @param written Acknowledge the results of the batch
+     */
+    protected void writeBatch(List<ExtractionResult> batch, Runnable written) {
+        writeBatch(batch);
+        written.run();
+    }
+
+    @Override
+    public void write(ExtractionResult result, Runnable written) {
+        Objects.requireNonNull(result);
+        Pending pending = new Pending(result, written, weigh(result));
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Sink closed");
+            }
+            if (characters != null) {
+                characters.acquire(pending.characters);
+            }
+            try {
+                queue.put(pending);
+            } catch (InterruptedException e) {
+                release(pending.characters);
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing " + result.getPath(), e);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get number of characters of text a result keeps in the queue, capped to the bound of the queue
+     *
+     * @param result Result to queue
+     * @return Number of characters counted against queueCharacters
+     */
+    private int weigh(ExtractionResult result) {
+        String text = result.getText();
+        return characters == null || text == null ? 0 : Math.min(text.length(), maxCharacters);
+    }
+
+    private void release(int count) {
+        if (characters != null && count > 0) {
+            characters.release(count);
+        }
+    }
+
+    /**
+     * Stop accepting results and wait until the pending ones are written.
+     * Subclasses release their resources after calling this method.
+     */
+    @Override
+    public void close() {
+        // Waits for the writes in progress, the sink thread keeps draining the queue meanwhile
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while closing sink, " + queue.size() + " results not written");
+        }
+    }
+
+    /**
+     * Get number of results waiting to be written
+     *
+     * @return Number of pending results
+     */
+    public int getPending() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending result = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (result != null) {
+                    batch.add(result);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (batch.size() >= batchSize || System.nanoTime() >= deadline) {
+                flush(batch);
+                deadline = System.nanoTime() + flushIntervalNanos;
+            }
+        }
+        queue.drainTo(batch);
+        flush(batch);
+    }
+
+    private void flush(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<ExtractionResult> results = new ArrayList<>(batch.size());
+        List<Runnable> acknowledgements = new ArrayList<>();
+        int batchCharacters = 0;
+        for (Pending pending : batch) {
+            batchCharacters += pending.characters;
+            results.add(pending.result);
+            if (pending.written != null) {
+                acknowledgements.add(pending.written);
+            }
+        }
+        try {
+            writeBatch(results, () -> acknowledge(acknowledgements));
+        } catch (RuntimeException e) {
+            LOGGER.error("Cannot write " + batch.size() + " results : " + e.getMessage());
+        } finally {
+            release(batchCharacters);
+        }
+        batch.clear();
+    }
+
+    private static void acknowledge(List<Runnable> acknowledgements) {
+        for (Runnable written : acknowledgements) {
+            try {
+                written.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("Cannot acknowledge a written result : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Result waiting to be written with its acknowledgement
+     */
+    private static final class Pending {
+        private final ExtractionResult result;
+        private final Runnable written;
+        private final int characters;
+
+        private Pending(ExtractionResult result, Runnable written, int characters) {
+            this.result = result;
+            this.written = written;
+            this.characters = characters;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.atos.scouter.sink;
+
+import org.atos.scouter.TikaTools.ExtractionResult;
+import org.atos.scouter.entity.CooccurrenceGraph;
+import org.atos.scouter.entity.CooccurrenceStore;
+import org.atos.scouter.entity.EntityRegistry;
+import org.atos.scouter.metrics.MetricsLogger;
+import org.atos.scouter.util.nlp.LanguageRouter;
+import org.atos.scouter.util.nlp.NamedEntity;
+import org.atos.scouter.util.nlp.OpenNLP;
+import org.atos.scouter.util.nlp.OpenNLPPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResultSink} registering the entities of each document in an {@link EntityRegistry}, which gives each
+ * canonical form an int id and counts the documents mentioning it. The documents of a batch are lemmatized in
+ * parallel, each with an {@link OpenNLP} instance borrowed from the pool.
+ * With a graph path, the pairs of entities of each document are also counted in a {@link CooccurrenceGraph},
+ * one shard per parallel task, and exported to a {@link CooccurrenceStore} every snapshotInterval and when closed.
+ *
+ * @version 1.0
+ */
+public class EntityResultSink extends BatchingResultSink {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityResultSink.class);
+    /**
+     * Registry of the entities
+     */
+    private final EntityRegistry registry;
+    /**
+     * Co-occurrences not exported yet, null without graph
+     */
+    private final CooccurrenceGraph graph;
+    /**
+     * Store of the co-occurrences, null without graph
+     */
+    private final CooccurrenceStore store;
+    /**
+     * Minimum time between two exports of the graph, 0 to only export when closed
+     */
+    private final long exportIntervalNanos;
+    /**
+     * Time of the last export, read and written on the sink thread only
+     */
+    private long lastExport = System.nanoTime();
+
+    /**
+     * Open or create a registry, and a co-occurrence store if graphPath is not null
+     *
+     * @param path             Snapshot file of the registry
+     * @param graphPath        Directory of the co-occurrence store, null to not count the co-occurrences
+     * @param snapshotInterval Time between two snapshots and two exports, 0 to only write them when closed
+     * @param queueSize        Maximum number of pending results
+     * @param queueCharacters  Maximum number of characters of text kept by the pending results, 0 for no bound
+     * @param batchSize        Maximum number of results per batch
+     * @param flushInterval    Maximum time between two writes
+     * @param unit             Unit of snapshotInterval and flushInterval
+     * @throws NullPointerException     if path or unit is null
+     * @throws IllegalArgumentException if a size is not positive
+     * @throws IOException              if the registry cannot be read
+     */
+    public EntityResultSink(Path path, Path graphPath, long snapshotInterval, int queueSize, long queueCharacters,
+                            int batchSize, long flushInterval, TimeUnit unit) throws IOException {
+        super("entity", queueSize, queueCharacters, batchSize, flushInterval, unit);
+        this.registry = new EntityRegistry(path, snapshotInterval, unit);
+        if (graphPath != null) {
+            this.graph = new CooccurrenceGraph();
+            this.store = new CooccurrenceStore(graphPath);
+        } else {
+            this.graph = null;
+            this.store = null;
+        }
+        this.exportIntervalNanos = unit.toNanos(snapshotInterval);
+        MetricsLogger.getMetricsLogger().gauge("entity.registry.size", registry::size);
+        start();
+    }
+
+    @Override
+    protected void writeBatch(List<ExtractionResult> batch) {
+        if (graph == null) {
+            batch.parallelStream().forEach(this::register);
+            return;
+        }
+        graph.publish(batch.parallelStream().collect(CooccurrenceGraph.Shard::new,
+                (shard, result) -> shard.addDocument(register(result), sentences(result.getEntities())),
+                CooccurrenceGraph.Shard::addAll));
+        if (exportIntervalNanos > 0 && System.nanoTime() - lastExport >= exportIntervalNanos) {
+            store.export(graph, registry);
+            lastExport = System.nanoTime();
+        }
+    }
+
+    /**
+     * Register the entities of a document with an {@link OpenNLP} of its language borrowed for the document
+     *
+     * @param result Result of the document
+     * @return Id of each entity
+     */
+    private int[] register(ExtractionResult result) {
+        OpenNLPPool pool = OpenNLPPool.getInstance();
+        String language = result.getLanguage();
+        OpenNLP openNLP = language != null && LanguageRouter.isSupported(language)
+                ? pool.borrow(language) : pool.borrow();
+        try {
+            return registry.addDocument(openNLP, result.getEntities());
+        } finally {
+            pool.release(openNLP);
+        }
+    }
+
+    /**
+     * Number the sentences of a document, the sentence index of an entity restarting in each chunk
+     *
+     * @param entities Entities of the document, in document order
+     * @return Sentence of each entity, the same for the entities sharing their chunk and their sentence index
+     */
+    private static int[] sentences(List<NamedEntity> entities) {
+        int[] sentences = new int[entities.size()];
+        int sentence = -1;
+        NamedEntity previous = null;
+        for (int i = 0; i < sentences.length; i++) {
+            NamedEntity entity = entities.get(i);
+            if (previous == null || entity.getChunk() != previous.getChunk()
+                    || entity.getSentence() != previous.getSentence()) {
+                sentence++;
+            }
+            sentences[i] = sentence;
+            previous = entity;
+        }
+        return sentences;
+    }
+
+    /**
+     * Get the registry fed by this sink
+     *
+     * @return {@link EntityResultSink#registry}
+     */
+    public EntityRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Register the pending results, export the graph and write the registry
+     */
+    @Override
+    public void close() {
+        super.close();
+        if (store != null) {
+            store.export(graph, registry);
+            store.close();
+        }
+        try {
+            registry.close();
+        } catch (IOException e) {
+            LOGGER.error("Cannot write entity registry : " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.atos.scouter.sink;
+
+import org.atos.scouter.TikaTools.ExtractionResult;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResultSink} writing one JSON document per line in a local file, or on the standard output
+ *
+ * @version 1.0
+ */
+public class FileResultSink extends BatchingResultSink {
+    /**
+     * Destination of the results
+     */
+    private final Writer writer;
+    /**
+     * The destination is the standard output, which must stay open
+     */
+    private final boolean standardOutput;
+
+    /**
+     * Build a sink writing in a file, created or truncated
+     *
+     * @param file            File to write, null for the standard output
+     * @param queueSize       Maximum number of pending results
+     * @param queueCharacters Maximum number of characters of text kept by the pending results, 0 for no bound
+     * @param batchSize       Maximum number of results per batch
+     * @param flushInterval   Maximum time between two writes
+     * @param unit            Unit of flushInterval
+     * @throws IOException if the file cannot be opened
+     */
+    public FileResultSink(Path file, int queueSize, long queueCharacters, int batchSize, long flushInterval,
+                          TimeUnit unit) throws IOException {
+        super("file", queueSize, queueCharacters, batchSize, flushInterval, unit);
+        standardOutput = file == null;
+        writer = standardOutput
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        start();
+    }
+
+    @Override
+    protected void writeBatch(List<ExtractionResult> batch) {
+        try {
+            for (ExtractionResult result : batch) {
+                writer.write(ResultSinks.toDocument(result).toJson());
+                writer.write(System.lineSeparator());
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        try {
+            if (standardOutput) {
+                writer.flush();
+            } else {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
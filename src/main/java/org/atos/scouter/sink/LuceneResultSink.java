@@ -0,0 +1,232 @@
+package org.atos.scouter.sink;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.atos.scouter.TikaTools.ExtractionResult;
+import org.atos.scouter.util.nlp.NamedEntity;
+import org.atos.scouter.util.nlp.OpenNLP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResultSink} indexing each document in a local Lucene index : its normalized text, searchable,
+ * and its entities, one field per type (entity.PERSON, entity.ORGANIZATION, entity.LOCATION) indexed as exact
+ * terms and as sorted set doc values for faceting. A document extracted again replaces its previous version.
+ * The documents are added by batches on the sink thread, merged in the background by a
+ * {@link ConcurrentMergeScheduler} and committed every commitInterval, so the extraction never waits for Lucene
+ * unless the queue is full, in results or in characters of text. Searches run on a near-real-time reader refreshed after each batch.
+ *
+ * @version 1.0
+ */
+public class LuceneResultSink extends BatchingResultSink {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(LuceneResultSink.class);
+    /**
+     * Field of the document path, the identifier of a document
+     */
+    public static final String PATH_FIELD = "path";
+    /**
+     * Field of the normalized text
+     */
+    public static final String TEXT_FIELD = "text";
+    /**
+     * Field of the number of characters
+     */
+    public static final String CHARACTERS_FIELD = "characters";
+    /**
+     * Field of the language
+     */
+    public static final String LANGUAGE_FIELD = "language";
+    /**
+     * Prefix of the entity fields, followed by the type of entity
+     */
+    public static final String ENTITY_FIELD_PREFIX = "entity.";
+    /**
+     * Directory of the index
+     */
+    private final Directory directory;
+    /**
+     * Writer of the index
+     */
+    private final IndexWriter writer;
+    /**
+     * Near-real-time searchers
+     */
+    private final SearcherManager searcherManager;
+    /**
+     * Minimum time between two commits
+     */
+    private final long commitIntervalNanos;
+    /**
+     * Time of the last commit, read and written on the sink thread only
+     */
+    private long lastCommit = System.nanoTime();
+
+    /**
+     * Open or create an index
+     *
+     * @param path            Directory of the index
+     * @param ramBuffer       Size in bytes of the buffer of added documents before a segment is flushed
+     * @param commitInterval  Minimum time between two commits
+     * @param queueSize       Maximum number of pending results
+     * @param queueCharacters Maximum number of characters of text kept by the pending results, 0 for no bound
+     * @param batchSize       Maximum number of results per batch
+     * @param flushInterval   Maximum time between two writes
+     * @param unit            Unit of commitInterval and flushInterval
+     * @throws NullPointerException     if path or unit is null
+     * @throws IllegalArgumentException if a size is not positive
+     * @throws IOException              if the index cannot be opened
+     */
+    public LuceneResultSink(Path path, long ramBuffer, long commitInterval, int queueSize, long queueCharacters,
+                            int batchSize, long flushInterval, TimeUnit unit) throws IOException {
+        super("lucene", queueSize, queueCharacters, batchSize, flushInterval, unit);
+        Objects.requireNonNull(path);
+        if (ramBuffer <= 0) {
+            throw new IllegalArgumentException("RAM buffer size must be positive");
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        ConcurrentMergeScheduler mergeScheduler = new ConcurrentMergeScheduler();
+        mergeScheduler.setMaxMergesAndThreads(Math.max(2, cores / 2) + 2, Math.max(1, cores / 2));
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_4_10_3, new StandardAnalyzer())
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                .setRAMBufferSizeMB(ramBuffer / (1024.0 * 1024.0))
+                .setMergePolicy(new TieredMergePolicy())
+                .setMergeScheduler(mergeScheduler);
+        this.directory = FSDirectory.open(path.toFile());
+        this.writer = new IndexWriter(directory, config);
+        this.searcherManager = new SearcherManager(writer, true, null);
+        this.commitIntervalNanos = unit.toNanos(commitInterval);
+        start();
+    }
+
+    @Override
+    protected void writeBatch(List<ExtractionResult> batch) {
+        try {
+            for (ExtractionResult result : batch) {
+                writer.updateDocument(new Term(PATH_FIELD, result.getPath()), toDocument(result));
+            }
+            searcherManager.maybeRefresh();
+            if (System.nanoTime() - lastCommit >= commitIntervalNanos) {
+                writer.commit();
+                lastCommit = System.nanoTime();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot index " + batch.size() + " documents", e);
+        }
+    }
+
+    /**
+     * Find the documents mentioning an entity
+     *
+     * @param type       Type of the entity
+     * @param text       Text of the entity, exactly as extracted
+     * @param maxResults Maximum number of paths returned
+     * @return Paths of the documents, in index order
+     * @throws NullPointerException if type or text is null
+     * @throws IOException          if the index cannot be read
+     */
+    public List<String> findDocuments(OpenNLP.nerOptions type, String text, int maxResults) throws IOException {
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(text);
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs hits = searcher.search(new TermQuery(new Term(ENTITY_FIELD_PREFIX + type.name(), text)),
+                    Math.max(1, maxResults));
+            List<String> paths = new ArrayList<>(hits.scoreDocs.length);
+            for (ScoreDoc hit : hits.scoreDocs) {
+                paths.add(searcher.doc(hit.doc).get(PATH_FIELD));
+            }
+            return paths;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Get the searchers on the index, to run other queries
+     *
+     * @return {@link LuceneResultSink#searcherManager}
+     */
+    public SearcherManager getSearcherManager() {
+        return searcherManager;
+    }
+
+    /**
+     * Index the pending results, commit and close the index
+     */
+    @Override
+    public void close() {
+        super.close();
+        try {
+            writer.commit();
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        } catch (IOException e) {
+            LOGGER.error("Cannot close index : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Convert a result to a Lucene document
+     *
+     * @param result Result to convert
+     * @return Document with the path, the text if kept, the language if known and the entities of the result
+     */
+    private static Document toDocument(ExtractionResult result) {
+        Document document = new Document();
+        document.add(new StringField(PATH_FIELD, result.getPath(), Field.Store.YES));
+        document.add(new LongField(CHARACTERS_FIELD, result.getCharacters(), Field.Store.YES));
+        if (result.getText() != null) {
+            document.add(new TextField(TEXT_FIELD, result.getText(), Field.Store.NO));
+        }
+        if (result.getLanguage() != null) {
+            document.add(new StringField(LANGUAGE_FIELD, result.getLanguage(), Field.Store.YES));
+        }
+        Map<OpenNLP.nerOptions, Set<String>> entities = new EnumMap<>(OpenNLP.nerOptions.class);
+        for (NamedEntity entity : result.getEntities()) {
+            entities.computeIfAbsent(entity.getType(), t -> new LinkedHashSet<>()).add(entity.getText());
+        }
+        for (Map.Entry<OpenNLP.nerOptions, Set<String>> type : entities.entrySet()) {
+            String field = ENTITY_FIELD_PREFIX + type.getKey().name();
+            for (String text : type.getValue()) {
+                document.add(new StringField(field, text, Field.Store.NO));
+                document.add(new SortedSetDocValuesField(field, new BytesRef(text)));
+            }
+        }
+        return document;
+    }
+}
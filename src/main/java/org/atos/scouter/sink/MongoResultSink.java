@@ -0,0 +1,121 @@
+package org.atos.scouter.sink;
+
+import com.mongodb.async.client.MongoClient;
+import com.mongodb.async.client.MongoClients;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import org.atos.scouter.TikaTools.ExtractionResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResultSink} inserting the results in a MongoDB collection with the asynchronous driver.
+ * Each batch is one unordered insertMany, at most maxInFlight batches are sent and not yet acknowledged.
+ *
+ * @version 1.0
+ */
+public class MongoResultSink extends BatchingResultSink {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoResultSink.class);
+    /**
+     * Client connected to MongoDB
+     */
+    private final MongoClient client;
+    /**
+     * Collection receiving the results
+     */
+    private final MongoCollection<Document> collection;
+    /**
+     * One permit per batch which can be in flight
+     */
+    private final Semaphore inFlight;
+    /**
+     * Maximum number of batches in flight
+     */
+    private final int maxInFlight;
+
+    /**
+     * Build a new sink
+     *
+     * @param uri             Connection string of MongoDB
+     * @param database        Name of the database
+     * @param collectionName  Name of the collection
+     * @param maxInFlight     Maximum number of batches sent and not yet acknowledged
+     * @param queueSize       Maximum number of pending results
+     * @param queueCharacters Maximum number of characters of text kept by the pending results, 0 for no bound
+     * @param batchSize       Maximum number of results per batch
+     * @param flushInterval   Maximum time between two writes
+     * @param unit            Unit of flushInterval
+     * @throws NullPointerException     if uri, database, collectionName or unit is null
+     * @throws IllegalArgumentException if a size is not positive
+     */
+    public MongoResultSink(String uri, String database, String collectionName, int maxInFlight,
+                           int queueSize, long queueCharacters, int batchSize, long flushInterval, TimeUnit unit) {
+        super("mongo", queueSize, queueCharacters, batchSize, flushInterval, unit);
+        Objects.requireNonNull(uri);
+        Objects.requireNonNull(database);
+        Objects.requireNonNull(collectionName);
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Maximum number of batches in flight must be positive");
+        }
+        this.client = MongoClients.create(uri);
+        this.collection = client.getDatabase(database).getCollection(collectionName);
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        start();
+    }
+
+    @Override
+    protected void writeBatch(List<ExtractionResult> batch) {
+        writeBatch(batch, () -> {
+        });
+    }
+
+    /**
+     * Send the batch, written is called once MongoDB acknowledged the insert
+     *
+     * @param batch   Results to write, owned by the callee
+     * @param written Acknowledge the results of the batch
+     */
+    @Override
+    protected void writeBatch(List<ExtractionResult> batch, Runnable written) {
+        List<Document> documents = new ArrayList<>(batch.size());
+        for (ExtractionResult result : batch) {
+            documents.add(ResultSinks.toDocument(result));
+        }
+        inFlight.acquireUninterruptibly();
+        try {
+            collection.insertMany(documents, new InsertManyOptions().ordered(false), (result, t) -> {
+                inFlight.release();
+                if (t != null) {
+                    LOGGER.error("Cannot insert " + documents.size() + " results : " + t.getMessage());
+                } else {
+                    written.run();
+                }
+            });
+        } catch (RuntimeException e) {
+            // The callback is never called when the driver fails before sending the batch
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Write the pending results, wait for the batches in flight and close the connection
+     */
+    @Override
+    public void close() {
+        super.close();
+        inFlight.acquireUninterruptibly(maxInFlight);
+        client.close();
+    }
+}
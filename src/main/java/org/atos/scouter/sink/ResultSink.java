@@ -0,0 +1,40 @@
+package org.atos.scouter.sink;
+
+import org.atos.scouter.TikaTools.ExtractionResult;
+
+/**
+ * Destination of the results of the extraction
+ *
+ * @version 1.0
+ * @see ResultSinks#create(org.atos.scouter.util.PropertiesManager)
+ */
+public interface ResultSink extends AutoCloseable {
+
+    /**
+     * Write the result of a document. May be called by several threads
+     *
+     * @param result Result to write
+     * @throws NullPointerException  if result is null
+     * @throws IllegalStateException if the sink is closed
+     */
+    default void write(ExtractionResult result) {
+        write(result, null);
+    }
+
+    /**
+     * Write the result of a document and acknowledge it once written. May be called by several threads
+     *
+     * @param result  Result to write
+     * @param written Called once the result is written, on a thread of the sink, never if the write failed.
+     *                Null for no acknowledgement
+     * @throws NullPointerException  if result is null
+     * @throws IllegalStateException if the sink is closed
+     */
+    void write(ExtractionResult result, Runnable written);
+
+    /**
+     * Write the pending results and release the resources of the sink
+     */
+    @Override
+    void close();
+}
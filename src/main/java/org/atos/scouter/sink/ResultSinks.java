@@ -0,0 +1,162 @@
+package org.atos.scouter.sink;
+
+import org.atos.scouter.TikaTools.ExtractionResult;
+import org.atos.scouter.util.ConfigKeys;
+import org.atos.scouter.util.PropertiesManager;
+import org.atos.scouter.util.nlp.NamedEntity;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ResultSinks which provides static method to build and feed {@link ResultSink}
+ *
+ * @version 1.0
+ */
+public final class ResultSinks {
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private ResultSinks() {
+
+    }
+
+    /**
+     * Build the sink described by the configuration : sink.type is file (default) or mongo.
+     * With index.enabled, the results also go to a {@link LuceneResultSink}, with entity.enabled to an
+     * {@link EntityResultSink}
+     *
+     * @param propertiesManager Configuration
+     * @return New sink, to close once the extraction is over
+     * @throws NullPointerException if propertiesManager is null
+     * @throws IOException          if the sink cannot be opened
+     */
+    public static ResultSink create(PropertiesManager propertiesManager) throws IOException {
+        Objects.requireNonNull(propertiesManager);
+        int queueSize = propertiesManager.get(ConfigKeys.SINK_QUEUE_SIZE);
+        long queueCharacters = propertiesManager.get(ConfigKeys.SINK_QUEUE_CHARACTERS);
+        int batchSize = propertiesManager.get(ConfigKeys.SINK_BATCH_SIZE);
+        long flushInterval = propertiesManager.get(ConfigKeys.SINK_FLUSH_INTERVAL).toNanos();
+        ResultSink sink = createPrimary(propertiesManager, queueSize, queueCharacters, batchSize, flushInterval);
+        try {
+            if (propertiesManager.get(ConfigKeys.INDEX_ENABLED)) {
+                sink = new TeeResultSink(sink, new LuceneResultSink(propertiesManager.get(ConfigKeys.INDEX_PATH),
+                        propertiesManager.get(ConfigKeys.INDEX_RAM_BUFFER),
+                        propertiesManager.get(ConfigKeys.INDEX_COMMIT_INTERVAL).toNanos(),
+                        queueSize, queueCharacters, batchSize, flushInterval, TimeUnit.NANOSECONDS));
+            }
+            if (propertiesManager.get(ConfigKeys.ENTITY_ENABLED)) {
+                sink = new TeeResultSink(sink, new EntityResultSink(propertiesManager.get(ConfigKeys.ENTITY_PATH),
+                        propertiesManager.get(ConfigKeys.ENTITY_GRAPH_PATH),
+                        propertiesManager.get(ConfigKeys.ENTITY_SNAPSHOT_INTERVAL).toNanos(),
+                        queueSize, queueCharacters, batchSize, flushInterval, TimeUnit.NANOSECONDS));
+            }
+            return sink;
+        } catch (IOException | RuntimeException e) {
+            sink.close();
+            throw e;
+        }
+    }
+
+    private static ResultSink createPrimary(PropertiesManager propertiesManager, int queueSize, long queueCharacters,
+                                            int batchSize, long flushInterval) throws IOException {
+        if ("mongo".equals(propertiesManager.get(ConfigKeys.SINK_TYPE))) {
+            return new MongoResultSink(
+                    propertiesManager.get(ConfigKeys.SINK_MONGO_URI),
+                    propertiesManager.get(ConfigKeys.SINK_MONGO_DATABASE),
+                    propertiesManager.get(ConfigKeys.SINK_MONGO_COLLECTION),
+                    propertiesManager.get(ConfigKeys.SINK_MONGO_INFLIGHT),
+                    queueSize, queueCharacters, batchSize, flushInterval, TimeUnit.NANOSECONDS);
+        }
+        String path = propertiesManager.get(ConfigKeys.SINK_FILE_PATH);
+        return new FileResultSink("-".equals(path) ? null : Paths.get(path),
+                queueSize, queueCharacters, batchSize, flushInterval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Convert a result to a document
+     *
+     * @param result Result to convert
+     * @return Document with the path, the number of characters, the language if known and the entities of the result
+     * @throws NullPointerException if result is null
+     */
+    public static Document toDocument(ExtractionResult result) {
+        Objects.requireNonNull(result);
+        List<Document> entities = new ArrayList<>(result.getEntities().size());
+        for (NamedEntity entity : result.getEntities()) {
+            entities.add(toDocument(entity));
+        }
+        Document document = new Document("path", result.getPath())
+                .append("characters", result.getCharacters());
+        if (result.getLanguage() != null) {
+            document.append("language", result.getLanguage());
+        }
+        return document.append("entities", entities);
+    }
+
+    /**
+     * Convert an entity to a document
+     *
+     * @param entity Entity to convert
+     * @return Document with the type, the text, the offsets, the probability and the page, if known, of the entity
+     * @throws NullPointerException if entity is null
+     */
+    public static Document toDocument(NamedEntity entity) {
+        Objects.requireNonNull(entity);
+        Document document = new Document("type", entity.getType().name())
+                .append("text", entity.getText())
+                .append("start", entity.getStart())
+                .append("end", entity.getEnd())
+                .append("probability", entity.getProbability());
+        if (entity.getPage() > 0) {
+            document.append("page", entity.getPage());
+        }
+        return document;
+    }
+
+    /**
+     * Write each result to two sinks, a result is acknowledged once written by both
+     */
+    private static final class TeeResultSink implements ResultSink {
+        private final ResultSink first;
+        private final ResultSink second;
+
+        private TeeResultSink(ResultSink first, ResultSink second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(ExtractionResult result, Runnable written) {
+            if (written == null) {
+                first.write(result);
+                second.write(result);
+                return;
+            }
+            AtomicInteger remaining = new AtomicInteger(2);
+            Runnable both = () -> {
+                if (remaining.decrementAndGet() == 0) {
+                    written.run();
+                }
+            };
+            first.write(result, both);
+            second.write(result, both);
+        }
+
+        @Override
+        public void close() {
+            try {
+                first.close();
+            } finally {
+                second.close();
+            }
+        }
+    }
+}
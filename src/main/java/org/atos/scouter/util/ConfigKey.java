@@ -0,0 +1,411 @@
+package org.atos.scouter.util;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Typed configuration key : its name, the parser of its value and its default value, null if the key is required.
+ * A key with a default value may still be required when another key has a given value, see
+ * {@link ConfigKey#ofExistingPath(String, ConfigKey, String)}.
+ * Every key is registered when built and parsed by {@link PropertiesManager} when the configuration is loaded,
+ * so a read with {@link PropertiesManager#get(ConfigKey)} is an array access without parsing nor locking.
+ *
+ * @param <T> Type of the value
+ * @version 1.0
+ * @see ConfigKeys
+ */
+public final class ConfigKey<T> {
+    /**
+     * Every key built, indexed by {@link ConfigKey#index}
+     */
+    private static final List<ConfigKey<?>> REGISTRY = new CopyOnWriteArrayList<>();
+    /**
+     * Name of the property
+     */
+    private final String name;
+    /**
+     * Default value before parsing, null if the key is required
+     */
+    private final String defaultValue;
+    /**
+     * Parse a value, throwing IllegalArgumentException if invalid
+     */
+    private final Function<String, T> parser;
+    /**
+     * Key whose value makes this key required when empty, null if it never does
+     */
+    private final ConfigKey<String> requiredWhen;
+    /**
+     * Value of {@link ConfigKey#requiredWhen} which makes this key required
+     */
+    private final String requiredValue;
+    /**
+     * Position of the key in the registry and in the parsed snapshots
+     */
+    private final int index;
+
+    private ConfigKey(String name, String defaultValue, Function<String, T> parser) {
+        this(name, defaultValue, parser, null, null);
+    }
+
+    private ConfigKey(String name, String defaultValue, Function<String, T> parser, ConfigKey<String> requiredWhen,
+                      String requiredValue) {
+        this.name = Objects.requireNonNull(name);
+        this.defaultValue = defaultValue;
+        this.parser = parser;
+        this.requiredWhen = requiredWhen;
+        this.requiredValue = requiredValue;
+        synchronized (REGISTRY) {
+            this.index = REGISTRY.size();
+            REGISTRY.add(this);
+        }
+    }
+
+    /**
+     * Build an int key
+     *
+     * @param name         Name of the property
+     * @param defaultValue Default value, null if required
+     * @return New key
+     * @throws NullPointerException if name is null
+     */
+    public static ConfigKey<Integer> ofInt(String name, String defaultValue) {
+        return new ConfigKey<>(name, defaultValue, value -> parseInt(value, Integer.MIN_VALUE));
+    }
+
+    /**
+     * Build an int key whose value must be at least 1
+     *
+     * @param name         Name of the property
+     * @param defaultValue Default value, null if required
+     * @return New key
+     * @throws NullPointerException if name is null
+     */
+    public static ConfigKey<Integer> ofPositiveInt(String name, String defaultValue) {
+        return new ConfigKey<>(name, defaultValue, value -> parseInt(value, 1));
+    }
+
+    /**
+     * Build a long key whose value must not be negative
+     *
+     * @param name         Name of the property
+     * @param defaultValue Default value, null if required
+     * @return New key
+     * @throws NullPointerException if name is null
+     */
+    public static ConfigKey<Long> ofLong(String name, String defaultValue) {
+        return new ConfigKey<>(name, defaultValue, value -> {
+            long parsed = Long.parseLong(value);
+            if (parsed < 0) {
+                throw new IllegalArgumentException("must not be negative");
+            }
+            return parsed;
+        });
+    }
+
+    /**
+     * Build a boolean key, true or false
+     *
+     * @param name         Name of the property
+     * @param defaultValue Default value, null if required
+     * @return New key
+     * @throws NullPointerException if name is null
+     */
+    public static ConfigKey<Boolean> ofBoolean(String name, String defaultValue) {
+        return new ConfigKey<>(name, defaultValue, value -> {
+            if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+                throw new IllegalArgumentException("expected true or false");
+            }
+            return Boolean.valueOf(value);
+        });
+    }
+
+    /**
+     * Build a string key
+     *
+     * @param name         Name of the property
+     * @param defaultValue Default value, null if required
+     * @return New key
+     * @throws NullPointerException if name is null
+     */
+    public static ConfigKey<String> ofString(String name, String defaultValue) {
+        return new ConfigKey<>(name, defaultValue, Function.identity());
+    }
+
+    /**
+     * Build a string key restricted to some values
+     *
+     * @param name         Name of the property
+     * @param defaultValue Default value, null if required
+     * @param values       Allowed values
+     * @return New key
+     * @throws NullPointerException if name is null
+     */
+    public static ConfigKey<String> ofChoice(String name, String defaultValue, String... values) {
+        List<String> allowed = Arrays.asList(values.clone());
+        return new ConfigKey<>(name, defaultValue, value -> {
+            if (!allowed.contains(value)) {
+                throw new IllegalArgumentException("expected one of " + allowed);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Build a path key, an empty value gives null
+     *
+     * @param name         Name of the property
+     * @param defaultValue Default value, null if required
+     * @return New key
+     * @throws NullPointerException if name is null
+     */
+    public static ConfigKey<Path> ofPath(String name, String defaultValue) {
+        return new ConfigKey<>(name, defaultValue, value -> value.isEmpty() ? null : Paths.get(value));
+    }
+
+    /**
+     * Build a path key which must name an existing file or directory when the configuration is loaded, an empty
+     * value gives null
+     *
+     * @param name         Name of the property
+     * @param defaultValue Default value, null if required
+     * @return New key
+     * @throws NullPointerException if name is null
+     */
+    public static ConfigKey<Path> ofExistingPath(String name, String defaultValue) {
+        return new ConfigKey<>(name, defaultValue, ConfigKey::parseExistingPath);
+    }
+
+    /**
+     * Build a path key which must name an existing file or directory when the configuration is loaded, required
+     * only when another key has a given value, empty otherwise
+     *
+     * @param name          Name of the property
+     * @param requiredWhen  Key whose value makes this key required
+     * @param requiredValue Value of requiredWhen which makes this key required
+     * @return New key
+     * @throws NullPointerException if an argument is null
+     */
+    public static ConfigKey<Path> ofExistingPath(String name, ConfigKey<String> requiredWhen, String requiredValue) {
+        return new ConfigKey<>(name, "", ConfigKey::parseExistingPath, Objects.requireNonNull(requiredWhen),
+                Objects.requireNonNull(requiredValue));
+    }
+
+    /**
+     * Build a duration key : a number followed by ms, s, m or h, or a bare number in defaultUnit
+     *
+     * @param name         Name of the property
+     * @param defaultValue Default value, null if required
+     * @param defaultUnit  Unit of a bare number
+     * @return New key
+     * @throws NullPointerException if name or defaultUnit is null
+     */
+    public static ConfigKey<Duration> ofDuration(String name, String defaultValue, TimeUnit defaultUnit) {
+        Objects.requireNonNull(defaultUnit);
+        return new ConfigKey<>(name, defaultValue, value -> {
+            String lower = value.toLowerCase(Locale.ROOT);
+            TimeUnit unit = defaultUnit;
+            String number = lower;
+            if (lower.endsWith("ms")) {
+                unit = TimeUnit.MILLISECONDS;
+                number = lower.substring(0, lower.length() - 2);
+            } else if (lower.endsWith("s")) {
+                unit = TimeUnit.SECONDS;
+                number = lower.substring(0, lower.length() - 1);
+            } else if (lower.endsWith("m")) {
+                unit = TimeUnit.MINUTES;
+                number = lower.substring(0, lower.length() - 1);
+            } else if (lower.endsWith("h")) {
+                unit = TimeUnit.HOURS;
+                number = lower.substring(0, lower.length() - 1);
+            }
+            long amount = Long.parseLong(number.trim());
+            if (amount < 0) {
+                throw new IllegalArgumentException("must not be negative");
+            }
+            return Duration.ofNanos(unit.toNanos(amount));
+        });
+    }
+
+    /**
+     * Build a size key in bytes : a number optionally followed by k, m or g (powers of 1024)
+     *
+     * @param name         Name of the property
+     * @param defaultValue Default value, null if required
+     * @return New key
+     * @throws NullPointerException if name is null
+     */
+    public static ConfigKey<Long> ofSize(String name, String defaultValue) {
+        return new ConfigKey<>(name, defaultValue, value -> {
+            String lower = value.toLowerCase(Locale.ROOT);
+            if (lower.endsWith("b")) {
+                lower = lower.substring(0, lower.length() - 1);
+            }
+            int shift = 0;
+            if (lower.endsWith("k")) {
+                shift = 10;
+            } else if (lower.endsWith("m")) {
+                shift = 20;
+            } else if (lower.endsWith("g")) {
+                shift = 30;
+            }
+            long amount = Long.parseLong((shift == 0 ? lower : lower.substring(0, lower.length() - 1)).trim());
+            if (amount < 0 || amount > Long.MAX_VALUE >> shift) {
+                throw new IllegalArgumentException("out of range");
+            }
+            return amount << shift;
+        });
+    }
+
+    /**
+     * Build an enum key, the value being the name of a constant
+     *
+     * @param name         Name of the property
+     * @param type         Enum class
+     * @param defaultValue Default value, null if required
+     * @param <E>          Type of the enum
+     * @return New key
+     * @throws NullPointerException if name or type is null
+     */
+    public static <E extends Enum<E>> ConfigKey<E> ofEnum(String name, Class<E> type, String defaultValue) {
+        Objects.requireNonNull(type);
+        return new ConfigKey<>(name, defaultValue, value -> Enum.valueOf(type, value));
+    }
+
+    /**
+     * Build a key holding a set of enum constants separated by commas
+     *
+     * @param name         Name of the property
+     * @param type         Enum class
+     * @param defaultValue Default value, null if required
+     * @param <E>          Type of the enum
+     * @return New key, its values are unmodifiable
+     * @throws NullPointerException if name or type is null
+     */
+    public static <E extends Enum<E>> ConfigKey<Set<E>> ofEnumSet(String name, Class<E> type, String defaultValue) {
+        Objects.requireNonNull(type);
+        return new ConfigKey<>(name, defaultValue, value -> {
+            Set<E> set = EnumSet.noneOf(type);
+            for (String constant : value.split(",")) {
+                if (!constant.trim().isEmpty()) {
+                    set.add(Enum.valueOf(type, constant.trim()));
+                }
+            }
+            return Collections.unmodifiableSet(set);
+        });
+    }
+
+    /**
+     * Get every key built so far
+     *
+     * @return Keys in registration order
+     */
+    static List<ConfigKey<?>> registered() {
+        return Collections.unmodifiableList(REGISTRY);
+    }
+
+    /**
+     * Parse the value of this key in a raw configuration
+     *
+     * @param raw Raw configuration
+     * @return Parsed value, or default value parsed if absent
+     * @throws IllegalArgumentException if the key is required and absent or empty, or if the value is invalid
+     */
+    T parse(Map<String, String> raw) {
+        if (isMissing(raw)) {
+            throw new IllegalArgumentException("missing");
+        }
+        String value = raw.getOrDefault(name, defaultValue);
+        try {
+            return parser.apply(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid value '" + value + "' : " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Tell if the key has no default value
+     *
+     * @return True if the key must be in the configuration, whatever the other keys
+     */
+    public boolean isRequired() {
+        return defaultValue == null;
+    }
+
+    /**
+     * Tell if the key is required in a raw configuration but absent or empty
+     *
+     * @param raw Raw configuration
+     * @return True if the key is missing
+     */
+    boolean isMissing(Map<String, String> raw) {
+        String value = raw.getOrDefault(name, defaultValue);
+        if (value == null || value.trim().isEmpty() && defaultValue == null) {
+            return true;
+        }
+        if (requiredWhen == null || !value.trim().isEmpty()) {
+            return false;
+        }
+        try {
+            return requiredValue.equals(requiredWhen.parse(raw));
+        } catch (IllegalArgumentException e) {
+            // Reported on requiredWhen itself
+            return false;
+        }
+    }
+
+    /**
+     * Get name of the property
+     *
+     * @return {@link ConfigKey#name}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get position of the key in the parsed snapshots
+     *
+     * @return {@link ConfigKey#index}
+     */
+    int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static Path parseExistingPath(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        Path path = Paths.get(value);
+        if (!Files.exists(path)) {
+            throw new IllegalArgumentException("no such file or directory");
+        }
+        return path;
+    }
+
+    private static int parseInt(String value, int min) {
+        int parsed = Integer.parseInt(value);
+        if (parsed < min) {
+            throw new IllegalArgumentException("must be at least " + min);
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,483 @@
+package org.atos.scouter.util;
+
+import org.atos.scouter.util.nlp.OpenNLP;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every key of the configuration file, with its type and default value.
+ * The keys without default value are required, the configuration fails to load if one of them is missing.
+ *
+ * @version 1.0
+ * @see PropertiesManager#get(ConfigKey)
+ */
+public final class ConfigKeys {
+    /**
+     * Number of cores, default value of the thread counts
+     */
+    private static final String CORES = String.valueOf(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Reload the configuration file when it changes
+     */
+    public static final ConfigKey<Boolean> CONFIG_WATCH = ConfigKey.ofBoolean("config.watch", "false");
+
+    /**
+     * Run mode : batch extracts pdf.root.path and exits, server answers HTTP requests
+     */
+    public static final ConfigKey<String> SCOUTER_MODE = ConfigKey.ofChoice("scouter.mode", "batch", "batch", "server");
+
+    /**
+     * Document or directory to extract, required in batch mode
+     */
+    public static final ConfigKey<Path> PDF_ROOT_PATH =
+            ConfigKey.ofExistingPath("pdf.root.path", SCOUTER_MODE, "batch");
+    /**
+     * Threads of the pool execution mode
+     */
+    public static final ConfigKey<Integer> PDF_WORKERS = ConfigKey.ofPositiveInt("pdf.workers", CORES);
+    /**
+     * Documents waiting for a worker of the pool execution mode
+     */
+    public static final ConfigKey<Integer> PDF_QUEUE_SIZE = ConfigKey.ofPositiveInt("pdf.queue.size", "64");
+    /**
+     * Execution mode : pool, async or pipeline
+     */
+    public static final ConfigKey<String> PDF_EXECUTION =
+            ConfigKey.ofChoice("pdf.execution", "pool", "pool", "async", "pipeline");
+    /**
+     * NLP threads of the async execution mode
+     */
+    public static final ConfigKey<Integer> PDF_NLP_THREADS = ConfigKey.ofPositiveInt("pdf.nlp.threads", CORES);
+    /**
+     * Documents in flight in the async execution mode
+     */
+    public static final ConfigKey<Integer> PDF_ASYNC_DOCUMENTS = ConfigKey.ofPositiveInt("pdf.async.documents", "256");
+    /**
+     * Size in characters of the chunks handed to OpenNLP
+     */
+    public static final ConfigKey<Integer> PDF_CHUNK_SIZE = ConfigKey.ofPositiveInt("pdf.chunk.size", "4096");
+    /**
+     * Types of entity to find
+     */
+    public static final ConfigKey<Set<OpenNLP.nerOptions>> PDF_NER_TYPES =
+            ConfigKey.ofEnumSet("pdf.ner.types", OpenNLP.nerOptions.class, "PERSON,ORGANIZATION,LOCATION");
+    /**
+     * Threads extracting the page ranges of large PDF
+     */
+    public static final ConfigKey<Integer> PDF_PAGES_THREADS = ConfigKey.ofPositiveInt("pdf.pages.threads", CORES);
+    /**
+     * Maximum number of pages of a range extracted by one thread
+     */
+    public static final ConfigKey<Integer> PDF_PAGES_RANGE = ConfigKey.ofPositiveInt("pdf.pages.range", "50");
+    /**
+     * Minimum number of pages of a PDF extracted by page ranges, 0 to never split
+     */
+    public static final ConfigKey<Integer> PDF_PAGES_MIN = ConfigKey.ofInt("pdf.pages.min", "200");
+    /**
+     * Minimum size of a PDF extracted by page ranges
+     */
+    public static final ConfigKey<Long> PDF_PAGES_MIN_SIZE = ConfigKey.ofSize("pdf.pages.min.size", "1m");
+    /**
+     * Manifest of the documents already extracted, null to extract every document
+     */
+    public static final ConfigKey<Path> PDF_MANIFEST_PATH = ConfigKey.ofPath("pdf.manifest.path", "");
+    /**
+     * Time the parser may run on a document before it is abandoned, the NLP not counted, 0 to wait forever
+     */
+    public static final ConfigKey<Duration> PDF_TIMEOUT = ConfigKey.ofDuration("pdf.timeout", "300", TimeUnit.SECONDS);
+    /**
+     * Wall-clock time after which a parse is abandoned even while its parser clock is stopped, at least pdf.timeout
+     */
+    public static final ConfigKey<Duration> PDF_TIMEOUT_CEILING =
+            ConfigKey.ofDuration("pdf.timeout.ceiling", "3600", TimeUnit.SECONDS);
+    /**
+     * Abandoned parses still running past which the documents are refused
+     */
+    public static final ConfigKey<Integer> PDF_ABANDONED_MAX = ConfigKey.ofPositiveInt("pdf.abandoned.max", "4");
+    /**
+     * Maximum number of characters read from a document, 0 for no cap
+     */
+    public static final ConfigKey<Integer> PDF_MAX_CHARACTERS = ConfigKey.ofInt("pdf.max.characters", "50000000");
+    /**
+     * Maximum number of pages read from a document, 0 for no cap
+     */
+    public static final ConfigKey<Integer> PDF_MAX_PAGES = ConfigKey.ofInt("pdf.max.pages", "10000");
+    /**
+     * Quarantine of the documents which timed out or broke the parser, null to retry them on every run
+     */
+    public static final ConfigKey<Path> PDF_QUARANTINE_PATH = ConfigKey.ofPath("pdf.quarantine.path", "");
+
+    /**
+     * Threads of the parse stage of the pipeline
+     */
+    public static final ConfigKey<Integer> PIPELINE_PARSE_THREADS = ConfigKey.ofPositiveInt("pipeline.parse.threads", "1");
+    /**
+     * Threads of the normalize stage of the pipeline
+     */
+    public static final ConfigKey<Integer> PIPELINE_NORMALIZE_THREADS =
+            ConfigKey.ofPositiveInt("pipeline.normalize.threads", "1");
+    /**
+     * Threads of the sentence stage of the pipeline, 0 for a quarter of nlp.pool.max
+     */
+    public static final ConfigKey<Integer> PIPELINE_SENTENCE_THREADS =
+            ConfigKey.ofInt("pipeline.sentence.threads", "0");
+    /**
+     * Threads of the token stage of the pipeline, 0 for a quarter of nlp.pool.max
+     */
+    public static final ConfigKey<Integer> PIPELINE_TOKEN_THREADS = ConfigKey.ofInt("pipeline.token.threads", "0");
+    /**
+     * Threads of the ner stage of the pipeline, 0 for the instances of nlp.pool.max left by the sentence and token
+     * stages
+     */
+    public static final ConfigKey<Integer> PIPELINE_NER_THREADS = ConfigKey.ofInt("pipeline.ner.threads", "0");
+    /**
+     * Threads of the output stage of the pipeline
+     */
+    public static final ConfigKey<Integer> PIPELINE_OUTPUT_THREADS =
+            ConfigKey.ofPositiveInt("pipeline.output.threads", "1");
+    /**
+     * Chunks waiting in front of each stage of the pipeline
+     */
+    public static final ConfigKey<Integer> PIPELINE_QUEUE_SIZE = ConfigKey.ofPositiveInt("pipeline.queue.size", "64");
+    /**
+     * Interval between two reports of the pipeline, 0 disables them
+     */
+    public static final ConfigKey<Duration> PIPELINE_REPORT_INTERVAL =
+            ConfigKey.ofDuration("pipeline.report.interval", "10", TimeUnit.SECONDS);
+
+    /**
+     * Sentence detection model
+     */
+    public static final ConfigKey<Path> NLP_SENTENCE = ConfigKey.ofExistingPath("nlp.sentence", null);
+    /**
+     * Tokenization model
+     */
+    public static final ConfigKey<Path> NLP_TOKENIZER = ConfigKey.ofExistingPath("nlp.tokenizer", null);
+    /**
+     * Part-of-speech model
+     */
+    public static final ConfigKey<Path> NLP_POS_MODEL = ConfigKey.ofExistingPath("nlp.posmodel", null);
+    /**
+     * Organization name finder model
+     */
+    public static final ConfigKey<Path> NLP_TOKENNAME_ORGANIZATION =
+            ConfigKey.ofExistingPath("nlp.tokenname.organization", null);
+    /**
+     * Location name finder model
+     */
+    public static final ConfigKey<Path> NLP_TOKENNAME_LOCATION =
+            ConfigKey.ofExistingPath("nlp.tokenname.location", null);
+    /**
+     * Person name finder model
+     */
+    public static final ConfigKey<Path> NLP_TOKENNAME_PERSON = ConfigKey.ofExistingPath("nlp.tokenname.person", null);
+    /**
+     * Lemma dictionary
+     */
+    public static final ConfigKey<Path> NLP_DICTIONARIES_PATH = ConfigKey.ofExistingPath("nlp.dictionaries.path", null);
+    /**
+     * Language of the nlp.* models, and of the documents whose language is not detected
+     */
+    public static final ConfigKey<String> NLP_LANGUAGE = ConfigKey.ofString("nlp.language", "fr");
+    /**
+     * Detect the language of each document to route it to the models of its language
+     */
+    public static final ConfigKey<Boolean> NLP_LANGUAGE_DETECT = ConfigKey.ofBoolean("nlp.language.detect", "true");
+    /**
+     * Number of characters of the first chunk read to detect the language of a document
+     */
+    public static final ConfigKey<Integer> NLP_LANGUAGE_SAMPLE = ConfigKey.ofPositiveInt("nlp.language.sample", "2048");
+    /**
+     * Keys of the models of each language with its own keys
+     *
+     * @see ConfigKeys#getModelKeys(String, String)
+     */
+    private static final Map<String, ModelKeys> MODEL_KEYS = new HashMap<>();
+    /**
+     * Models of English documents
+     */
+    public static final ModelKeys NLP_EN = ModelKeys.of("en");
+    /**
+     * Models of German documents
+     */
+    public static final ModelKeys NLP_DE = ModelKeys.of("de");
+    /**
+     * Maximum number of pooled OpenNLP instances
+     */
+    public static final ConfigKey<Integer> NLP_POOL_MAX = ConfigKey.ofPositiveInt("nlp.pool.max", CORES);
+    /**
+     * Time after which an idle OpenNLP instance is dropped
+     */
+    public static final ConfigKey<Duration> NLP_POOL_IDLE_TIMEOUT =
+            ConfigKey.ofDuration("nlp.pool.idle.timeout", "300", TimeUnit.SECONDS);
+    /**
+     * Number of sentence results cached, 0 disables the cache
+     */
+    public static final ConfigKey<Long> NLP_CACHE_SIZE = ConfigKey.ofLong("nlp.cache.size", "100000");
+
+    /**
+     * Destination of the results : file or mongo
+     */
+    public static final ConfigKey<String> SINK_TYPE = ConfigKey.ofChoice("sink.type", "file", "file", "mongo");
+    /**
+     * File of the file sink, - for the standard output
+     */
+    public static final ConfigKey<String> SINK_FILE_PATH = ConfigKey.ofString("sink.file.path", "-");
+    /**
+     * Results waiting to be written
+     */
+    public static final ConfigKey<Integer> SINK_QUEUE_SIZE = ConfigKey.ofPositiveInt("sink.queue.size", "1000");
+    /**
+     * Characters of text kept by the results waiting to be written, 0 for no bound
+     */
+    public static final ConfigKey<Long> SINK_QUEUE_CHARACTERS = ConfigKey.ofSize("sink.queue.characters", "32m");
+    /**
+     * Results written at once
+     */
+    public static final ConfigKey<Integer> SINK_BATCH_SIZE = ConfigKey.ofPositiveInt("sink.batch.size", "100");
+    /**
+     * Maximum time between two writes
+     */
+    public static final ConfigKey<Duration> SINK_FLUSH_INTERVAL =
+            ConfigKey.ofDuration("sink.flush.interval", "1000", TimeUnit.MILLISECONDS);
+    /**
+     * Connection string of the mongo sink
+     */
+    public static final ConfigKey<String> SINK_MONGO_URI = ConfigKey.ofString("sink.mongo.uri", "mongodb://localhost:27017");
+    /**
+     * Database of the mongo sink
+     */
+    public static final ConfigKey<String> SINK_MONGO_DATABASE = ConfigKey.ofString("sink.mongo.database", "scouter");
+    /**
+     * Collection of the mongo sink
+     */
+    public static final ConfigKey<String> SINK_MONGO_COLLECTION = ConfigKey.ofString("sink.mongo.collection", "documents");
+    /**
+     * Maximum number of batches waiting for MongoDB
+     */
+    public static final ConfigKey<Integer> SINK_MONGO_INFLIGHT = ConfigKey.ofPositiveInt("sink.mongo.inflight", "4");
+
+    /**
+     * Also index the results in a Lucene index, the results then keep their text
+     */
+    public static final ConfigKey<Boolean> INDEX_ENABLED = ConfigKey.ofBoolean("index.enabled", "false");
+    /**
+     * Directory of the Lucene index
+     */
+    public static final ConfigKey<Path> INDEX_PATH = ConfigKey.ofPath("index.path", "scouter-index");
+    /**
+     * Size of the buffer of added documents before Lucene flushes a segment
+     */
+    public static final ConfigKey<Long> INDEX_RAM_BUFFER = ConfigKey.ofSize("index.ram.buffer", "64m");
+    /**
+     * Minimum time between two commits of the index
+     */
+    public static final ConfigKey<Duration> INDEX_COMMIT_INTERVAL =
+            ConfigKey.ofDuration("index.commit.interval", "60", TimeUnit.SECONDS);
+
+    /**
+     * Also register the entities of the results in an entity registry
+     */
+    public static final ConfigKey<Boolean> ENTITY_ENABLED = ConfigKey.ofBoolean("entity.enabled", "false");
+    /**
+     * Snapshot file of the entity registry
+     */
+    public static final ConfigKey<Path> ENTITY_PATH = ConfigKey.ofPath("entity.path", "scouter-entities.bin");
+    /**
+     * TDB directory of the entity co-occurrence graph, null to not build the graph
+     */
+    public static final ConfigKey<Path> ENTITY_GRAPH_PATH = ConfigKey.ofPath("entity.graph.path", "");
+    /**
+     * Time between two snapshots of the entity registry and two exports of the graph, 0 to only write them at exit
+     */
+    public static final ConfigKey<Duration> ENTITY_SNAPSHOT_INTERVAL =
+            ConfigKey.ofDuration("entity.snapshot.interval", "300", TimeUnit.SECONDS);
+
+    /**
+     * Port of the HTTP server
+     */
+    public static final ConfigKey<Integer> SERVER_PORT = ConfigKey.ofPositiveInt("server.port", "8080");
+    /**
+     * Address the HTTP server listens on
+     */
+    public static final ConfigKey<String> SERVER_HOST = ConfigKey.ofString("server.host", "0.0.0.0");
+    /**
+     * Maximum size of a request body
+     */
+    public static final ConfigKey<Long> SERVER_BODY_LIMIT = ConfigKey.ofSize("server.body.limit", "64m");
+    /**
+     * Worker threads running the extractions of the HTTP server
+     */
+    public static final ConfigKey<Integer> SERVER_WORKERS = ConfigKey.ofPositiveInt("server.workers", CORES);
+    /**
+     * Requests accepted at once by the HTTP server, the others are answered 503
+     */
+    public static final ConfigKey<Integer> SERVER_MAX_REQUESTS = ConfigKey.ofPositiveInt("server.max.requests", "64");
+
+    /**
+     * Destination of the metrics : none, influx or file
+     */
+    public static final ConfigKey<String> METRICS_TYPE =
+            ConfigKey.ofChoice("metrics.type", "none", "none", "influx", "file");
+    /**
+     * Time between two metrics reports
+     */
+    public static final ConfigKey<Duration> METRICS_INTERVAL =
+            ConfigKey.ofDuration("metrics.interval", "10", TimeUnit.SECONDS);
+    /**
+     * Address of InfluxDB
+     */
+    public static final ConfigKey<String> METRICS_INFLUX_URL =
+            ConfigKey.ofString("metrics.influx.url", "http://localhost:8086");
+    /**
+     * User of InfluxDB
+     */
+    public static final ConfigKey<String> METRICS_INFLUX_USER = ConfigKey.ofString("metrics.influx.user", "root");
+    /**
+     * Password of InfluxDB
+     */
+    public static final ConfigKey<String> METRICS_INFLUX_PASSWORD = ConfigKey.ofString("metrics.influx.password", "root");
+    /**
+     * Database of the metrics in InfluxDB
+     */
+    public static final ConfigKey<String> METRICS_INFLUX_DATABASE =
+            ConfigKey.ofString("metrics.influx.database", "scouter");
+    /**
+     * Line protocol file of the metrics, also receives the points InfluxDB refused, empty for none
+     */
+    public static final ConfigKey<Path> METRICS_FILE_PATH = ConfigKey.ofPath("metrics.file.path", "");
+
+    /**
+     * Private constructor to block instantiation
+     */
+    private ConfigKeys() {
+
+    }
+
+    /**
+     * Get the keys of the models of a language : the nlp.* keys for nlp.language, the nlp.&lt;language&gt;.* keys
+     * for the other languages
+     *
+     * @param language    ISO 639-1 code of the language
+     * @param nlpLanguage Current value of nlp.language
+     * @return Keys of the models, null if the language has no keys
+     */
+    public static ModelKeys getModelKeys(String language, String nlpLanguage) {
+        if (language.equals(nlpLanguage)) {
+            return ModelKeys.DEFAULT;
+        }
+        return MODEL_KEYS.get(language);
+    }
+
+    /**
+     * Keys of the model files of one language. A language is supported when its sentence and tokenizer
+     * models are set, a type of entity when its name finder model is set
+     */
+    public static final class ModelKeys {
+        /**
+         * Keys nlp.*, of the models of nlp.language
+         */
+        private static final ModelKeys DEFAULT = new ModelKeys(null, NLP_SENTENCE, NLP_TOKENIZER, NLP_POS_MODEL,
+                NLP_DICTIONARIES_PATH, NLP_TOKENNAME_PERSON, NLP_TOKENNAME_ORGANIZATION, NLP_TOKENNAME_LOCATION);
+        private final String language;
+        private final ConfigKey<Path> sentence;
+        private final ConfigKey<Path> tokenizer;
+        private final ConfigKey<Path> posModel;
+        private final ConfigKey<Path> dictionary;
+        private final Map<OpenNLP.nerOptions, ConfigKey<Path>> nameFinders = new EnumMap<>(OpenNLP.nerOptions.class);
+
+        private ModelKeys(String language, ConfigKey<Path> sentence, ConfigKey<Path> tokenizer,
+                          ConfigKey<Path> posModel, ConfigKey<Path> dictionary, ConfigKey<Path> person,
+                          ConfigKey<Path> organization, ConfigKey<Path> location) {
+            this.language = language;
+            this.sentence = sentence;
+            this.tokenizer = tokenizer;
+            this.posModel = posModel;
+            this.dictionary = dictionary;
+            nameFinders.put(OpenNLP.nerOptions.PERSON, person);
+            nameFinders.put(OpenNLP.nerOptions.ORGANIZATION, organization);
+            nameFinders.put(OpenNLP.nerOptions.LOCATION, location);
+        }
+
+        /**
+         * Build the optional nlp.&lt;language&gt;.* keys of a language
+         */
+        private static ModelKeys of(String language) {
+            String prefix = "nlp." + language + ".";
+            ModelKeys keys = new ModelKeys(language, ConfigKey.ofExistingPath(prefix + "sentence", ""),
+                    ConfigKey.ofExistingPath(prefix + "tokenizer", ""),
+                    ConfigKey.ofExistingPath(prefix + "posmodel", ""),
+                    ConfigKey.ofExistingPath(prefix + "dictionaries.path", ""),
+                    ConfigKey.ofExistingPath(prefix + "tokenname.person", ""),
+                    ConfigKey.ofExistingPath(prefix + "tokenname.organization", ""),
+                    ConfigKey.ofExistingPath(prefix + "tokenname.location", ""));
+            MODEL_KEYS.put(language, keys);
+            return keys;
+        }
+
+        /**
+         * Get key of the sentence detection model
+         *
+         * @return {@link ModelKeys#sentence}
+         */
+        public ConfigKey<Path> getSentence() {
+            return sentence;
+        }
+
+        /**
+         * Get key of the tokenization model
+         *
+         * @return {@link ModelKeys#tokenizer}
+         */
+        public ConfigKey<Path> getTokenizer() {
+            return tokenizer;
+        }
+
+        /**
+         * Get key of the part-of-speech model
+         *
+         * @return {@link ModelKeys#posModel}
+         */
+        public ConfigKey<Path> getPosModel() {
+            return posModel;
+        }
+
+        /**
+         * Get key of the lemma dictionary
+         *
+         * @return {@link ModelKeys#dictionary}
+         */
+        public ConfigKey<Path> getDictionary() {
+            return dictionary;
+        }
+
+        /**
+         * Get the key of the name finder model of a type of entity
+         *
+         * @param type Type of entity
+         * @return Key of the model
+         */
+        public ConfigKey<Path> getNameFinder(OpenNLP.nerOptions type) {
+            return nameFinders.get(type);
+        }
+
+        @Override
+        public String toString() {
+            return language == null ? "nlp.*" : "nlp." + language + ".*";
+        }
+    }
+
+    /**
+     * Make sure every key of this class is registered
+     */
+    static void register() {
+        // Loading the class registers its keys
+    }
+}
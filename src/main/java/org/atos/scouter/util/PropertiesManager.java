@@ -1,5 +1,3 @@
-
-
 package org.atos.scouter.util;
 
 import org.slf4j.Logger;
@@ -7,53 +5,100 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Load configuration for a class
+ * Load configuration for a class.
+ * The configuration is an immutable snapshot of the configuration file, swapped atomically when the file changes
+ * if {@link PropertiesManager#watch()} was called. Listeners are notified after each swap, so long-running
+ * components pick up a new value without restart. Thread safe.
+ * Every {@link ConfigKey} is parsed and validated when the file is loaded, so {@link PropertiesManager#get(ConfigKey)}
+ * reads an already parsed value. A file with missing or invalid keys is rejected as a whole, with every problem
+ * listed in the error.
  *
  * @version 1.0
  */
 public class PropertiesManager {
 
-    private static PropertiesManager propertiesManager;
+    /**
+     * Singleton, set by {@link PropertiesManager#getInstance(String)}
+     */
+    private static volatile PropertiesManager propertiesManager;
 
     /**
      * Logger used to log all information in this class
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(PropertiesManager.class);
     /**
-     * Constant value {@value DEFAULT_PATH}
-     *
+     * Time to wait after a change of the file before reading it, so an editor has finished writing it
      */
-
-//    private static final String DEFAULT_PATH = "scouter/src/main/resources/config.properties";
+    private static final long SETTLE_MILLIS = 200;
+    /**
+     * Configuration file
+     */
+    private final Path configLocation;
     /**
-     * Objects which store value of configuration file
+     * Objects which store value of configuration file, replaced as a whole on reload
      *
      * @see PropertiesManager#getProperty(String)
+     * @see PropertiesManager#get(ConfigKey)
+     */
+    private volatile Configuration config;
+    /**
+     * Notified after each reload which changed the configuration
      */
-    private static Properties config = new Properties();
+    private final List<ConfigurationListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * Thread watching the configuration file, null if not watching
+     */
+    private Thread watcher;
+
+    /**
+     * Receive the changes of the configuration
+     */
+    @FunctionalInterface
+    public interface ConfigurationListener {
+        /**
+         * Called on the watcher thread after the configuration changed
+         *
+         * @param previous Previous snapshot
+         * @param current  New snapshot
+         */
+        void onChange(Map<String, String> previous, Map<String, String> current);
+    }
 
     /**
      * Singleton {@link PropertiesManager}
      *
      * @param path Path to config file
-     * @throws NullPointerException if path is null
+     * @throws NullPointerException  if path is null
+     * @throws IllegalStateException if the file cannot be read, or if keys are missing or invalid
      */
     private PropertiesManager(String path) {
         Objects.requireNonNull(path);
-        Path configLocation = Paths.get(path);
-
-        try (InputStream stream = Files.newInputStream(configLocation)) {
-            config.load(stream);
-        } catch (IOException e) {
-            LOGGER.error(e.getMessage());
+        configLocation = Paths.get(path).toAbsolutePath();
+        try {
+            config = load(configLocation);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.error("Cannot load configuration " + configLocation + " : " + e.getMessage());
+            throw new IllegalStateException("Cannot load configuration " + configLocation + " : " + e.getMessage(), e);
         }
     }
 
@@ -61,21 +106,30 @@ public class PropertiesManager {
      * Get instance for {@link PropertiesManager}
      *
      * @return An instance of {@link PropertiesManager}
+     * @throws IllegalStateException if {@link PropertiesManager#getInstance(String)} was not called before
      */
     public static PropertiesManager getInstance() {
-        return getInstance("");
+        PropertiesManager instance = propertiesManager;
+        if (instance == null) {
+            throw new IllegalStateException("Configuration not loaded, call getInstance(path) first");
+        }
+        return instance;
     }
 
     /**
-     * Get instance for {@link PropertiesManager}, one per class
+     * Get instance for {@link PropertiesManager}, loading the configuration on the first call
      *
-     * @param path  Path to load configuration for this clazz
+     * @param path Path of the configuration file, ignored once loaded
      * @return An instance of {@link PropertiesManager}
+     * @throws NullPointerException  if path is null
+     * @throws IllegalStateException if the file cannot be read, or if keys are missing or invalid
      */
-    public static PropertiesManager getInstance(String path) {
+    public static synchronized PropertiesManager getInstance(String path) {
         Objects.requireNonNull(path);
         if (propertiesManager == null) {
             propertiesManager = new PropertiesManager(path);
+        } else if (!propertiesManager.configLocation.equals(Paths.get(path).toAbsolutePath())) {
+            LOGGER.warn("Configuration already loaded from " + propertiesManager.configLocation + ", " + path + " ignored");
         }
         return propertiesManager;
     }
@@ -92,7 +146,7 @@ public class PropertiesManager {
      */
     public String getProperty(String property) {
         Objects.requireNonNull(property);
-        String value = config.getProperty(property);
+        String value = config.raw.get(property);
         if (value == null) {
             throw new IllegalArgumentException("Property not found : " + property);
         }
@@ -109,17 +163,227 @@ public class PropertiesManager {
      */
     public String getPropertyOrDefault(String property, String defaultValue) {
         Objects.requireNonNull(property);
-        String value = config.getProperty(property);
+        String value = config.raw.get(property);
         if (value == null) {
             return defaultValue;
         }
         return value;
     }
-    
+
+    /**
+     * Get the parsed value of a key, without parsing nor locking
+     *
+     * @param key Key to get
+     * @param <T> Type of the value
+     * @return Value of the key in the current configuration, or its default value
+     * @throws NullPointerException     if key is null
+     * @throws IllegalArgumentException if the key was built after the configuration was loaded and its value is invalid
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(ConfigKey<T> key) {
+        Configuration current = config;
+        int index = key.getIndex();
+        if (index < current.values.length) {
+            return (T) current.values[index];
+        }
+        return key.parse(current.raw);
+    }
+
+    /**
+     * Get current configuration, to read several properties consistently
+     *
+     * @return Immutable snapshot of the configuration
+     */
+    public Map<String, String> getSnapshot() {
+        return config.raw;
+    }
+
+    /**
+     * Subscribe to the changes of the configuration
+     *
+     * @param listener Listener to notify
+     * @throws NullPointerException if listener is null
+     */
+    public void addListener(ConfigurationListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Unsubscribe from the changes of the configuration
+     *
+     * @param listener Listener to remove
+     */
+    public void removeListener(ConfigurationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Read the configuration file again, swap the snapshot and notify the listeners if it changed.
+     * An unreadable file, or a file with missing or invalid keys, keeps the current snapshot
+     *
+     * @return True if the configuration changed
+     */
+    public boolean reload() {
+        Configuration current;
+        try {
+            current = load(configLocation);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.error("Cannot reload configuration " + configLocation + ", keeping the current one : " + e.getMessage());
+            return false;
+        }
+        Configuration previous;
+        synchronized (this) {
+            previous = config;
+            if (previous.raw.equals(current.raw)) {
+                return false;
+            }
+            config = current;
+        }
+        LOGGER.info("Configuration " + configLocation + " reloaded");
+        for (ConfigurationListener listener : listeners) {
+            try {
+                listener.onChange(previous.raw, current.raw);
+            } catch (RuntimeException e) {
+                LOGGER.error("Configuration listener failed : " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Watch the configuration file and reload it when it changes, on a daemon thread
+     *
+     * @throws IllegalStateException if the directory of the file cannot be watched
+     */
+    public synchronized void watch() {
+        if (watcher != null) {
+            return;
+        }
+        WatchService watchService;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            configLocation.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot watch " + configLocation, e);
+        }
+        watcher = new Thread(() -> watchLoop(watchService), "scouter-config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Stop watching the configuration file
+     */
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+
+    private void watchLoop(WatchService watchService) {
+        try (WatchService service = watchService) {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= configLocation.getFileName().equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    TimeUnit.MILLISECONDS.sleep(SETTLE_MILLIS);
+                    // Drop the events of the same write
+                    WatchKey pending = service.poll();
+                    if (pending != null) {
+                        pending.pollEvents();
+                        pending.reset();
+                    }
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.warn("Configuration watcher stopped : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read a configuration file and parse every key
+     *
+     * @param path Configuration file
+     * @return Immutable snapshot of its properties
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if keys are missing or invalid, all of them listed in the message
+     */
+    private static Configuration load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream stream = Files.newInputStream(path)) {
+            properties.load(stream);
+        }
+        Map<String, String> snapshot = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            snapshot.put(name, properties.getProperty(name));
+        }
+        return new Configuration(Collections.unmodifiableMap(snapshot));
+    }
+
     public static  void printAll(){
 
-        for(Map.Entry<Object, Object> e : config.entrySet()) {
+        for(Map.Entry<String, String> e : getInstance().config.raw.entrySet()) {
             System.out.println(e);
         }
     }
+
+    /**
+     * Raw properties and parsed value of every registered key, immutable
+     */
+    private static final class Configuration {
+        /**
+         * Properties of the file
+         */
+        private final Map<String, String> raw;
+        /**
+         * Parsed values, indexed by {@link ConfigKey#getIndex()}
+         */
+        private final Object[] values;
+
+        /**
+         * Parse every registered key
+         *
+         * @param raw Properties of the file
+         * @throws IllegalArgumentException if keys are missing or invalid, all of them listed in the message
+         */
+        private Configuration(Map<String, String> raw) {
+            ConfigKeys.register();
+            List<ConfigKey<?>> keys = ConfigKey.registered();
+            Object[] parsed = new Object[keys.size()];
+            List<String> missing = new ArrayList<>();
+            List<String> invalid = new ArrayList<>();
+            for (ConfigKey<?> key : keys) {
+                try {
+                    parsed[key.getIndex()] = key.parse(raw);
+                } catch (IllegalArgumentException e) {
+                    if (key.isMissing(raw)) {
+                        missing.add(key.getName());
+                    } else {
+                        invalid.add(key.getName() + " (" + e.getMessage() + ")");
+                    }
+                }
+            }
+            if (!missing.isEmpty() || !invalid.isEmpty()) {
+                StringBuilder message = new StringBuilder();
+                if (!missing.isEmpty()) {
+                    message.append("missing keys ").append(missing);
+                }
+                if (!invalid.isEmpty()) {
+                    message.append(missing.isEmpty() ? "" : ", ").append("invalid keys ").append(invalid);
+                }
+                throw new IllegalArgumentException(message.toString());
+            }
+            this.raw = raw;
+            this.values = parsed;
+        }
+    }
 }
@@ -0,0 +1,150 @@
+package org.atos.scouter.util.nlp;
+
+import org.apache.tika.language.LanguageIdentifier;
+import org.atos.scouter.metrics.MetricsLogger;
+import org.atos.scouter.util.ConfigKeys;
+import org.atos.scouter.util.PropertiesManager;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Route a document to the models of its language.
+ * The language is detected once per document, on the first nlp.language.sample characters of its first chunk,
+ * with the n-gram profiles of Tika. A document whose language has no models gets no type of entity,
+ * so its NLP is skipped entirely instead of running the models of another language.
+ *
+ * @version 1.0
+ * @see OpenNLPPool#borrow(String)
+ */
+public final class LanguageRouter {
+    /**
+     * Properties of this class
+     */
+    private static final PropertiesManager PROPERTIES_MANAGER = PropertiesManager.getInstance();
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private LanguageRouter() {
+
+    }
+
+    /**
+     * Detect the language of a document from the beginning of its text
+     *
+     * @param sample Beginning of the text, only nlp.language.sample characters are read
+     * @return ISO 639-1 code of the language, nlp.language if detection is disabled or not reasonably certain
+     * @throws NullPointerException if sample is null
+     */
+    public static String detect(String sample) {
+        Objects.requireNonNull(sample);
+        String language = PROPERTIES_MANAGER.get(ConfigKeys.NLP_LANGUAGE);
+        if (PROPERTIES_MANAGER.get(ConfigKeys.NLP_LANGUAGE_DETECT) && !sample.trim().isEmpty()) {
+            int length = Math.min(sample.length(), PROPERTIES_MANAGER.get(ConfigKeys.NLP_LANGUAGE_SAMPLE));
+            LanguageIdentifier identifier = new LanguageIdentifier(sample.substring(0, length));
+            if (identifier.isReasonablyCertain()) {
+                language = identifier.getLanguage();
+            }
+        }
+        MetricsLogger.getMetricsLogger().counter("languages", "language", language).increment();
+        return language;
+    }
+
+    /**
+     * Tell if a language has models
+     *
+     * @param language ISO 639-1 code of the language
+     * @return True if its sentence and tokenizer models are set
+     * @throws NullPointerException if language is null
+     */
+    public static boolean isSupported(String language) {
+        return LoaderNLP.getModels(language) != null;
+    }
+
+    /**
+     * Get the types of entity which can be found in a language
+     *
+     * @param language ISO 639-1 code of the language
+     * @param types    Types of entity requested
+     * @return The requested types whose name finder model is set, empty if the language has no models
+     * @throws NullPointerException if language or types is null
+     */
+    public static Set<OpenNLP.nerOptions> getNerTypes(String language, Set<OpenNLP.nerOptions> types) {
+        Objects.requireNonNull(types);
+        LoaderNLP.ModelSet models = LoaderNLP.getModels(language);
+        if (models == null || types.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<OpenNLP.nerOptions> supported = EnumSet.noneOf(OpenNLP.nerOptions.class);
+        for (OpenNLP.nerOptions type : types) {
+            if (models.hasNameFinder(type)) {
+                supported.add(type);
+            }
+        }
+        return supported;
+    }
+
+    /**
+     * Language of one document, detected on its first chunk. Not thread safe
+     */
+    public static final class Route {
+        /**
+         * Types of entity requested
+         */
+        private final Set<OpenNLP.nerOptions> requested;
+        /**
+         * Language of the document, null until the first chunk
+         */
+        private String language;
+        /**
+         * Types of entity to find in the language of the document
+         */
+        private Set<OpenNLP.nerOptions> types = Collections.emptySet();
+
+        /**
+         * Build the route of a document
+         *
+         * @param requested Types of entity requested
+         * @throws NullPointerException if requested is null
+         */
+        public Route(Set<OpenNLP.nerOptions> requested) {
+            this.requested = Objects.requireNonNull(requested);
+        }
+
+        /**
+         * Detect the language on the first chunk of the document, the next chunks are ignored
+         *
+         * @param chunk Chunk of the document
+         * @return this
+         * @throws NullPointerException if chunk is null
+         */
+        public Route accept(String chunk) {
+            if (language == null) {
+                language = detect(chunk);
+                types = getNerTypes(language, requested);
+            }
+            return this;
+        }
+
+        /**
+         * Get language of the document
+         *
+         * @return ISO 639-1 code of the language, null before the first chunk
+         */
+        public String getLanguage() {
+            return language;
+        }
+
+        /**
+         * Get types of entity to find in the document
+         *
+         * @return Types of entity, empty before the first chunk or if the language has no models
+         */
+        public Set<OpenNLP.nerOptions> getNerTypes() {
+            return types;
+        }
+    }
+}
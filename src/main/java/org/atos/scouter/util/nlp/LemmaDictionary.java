@@ -0,0 +1,270 @@
+package org.atos.scouter.util.nlp;
+
+import opennlp.tools.lemmatizer.DictionaryLemmatizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable lemma dictionary shared by every {@link OpenNLP} instance.
+ * Same lookup rules as {@link opennlp.tools.lemmatizer.SimpleLemmatizer}, but the word forms are packed in a single
+ * char array, the POS tags and the lemmas are stored once and indexed, and the (word, POS) keys live in an open
+ * addressing table. Lookups do not allocate and the dictionary can be read by any number of threads.
+ *
+ * @version 1.0
+ * @see LoaderNLP.ModelSet#getLemmaDictionary()
+ */
+final class LemmaDictionary implements DictionaryLemmatizer {
+    /**
+     * POS tags for which the word keeps its case
+     */
+    private static final Set<String> CONSTANT_TAGS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("NNP", "NP00000")));
+    /**
+     * Word forms of every entry, one after the other
+     */
+    private final char[] forms;
+    /**
+     * Entry i spans forms[formOffsets[i]] to forms[formOffsets[i + 1]]
+     */
+    private final int[] formOffsets;
+    /**
+     * POS tag id of each entry
+     */
+    private final short[] tags;
+    /**
+     * Id of each distinct POS tag
+     */
+    private final Map<String, Short> tagIds;
+    /**
+     * Lemma id of each entry
+     */
+    private final int[] lemmas;
+    /**
+     * Distinct lemmas, indexed by lemma id
+     */
+    private final String[] lemmaNames;
+    /**
+     * Open addressing table storing entry index + 1, 0 means empty slot
+     */
+    private final int[] slots;
+
+    /**
+     * Private constructor, use {@link LemmaDictionary#load(Path)}
+     */
+    private LemmaDictionary(char[] forms, int[] formOffsets, short[] tags, Map<String, Short> tagIds,
+                            int[] lemmas, String[] lemmaNames, int size) {
+        this.forms = forms;
+        this.formOffsets = formOffsets;
+        this.tags = tags;
+        this.tagIds = tagIds;
+        this.lemmas = lemmas;
+        this.lemmaNames = lemmaNames;
+        this.slots = new int[Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1];
+        for (int i = 0; i < size; i++) {
+            insert(i);
+        }
+    }
+
+    /**
+     * Load a dictionary where each line is : word TAB postag TAB lemma
+     *
+     * @param path Path to the dictionary
+     * @return Loaded dictionary
+     * @throws NullPointerException if path is null
+     * @throws IOException          if the dictionary cannot be read
+     */
+    static LemmaDictionary load(Path path) throws IOException {
+        Objects.requireNonNull(path);
+        try (InputStream stream = Files.newInputStream(path)) {
+            return load(stream);
+        }
+    }
+
+    /**
+     * Load a dictionary where each line is : word TAB postag TAB lemma
+     *
+     * @param stream Stream of the dictionary, not closed by this method
+     * @return Loaded dictionary
+     * @throws NullPointerException if stream is null
+     * @throws IOException          if the dictionary cannot be read
+     */
+    static LemmaDictionary load(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        StringBuilder forms = new StringBuilder();
+        int[] formOffsets = new int[1024];
+        short[] tags = new short[1024];
+        int[] lemmas = new int[1024];
+        Map<String, Short> tagIds = new HashMap<>();
+        Map<String, Integer> lemmaIds = new HashMap<>();
+        int size = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] elems = line.split("\t");
+            if (elems.length < 3) {
+                continue;
+            }
+            if (size + 1 == formOffsets.length) {
+                formOffsets = Arrays.copyOf(formOffsets, formOffsets.length * 2);
+                tags = Arrays.copyOf(tags, tags.length * 2);
+                lemmas = Arrays.copyOf(lemmas, lemmas.length * 2);
+            }
+            formOffsets[size] = forms.length();
+            forms.append(elems[0]);
+            Short tag = tagIds.get(elems[1]);
+            if (tag == null) {
+                tag = (short) tagIds.size();
+                tagIds.put(elems[1], tag);
+            }
+            tags[size] = tag;
+            Integer lemma = lemmaIds.get(elems[2]);
+            if (lemma == null) {
+                lemma = lemmaIds.size();
+                lemmaIds.put(elems[2], lemma);
+            }
+            lemmas[size] = lemma;
+            size++;
+        }
+        formOffsets[size] = forms.length();
+        String[] lemmaNames = new String[lemmaIds.size()];
+        lemmaIds.forEach((lemma, id) -> lemmaNames[id] = lemma);
+        char[] packedForms = new char[forms.length()];
+        forms.getChars(0, forms.length(), packedForms, 0);
+        return new LemmaDictionary(packedForms, Arrays.copyOf(formOffsets, size + 1), Arrays.copyOf(tags, size),
+                Collections.unmodifiableMap(tagIds), Arrays.copyOf(lemmas, size), lemmaNames, size);
+    }
+
+    /**
+     * Lemmatize a word, same rules as {@link opennlp.tools.lemmatizer.SimpleLemmatizer#lemmatize(String, String)}
+     *
+     * @param word   Word to lemmatize
+     * @param postag POS tag of the word
+     * @return Lemma of the word
+     * @throws NullPointerException if word or postag is null
+     */
+    @Override
+    public String lemmatize(String word, String postag) {
+        Objects.requireNonNull(word);
+        Objects.requireNonNull(postag);
+        boolean constant = CONSTANT_TAGS.contains(postag);
+        String lowerCase = word.toLowerCase();
+        String lemma = lookup(constant ? word : lowerCase, postag);
+        if (lemma != null) {
+            return lemma;
+        }
+        if (constant || word.toUpperCase().equals(word)) {
+            return word;
+        }
+        return lowerCase;
+    }
+
+    /**
+     * Find the lemma of an exact (form, postag) key
+     *
+     * @param form   Word form as stored in the dictionary
+     * @param postag POS tag
+     * @return Lemma or null if the key is not in the dictionary
+     */
+    String lookup(String form, String postag) {
+        Short tag = tagIds.get(postag);
+        if (tag == null) {
+            return null;
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash(form, tag) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = slots[slot] - 1;
+            if (tags[entry] == tag && formEquals(entry, form)) {
+                return lemmaNames[lemmas[entry]];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get number of entries
+     *
+     * @return Number of entries, duplicated keys included
+     */
+    int size() {
+        return tags.length;
+    }
+
+    /**
+     * Put entry in the table, a later entry with the same key replaces the earlier one
+     *
+     * @param entry Index of the entry
+     */
+    private void insert(int entry) {
+        int mask = slots.length - 1;
+        int slot = hash(entry) & mask;
+        while (slots[slot] != 0) {
+            int other = slots[slot] - 1;
+            if (tags[other] == tags[entry] && formEquals(other, entry)) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = entry + 1;
+    }
+
+    private boolean formEquals(int entry, String form) {
+        int start = formOffsets[entry];
+        int length = formOffsets[entry + 1] - start;
+        if (length != form.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (forms[start + i] != form.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean formEquals(int entry, int other) {
+        int start = formOffsets[entry];
+        int otherStart = formOffsets[other];
+        int length = formOffsets[entry + 1] - start;
+        if (length != formOffsets[other + 1] - otherStart) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (forms[start + i] != forms[otherStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(String form, short tag) {
+        int h = 0;
+        for (int i = 0; i < form.length(); i++) {
+            h = 31 * h + form.charAt(i);
+        }
+        return mix(31 * h + tag);
+    }
+
+    private int hash(int entry) {
+        int h = 0;
+        for (int i = formOffsets[entry]; i < formOffsets[entry + 1]; i++) {
+            h = 31 * h + forms[i];
+        }
+        return mix(31 * h + tags[entry]);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,6 +1,8 @@
-
 package org.atos.scouter.util.nlp;
 
+import org.atos.scouter.metrics.MetricsLogger;
+import org.atos.scouter.util.ConfigKey;
+import org.atos.scouter.util.ConfigKeys;
 import org.atos.scouter.util.PropertiesManager;
 import opennlp.tools.namefind.TokenNameFinderModel;
 import opennlp.tools.postag.POSModel;
@@ -9,155 +11,416 @@ import opennlp.tools.tokenize.TokenizerModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Load NLP binaries to permit to library OpenNLP to be executed in multiple thread
+ * Load NLP binaries to permit to library OpenNLP to be executed in multiple thread.
+ * The models are grouped by language in {@link ModelSet} : the nlp.* models for nlp.language, the
+ * nlp.&lt;language&gt;.* models for the other languages.
+ * Each model is loaded once, on its first use, so a run only pays for the models and the languages it needs
+ * and a missing model file only fails the features using it.
+ * When the path of a loaded model changes in the configuration, the new model is loaded in the background
+ * and swapped in once ready : the model generation is incremented and {@link OpenNLPPool} retires the instances
+ * built on older models when they are given back, the documents in flight finish with the model they started with.
  * @version 1.0
  */
 class LoaderNLP {
-    /**
-     * Properties of this class
-     *
-     * @see PropertiesManager
-     * @see PropertiesManager#getProperty(String)
-     * @see PropertiesManager#getInstance()
-     */
-    private static final PropertiesManager PROPERTIES_MANAGER = PropertiesManager.getInstance();
     /**
      * Logger used to log all information in this class
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(LoaderNLP.class);
     /**
-     * Load model to apply person name finder
+     * Incremented each time a loaded model is replaced
      *
-     * @see LoaderNLP#getTokenNameFinderModelPers()
+     * @see LoaderNLP#getGeneration()
      */
-    private static final TokenNameFinderModel TOKEN_NAME_FINDER_MODEL_PERS;
+    private static final AtomicLong GENERATION = new AtomicLong();
     /**
-     * Load model to apply organization name finder
-     *
-     * @see LoaderNLP#getTokenNameFinderModelOrg()
+     * Load the new models in the background
      */
-    private static final TokenNameFinderModel TOKEN_NAME_FINDER_MODEL_ORG;
+    private static final ExecutorService RELOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "scouter-model-reloader");
+        thread.setDaemon(true);
+        return thread;
+    });
     /**
-     * Load model to apply localisation name finder
+     * Models of each set of model keys, built on first use
      *
-     * @see LoaderNLP#getTokenNameFinderModelLoc()
+     * @see LoaderNLP#getModels(String)
      */
-    private static final TokenNameFinderModel TOKEN_NAME_FINDER_MODEL_LOC;
+    private static final Map<ConfigKeys.ModelKeys, ModelSet> MODEL_SETS = new ConcurrentHashMap<>();
+
+    static {
+        PropertiesManager.getInstance().addListener(LoaderNLP::onConfigurationChange);
+    }
+
     /**
-     * Load model to apply tokenization
-     *
-     * @see LoaderNLP#getTokenizerModel()
+     * Private constructor to block instantiation
+     * This class provides only static method
      */
-    private static final TokenizerModel TOKENIZER_MODEL;
+    private LoaderNLP() {
+
+    }
+
     /**
-     * Load model to apply sentence detection
+     * Get current model generation, an {@link OpenNLP} built on an older generation uses a replaced model
      *
-     * @see LoaderNLP#getSentenceModel()
+     * @return {@link LoaderNLP#GENERATION}
      */
-    private static final SentenceModel SENTENCE_MODEL;
+    static long getGeneration() {
+        return GENERATION.get();
+    }
+
     /**
-     * Load model to apply part-of-speech tagger
+     * Reload in the background each loaded model whose path changed
      *
-     * @see LoaderNLP#getPosModel()
+     * @param previous Previous configuration
+     * @param current  New configuration
      */
-    private static final POSModel POS_MODEL;
+    private static void onConfigurationChange(Map<String, String> previous, Map<String, String> current) {
+        PropertiesManager propertiesManager = PropertiesManager.getInstance();
+        for (ModelSet models : MODEL_SETS.values()) {
+            for (LazyModel<?> model : models.models) {
+                String name = model.key.getName();
+                if (!Objects.equals(current.get(name), previous.get(name)) && model.isLoaded()) {
+                    Path path = propertiesManager.get(model.key);
+                    RELOADER.execute(() -> model.reload(path));
+                }
+            }
+        }
+    }
 
     /**
-     * Private constructor to block instantiation
-     * This class provides only static method
+     * Get the models of a language
+     *
+     * @param language ISO 639-1 code of the language
+     * @return Models of the language, null if its sentence or tokenizer model is not set
+     * @throws NullPointerException if language is null
      */
-    private LoaderNLP() {
-
-    }
-
-    static {
-        try {
-            InputStream fileFrSentBin = new FileInputStream(PROPERTIES_MANAGER.getProperty("nlp.sentence"));
-            SENTENCE_MODEL = new SentenceModel(fileFrSentBin);
-            fileFrSentBin.close();
-            InputStream fileFrTokenBin = new FileInputStream(PROPERTIES_MANAGER.getProperty("nlp.tokenizer"));
-            TOKENIZER_MODEL = new TokenizerModel(fileFrTokenBin);
-            fileFrTokenBin.close();
-            InputStream fileFrPosMaxent2Bin = new FileInputStream(PROPERTIES_MANAGER.getProperty("nlp.posmodel"));
-            POS_MODEL = new POSModel(fileFrPosMaxent2Bin);
-            fileFrPosMaxent2Bin.close();
-            InputStream frNerOrganizationBin = new FileInputStream(PROPERTIES_MANAGER.getProperty("nlp.tokenname.organization"));
-            TOKEN_NAME_FINDER_MODEL_ORG = new TokenNameFinderModel(frNerOrganizationBin);
-            frNerOrganizationBin.close();
-            InputStream fileFrNerLocationBin = new FileInputStream(PROPERTIES_MANAGER.getProperty("nlp.tokenname.location"));
-            TOKEN_NAME_FINDER_MODEL_LOC = new TokenNameFinderModel(fileFrNerLocationBin);
-            fileFrNerLocationBin.close();
-            InputStream fileNerPersonBin = new FileInputStream(PROPERTIES_MANAGER.getProperty("nlp.tokenname.person"));
-            TOKEN_NAME_FINDER_MODEL_PERS = new TokenNameFinderModel(fileNerPersonBin);
-            fileNerPersonBin.close();
-        } catch (IllegalArgumentException | IOException e) {
-            LOGGER.error(e.getMessage());
-            throw new IllegalStateException(e);
+    static ModelSet getModels(String language) {
+        Objects.requireNonNull(language);
+        ConfigKeys.ModelKeys keys = ConfigKeys.getModelKeys(language,
+                PropertiesManager.getInstance().get(ConfigKeys.NLP_LANGUAGE));
+        if (keys == null) {
+            return null;
         }
+        ModelSet models = MODEL_SETS.computeIfAbsent(keys, ModelSet::new);
+        return models.isSupported() ? models : null;
     }
 
     /**
-     * Get model to apply person name finder
+     * Get the models of nlp.language
      *
-     * @return {@link LoaderNLP#TOKEN_NAME_FINDER_MODEL_PERS}
-     * @see LoaderNLP#TOKEN_NAME_FINDER_MODEL_PERS
+     * @return Models of the nlp.* keys
      */
-    static TokenNameFinderModel getTokenNameFinderModelPers() {
-        return TOKEN_NAME_FINDER_MODEL_PERS;
+    static ModelSet getDefaultModels() {
+        String language = PropertiesManager.getInstance().get(ConfigKeys.NLP_LANGUAGE);
+        return MODEL_SETS.computeIfAbsent(ConfigKeys.getModelKeys(language, language), ModelSet::new);
     }
 
     /**
-     * Get model to apply organization name finder
+     * Read a model from a memory-mapped file, the model file is not copied in a stream buffer
      *
-     * @return {@link LoaderNLP#TOKEN_NAME_FINDER_MODEL_ORG}
-     * @see LoaderNLP#TOKEN_NAME_FINDER_MODEL_ORG
+     * @param path   Model file
+     * @param reader Build the model from its content
+     * @param <T>    Type of the model
+     * @return Model read
+     * @throws IOException if the file cannot be read
      */
-    static TokenNameFinderModel getTokenNameFinderModelOrg() {
-        return TOKEN_NAME_FINDER_MODEL_ORG;
+    private static <T> T readMapped(Path path, ModelReader<T> reader) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return reader.read(new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+        }
     }
 
     /**
-     * Get model to apply location name finder
-     *
-     * @return {@link LoaderNLP#TOKEN_NAME_FINDER_MODEL_LOC}
-     * @see LoaderNLP#TOKEN_NAME_FINDER_MODEL_LOC
+     * Models of one language, each loaded on its first use
      */
-    static TokenNameFinderModel getTokenNameFinderModelLoc() {
-        return TOKEN_NAME_FINDER_MODEL_LOC;
+    static final class ModelSet {
+        /**
+         * Keys of the model files
+         */
+        private final ConfigKeys.ModelKeys keys;
+        /**
+         * Model to apply sentence detection
+         */
+        private final LazyModel<SentenceModel> sentenceModel;
+        /**
+         * Model to apply tokenization
+         */
+        private final LazyModel<TokenizerModel> tokenizerModel;
+        /**
+         * Model to apply part-of-speech tagger
+         */
+        private final LazyModel<POSModel> posModel;
+        /**
+         * Lemma dictionary, shared by every {@link OpenNLP} instance of the language
+         */
+        private final LazyModel<LemmaDictionary> lemmaDictionary;
+        /**
+         * Model of the name finder of each type of entity
+         */
+        private final Map<OpenNLP.nerOptions, LazyModel<TokenNameFinderModel>> nameFinderModels =
+                new EnumMap<>(OpenNLP.nerOptions.class);
+        /**
+         * Every model of the set
+         */
+        private final List<LazyModel<?>> models = new ArrayList<>();
+
+        private ModelSet(ConfigKeys.ModelKeys keys) {
+            this.keys = keys;
+            sentenceModel = add(new LazyModel<>(keys.getSentence(), SentenceModel::new));
+            tokenizerModel = add(new LazyModel<>(keys.getTokenizer(), TokenizerModel::new));
+            posModel = add(new LazyModel<>(keys.getPosModel(), POSModel::new));
+            lemmaDictionary = add(new LazyModel<>(keys.getDictionary(), LemmaDictionary::load));
+            for (OpenNLP.nerOptions type : OpenNLP.nerOptions.values()) {
+                nameFinderModels.put(type, add(new LazyModel<>(keys.getNameFinder(type), TokenNameFinderModel::new)));
+            }
+        }
+
+        private <T> LazyModel<T> add(LazyModel<T> model) {
+            models.add(model);
+            return model;
+        }
+
+        /**
+         * Tell if the sentence and tokenizer models are set
+         *
+         * @return True if the language can be analyzed
+         */
+        boolean isSupported() {
+            PropertiesManager propertiesManager = PropertiesManager.getInstance();
+            return propertiesManager.get(keys.getSentence()) != null && propertiesManager.get(keys.getTokenizer()) != null;
+        }
+
+        /**
+         * Tell if the name finder model of a type of entity is set
+         *
+         * @param type Type of entity
+         * @return True if the entities of this type can be found
+         */
+        boolean hasNameFinder(OpenNLP.nerOptions type) {
+            return PropertiesManager.getInstance().get(keys.getNameFinder(type)) != null;
+        }
+
+        /**
+         * Get name of the set, to tell the results of the sets apart in {@link SentenceCache}
+         *
+         * @return nlp.* or nlp.&lt;language&gt;.*
+         */
+        String getName() {
+            return keys.toString();
+        }
+
+        /**
+         * Get model of the name finder of a type of entity
+         *
+         * @param type Type of entity
+         * @return Name finder model
+         * @throws IllegalStateException if the model cannot be loaded
+         */
+        TokenNameFinderModel getTokenNameFinderModel(OpenNLP.nerOptions type) {
+            return nameFinderModels.get(type).get();
+        }
+
+        /**
+         * Get model to apply tokenization
+         *
+         * @return {@link ModelSet#tokenizerModel}
+         * @throws IllegalStateException if the model cannot be loaded
+         */
+        TokenizerModel getTokenizerModel() {
+            return tokenizerModel.get();
+        }
+
+        /**
+         * Get model to apply sentence detection
+         *
+         * @return {@link ModelSet#sentenceModel}
+         * @throws IllegalStateException if the model cannot be loaded
+         */
+        SentenceModel getSentenceModel() {
+            return sentenceModel.get();
+        }
+
+        /**
+         * Get model to apply part-of-speech tagger
+         *
+         * @return {@link ModelSet#posModel}
+         * @throws IllegalStateException if the model cannot be loaded
+         */
+        POSModel getPosModel() {
+            return posModel.get();
+        }
+
+        /**
+         * Get lemma dictionary
+         *
+         * @return {@link ModelSet#lemmaDictionary}
+         * @throws IllegalStateException if the dictionary cannot be loaded
+         */
+        LemmaDictionary getLemmaDictionary() {
+            return lemmaDictionary.get();
+        }
     }
 
     /**
-     * Get model to apply tokenization
+     * Build a model from the content of its file
      *
-     * @return {@link LoaderNLP#TOKENIZER_MODEL}
-     * @see LoaderNLP#TOKENIZER_MODEL
+     * @param <T> Type of the model
      */
-    static TokenizerModel getTokenizerModel() {
-        return TOKENIZER_MODEL;
+    @FunctionalInterface
+    private interface ModelReader<T> {
+        T read(InputStream in) throws IOException;
     }
 
     /**
-     * Get model to apply sentence detection
+     * Model loaded on its first use, once, whatever the number of threads asking for it.
+     * A failed load is not remembered, the next call tries again
      *
-     * @return {@link LoaderNLP#SENTENCE_MODEL}
-     * @see LoaderNLP#SENTENCE_MODEL
+     * @param <T> Type of the model
      */
-    static SentenceModel getSentenceModel() {
-        return SENTENCE_MODEL;
+    private static final class LazyModel<T> {
+        /**
+         * Key of the property giving the model file
+         */
+        private final ConfigKey<Path> key;
+        /**
+         * Build the model from its file
+         */
+        private final ModelReader<T> reader;
+        /**
+         * Model, null until loaded
+         */
+        private volatile T model;
+
+        private LazyModel(ConfigKey<Path> key, ModelReader<T> reader) {
+            this.key = key;
+            this.reader = reader;
+        }
+
+        /**
+         * Get the model, loading it if needed
+         *
+         * @return Loaded model
+         * @throws IllegalStateException if the model cannot be loaded
+         */
+        private T get() {
+            T loaded = model;
+            if (loaded == null) {
+                synchronized (this) {
+                    loaded = model;
+                    if (loaded == null) {
+                        loaded = load();
+                        model = loaded;
+                    }
+                }
+            }
+            return loaded;
+        }
+
+        private boolean isLoaded() {
+            return model != null;
+        }
+
+        /**
+         * Load the model from a new path and swap it in, keeping the current model if the load fails
+         *
+         * @param path New model file
+         */
+        private void reload(Path path) {
+            T loaded;
+            try {
+                loaded = load(path);
+            } catch (IllegalStateException e) {
+                return;
+            }
+            synchronized (this) {
+                model = loaded;
+            }
+            GENERATION.incrementAndGet();
+            SentenceCache.getInstance().clear();
+            LOGGER.info("Model " + key + " replaced, generation " + GENERATION.get());
+        }
+
+        private T load() {
+            return load(PropertiesManager.getInstance().get(key));
+        }
+
+        private T load(Path path) {
+            if (path == null) {
+                LOGGER.error("Cannot load " + key + " : no model configured");
+                throw new IllegalStateException(key + " is not configured");
+            }
+            long start = System.nanoTime();
+            try {
+                T loaded = readMapped(path, reader);
+                long elapsed = System.nanoTime() - start;
+                MetricsLogger.getMetricsLogger().histogram("model.load", "model", key.getName()).record(elapsed);
+                LOGGER.info("Loaded " + key + " from " + path + " in " + elapsed / 1_000_000 + " ms");
+                return loaded;
+            } catch (IllegalArgumentException | IOException e) {
+                LOGGER.error("Cannot load " + key + " from " + path + " : " + e.getMessage());
+                throw new IllegalStateException(e);
+            }
+        }
     }
 
     /**
-     * Get model to apply part-of-speech tagger
-     *
-     * @return {@link LoaderNLP#POS_MODEL}
-     * @see LoaderNLP#POS_MODEL
+     * {@link InputStream} reading a {@link ByteBuffer}, not thread safe
      */
-    static POSModel getPosModel() {
-        return POS_MODEL;
+    private static final class ByteBufferInputStream extends InputStream {
+        /**
+         * Content to read, its position is the position of the stream
+         */
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = Objects.requireNonNull(buffer);
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(len, buffer.remaining());
+            buffer.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
     }
 }
@@ -0,0 +1,205 @@
+package org.atos.scouter.util.nlp;
+
+import java.util.Objects;
+
+/**
+ * Named entity found by {@link OpenNLP#findEntities(String, java.util.Set)}. Once relocated in its document, its
+ * offsets point in the text normalized by the chunk handler, whitespace collapsed, Unicode NFKC and soft hyphens
+ * removed (see {@link org.atos.scouter.TikaTools.SentenceChunkHandler#normalize(String)}) : the pool, async,
+ * pipeline and server modes give the same offsets for the same document.
+ *
+ * @version 1.0
+ */
+public class NamedEntity {
+    /**
+     * Type of the entity
+     */
+    private final OpenNLP.nerOptions type;
+    /**
+     * Index of the sentence containing the entity in its chunk
+     */
+    private final int sentence;
+    /**
+     * Offset of the analyzed chunk in the document, with sentence it tells the sentences of a document apart
+     */
+    private final int chunk;
+    /**
+     * Index of the first token of the entity in its sentence
+     */
+    private final int tokenStart;
+    /**
+     * Index after the last token of the entity in its sentence
+     */
+    private final int tokenEnd;
+    /**
+     * Offset of the first character of the entity in the analyzed text
+     */
+    private final int start;
+    /**
+     * Offset after the last character of the entity in the analyzed text
+     */
+    private final int end;
+    /**
+     * Probability given by the name finder
+     */
+    private final double probability;
+    /**
+     * Text of the entity
+     */
+    private final String text;
+    /**
+     * Number of the page containing the entity, starting at 1, 0 if unknown
+     */
+    private final int page;
+
+    /**
+     * Build a new entity
+     *
+     * @param type        Type of the entity
+     * @param sentence    Index of the sentence containing the entity
+     * @param tokenStart  Index of the first token of the entity in its sentence
+     * @param tokenEnd    Index after the last token of the entity in its sentence
+     * @param start       Offset of the first character of the entity in the analyzed text
+     * @param end         Offset after the last character of the entity in the analyzed text
+     * @param probability Probability given by the name finder
+     * @param text        Text of the entity
+     * @throws NullPointerException if type or text is null
+     */
+    public NamedEntity(OpenNLP.nerOptions type, int sentence, int tokenStart, int tokenEnd,
+                       int start, int end, double probability, String text) {
+        this(type, sentence, 0, tokenStart, tokenEnd, start, end, probability, text, 0);
+    }
+
+    private NamedEntity(OpenNLP.nerOptions type, int sentence, int chunk, int tokenStart, int tokenEnd,
+                        int start, int end, double probability, String text, int page) {
+        this.type = Objects.requireNonNull(type);
+        this.sentence = sentence;
+        this.chunk = chunk;
+        this.tokenStart = tokenStart;
+        this.tokenEnd = tokenEnd;
+        this.start = start;
+        this.end = end;
+        this.probability = probability;
+        this.text = Objects.requireNonNull(text);
+        this.page = page;
+    }
+
+    /**
+     * Copy this entity with its character offsets and the offset of its chunk moved, to place an entity found in
+     * a chunk in its document
+     *
+     * @param offset Offset of the analyzed text in the document
+     * @return Entity with offsets relative to the document
+     */
+    public NamedEntity relocate(int offset) {
+        return new NamedEntity(type, sentence, chunk + offset, tokenStart, tokenEnd, start + offset, end + offset,
+                probability, text, page);
+    }
+
+    /**
+     * Copy this entity with the number of the page containing it
+     *
+     * @param page Number of the page, starting at 1
+     * @return Entity on page
+     */
+    public NamedEntity onPage(int page) {
+        return new NamedEntity(type, sentence, chunk, tokenStart, tokenEnd, start, end, probability, text, page);
+    }
+
+    /**
+     * Get type of the entity
+     *
+     * @return {@link NamedEntity#type}
+     */
+    public OpenNLP.nerOptions getType() {
+        return type;
+    }
+
+    /**
+     * Get index of the sentence containing the entity in its chunk, the index restarts at 0 in each chunk,
+     * see {@link NamedEntity#getChunk()}
+     *
+     * @return {@link NamedEntity#sentence}
+     */
+    public int getSentence() {
+        return sentence;
+    }
+
+    /**
+     * Get offset in the document of the chunk the entity was found in, the entities sharing both their chunk and
+     * their sentence index are in the same sentence of the document
+     *
+     * @return {@link NamedEntity#chunk}
+     */
+    public int getChunk() {
+        return chunk;
+    }
+
+    /**
+     * Get index of the first token of the entity in its sentence
+     *
+     * @return {@link NamedEntity#tokenStart}
+     */
+    public int getTokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * Get index after the last token of the entity in its sentence
+     *
+     * @return {@link NamedEntity#tokenEnd}
+     */
+    public int getTokenEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * Get offset of the first character of the entity
+     *
+     * @return {@link NamedEntity#start}
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Get offset after the last character of the entity
+     *
+     * @return {@link NamedEntity#end}
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Get probability given by the name finder
+     *
+     * @return {@link NamedEntity#probability}
+     */
+    public double getProbability() {
+        return probability;
+    }
+
+    /**
+     * Get text of the entity
+     *
+     * @return {@link NamedEntity#text}
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Get number of the page containing the entity
+     *
+     * @return {@link NamedEntity#page}, 0 if unknown
+     */
+    public int getPage() {
+        return page;
+    }
+
+    @Override
+    public String toString() {
+        return type + "[" + start + "," + end + "] " + text;
+    }
+}
@@ -1,10 +1,8 @@
-
-
 package org.atos.scouter.util.nlp;
 
 import org.atos.scouter.util.PropertiesManager;
+import com.google.common.cache.CacheStats;
 import opennlp.tools.lemmatizer.DictionaryLemmatizer;
-import opennlp.tools.lemmatizer.SimpleLemmatizer;
 import opennlp.tools.namefind.NameFinderME;
 import opennlp.tools.postag.POSTaggerME;
 import opennlp.tools.sentdetect.SentenceDetectorME;
@@ -14,12 +12,15 @@ import opennlp.tools.util.Span;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 /**
+ * Apache OpenNLP pipeline of one language. An instance is not thread safe, borrow one from {@link OpenNLPPool}
+ *
  * @version 1.0
  */
 public class OpenNLP {
@@ -36,87 +37,146 @@ public class OpenNLP {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(OpenNLP.class);
     /**
-     * Store unique instance per Thread of {@link OpenNLP}
+     * Results of the sentences already analyzed, shared by every instance
      *
-     * @see OpenNLP#getOpenNLP(Thread)
+     * @see SentenceCache
+     */
+    private static final SentenceCache SENTENCE_CACHE = SentenceCache.getInstance();
+    /**
+     * Id of each POS tag seen, see {@link OpenNLP#getTagName(int)}
      */
-    private static final Map<Thread, OpenNLP> INSTANCES = new HashMap<>();
+    private static final Map<String, Integer> TAG_IDS = new ConcurrentHashMap<>();
     /**
-     * Load lemmatizer model
+     * POS tag of each id
+     */
+    private static final List<String> TAG_NAMES = new CopyOnWriteArrayList<>();
+    /**
+     * Lemma dictionary shared by every instance, null until first used
      *
      * @see OpenNLP#lemmatize(String)
+     * @see LoaderNLP.ModelSet#getLemmaDictionary()
      */
-    private final DictionaryLemmatizer lemmatizer;
+    private DictionaryLemmatizer lemmatizer;
     /**
-     * Use to do sentence detection
+     * Use to do sentence detection, null until first used
      *
      * @see OpenNLP#detectSentences(String)
      */
-    private final SentenceDetectorME detector;
+    private SentenceDetectorME detector;
     /**
-     * Use to apply person name finder
+     * Use to apply person name finder, null until first used
      *
-     * @see OpenNLP#findPersonName(String[])
+     * @see OpenNLP#getNameFinder(nerOptions)
      */
-    private final NameFinderME nameFinderPers;
+    private NameFinderME nameFinderPers;
     /**
-     * Use to apply organization name finder
+     * Use to apply organization name finder, null until first used
      *
-     * @see OpenNLP#findOrganizationName(String[])
+     * @see OpenNLP#getNameFinder(nerOptions)
      */
-    private final NameFinderME nameFinderOrg;
+    private NameFinderME nameFinderOrg;
     /**
-     * Use to apply location name finder
+     * Use to apply location name finder, null until first used
      *
-     * @see OpenNLP#findLocationName(String[])
+     * @see OpenNLP#getNameFinder(nerOptions)
      */
-    private final NameFinderME nameFinderLoc;
+    private NameFinderME nameFinderLoc;
     /**
-     * Use to apply tokenization
+     * Use to apply tokenization, null until first used
      *
      * @see OpenNLP#learnableTokenize(String)
      */
-    private final Tokenizer tokenizer;
+    private Tokenizer tokenizer;
     /**
-     * Use to apply part-of-speech tagger
+     * Use to apply part-of-speech tagger, null until first used
      *
      * @see OpenNLP#posTagging(String[])
      */
-    private final POSTaggerME tagger;
+    private POSTaggerME tagger;
+    /**
+     * Model generation when this instance was built
+     *
+     * @see LoaderNLP#getGeneration()
+     */
+    private final long generation = LoaderNLP.getGeneration();
+    /**
+     * Models of the language of this instance
+     */
+    private final LoaderNLP.ModelSet models;
+    /**
+     * Language of this instance
+     */
+    private final String language;
+    /**
+     * Names of the results of this instance in {@link OpenNLP#SENTENCE_CACHE}, prefixed by the models and
+     * their generation
+     */
+    private final String tokenKind;
+    private final String posKind;
+    private final String lemmaKind;
+    private final String[] nerKinds = new String[nerOptions.values().length];
+    /**
+     * Token strings of the sentence being analyzed, reused for every sentence
+     */
+    private final SentenceTokens sentenceTokens = new SentenceTokens();
+    /**
+     * Annotations reused by the methods returning strings
+     */
+    private final TextAnnotations scratchAnnotations = new TextAnnotations();
+    /**
+     * Document whose tokens the adaptive data of the name finders remember, weakly held so an idle instance
+     * does not keep it in memory
+     *
+     * @see OpenNLP#startDocument(Object)
+     */
+    private WeakReference<Object> document = new WeakReference<>(null);
 
     /**
-     * Private constructor to allow only one {@link OpenNLP} for each Thread
+     * Package-private constructor, instances are borrowed from {@link OpenNLPPool}.
+     * Each component is built on its first use, loading only the models this instance needs
      *
-     * @throws IllegalStateException if an error occurred from {@link LoaderNLP} or {@link PropertiesManager}
+     * @param language ISO 639-1 code of the language
+     * @param models   Models of the language
      */
-    private OpenNLP() {
-        try {
-            detector = new SentenceDetectorME(LoaderNLP.getSentenceModel());
-            tokenizer = new TokenizerME(LoaderNLP.getTokenizerModel());
-            tagger = new POSTaggerME(LoaderNLP.getPosModel());
-            nameFinderOrg = new NameFinderME(LoaderNLP.getTokenNameFinderModelOrg());
-            nameFinderLoc = new NameFinderME(LoaderNLP.getTokenNameFinderModelLoc());
-            nameFinderPers = new NameFinderME(LoaderNLP.getTokenNameFinderModelPers());
-            InputStream inputStream = new FileInputStream(PROPERTIES_MANAGER.getProperty("nlp.dictionaries.path"));
-            lemmatizer = new SimpleLemmatizer(inputStream);
-            inputStream.close();
-        } catch (IllegalArgumentException | IOException e) {
-            LOGGER.error(e.getMessage());
-            throw new IllegalStateException(e);
+    OpenNLP(String language, LoaderNLP.ModelSet models) {
+        this.language = Objects.requireNonNull(language);
+        this.models = Objects.requireNonNull(models);
+        // The generation keeps the results of instances built on replaced models, still running after a reload,
+        // apart from those of the new instances
+        String prefix = models.getName() + "@" + generation + ":";
+        tokenKind = prefix + "token";
+        posKind = prefix + "pos";
+        lemmaKind = prefix + "lemma";
+        for (nerOptions type : nerOptions.values()) {
+            nerKinds[type.ordinal()] = prefix + type.name();
         }
     }
 
     /**
-     * Get instance of {@link OpenNLP} for each thread because Apache OpenNLP is not thread safe
+     * Get language of this instance
+     *
+     * @return ISO 639-1 code of the language
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * Get models of this instance
      *
-     * @param thread Thread needs {@link OpenNLP}
-     * @return Instance of {@link OpenNLP}
-     * @throws NullPointerException if thread is null
-     * @see OpenNLP#INSTANCES
+     * @return {@link OpenNLP#models}
      */
-    public static OpenNLP getOpenNLP(Thread thread) {
-        Objects.requireNonNull(thread);
-        return INSTANCES.computeIfAbsent(thread, t -> new OpenNLP());
+    LoaderNLP.ModelSet getModels() {
+        return models;
+    }
+
+    /**
+     * Get model generation when this instance was built
+     *
+     * @return {@link OpenNLP#generation}
+     */
+    long getGeneration() {
+        return generation;
     }
 
     /**
@@ -134,9 +194,9 @@ public class OpenNLP {
      * @throws NullPointerException if text is null
      * @see OpenNLP#detector
      */
-    private String[] detectSentences(String text) {
+    public String[] detectSentences(String text) {
         Objects.requireNonNull(text);
-        return detector.sentDetect(text);
+        return getDetector().sentDetect(text);
     }
 
     /**
@@ -149,7 +209,7 @@ public class OpenNLP {
      */
     public String[] learnableTokenize(String text) {
         Objects.requireNonNull(text);
-        return tokenizer.tokenize(text);
+        return getTokenizer().tokenize(text);
     }
 
     /**
@@ -160,79 +220,112 @@ public class OpenNLP {
      * @throws NullPointerException if tokens is null
      * @see OpenNLP#tagger
      */
-    private String[] posTagging(String[] tokens) {
+    public String[] posTagging(String[] tokens) {
         Objects.requireNonNull(tokens);
-        return tagger.tag(tokens);
+        return getTagger().tag(tokens);
     }
 
     /**
-     * OpenNLP : name entity recognizer function. Detect organizations names.
+     * OpenNLP : lemmatization. The function simplify the step of POStagging for the verbs category.
      *
-     * @param tokens are an array of string to analyze
-     * @return an array of entity detected as an organization
-     * @throws NullPointerException if tokens is null
-     * @see OpenNLP#nameFinderOrg
+     * @param text to lemmatize
+     * @return Map of each lemmatize word with the POStag associate
+     * @throws NullPointerException if text is null
+     * @see OpenNLP#lemmatizer
      */
-    private Span[] findOrganizationName(String[] tokens) {
-        Objects.requireNonNull(tokens);
-        return nameFinderOrg.find(tokens);
+    public Map<String, String> lemmatize(String text) {
+        Objects.requireNonNull(text);
+        Map<String, String> lemmatizedTokens = new HashMap<>();
+        TextAnnotations lemmas = annotateLemmas(text, scratchAnnotations);
+        for (int i = 0; i < lemmas.size(); i++) {
+            lemmatizedTokens.put(lemmas.getLabel(i), getTagName(lemmas.getType(i)));
+        }
+        return lemmatizedTokens;
     }
 
     /**
-     * OpenNLP : name entity recognizer function. Detect locations names.
+     * Annotate each token of a text with its POS tag id and its lemma, without building any substring.
+     * The verb tags are simplified to V, as in {@link OpenNLP#lemmatize(String)}
      *
-     * @param tokens are an array of string to analyze
-     * @return an array of entity detected as a location
-     * @throws NullPointerException if tokens is null
-     * @see OpenNLP#nameFinderLoc
+     * @param text        to lemmatize
+     * @param annotations annotations receiving one annotation per token, reset first
+     * @return annotations, with the tag id as type and the lemma as label
+     * @throws NullPointerException if text or annotations is null
+     * @see OpenNLP#getTagName(int)
      */
-    private Span[] findLocationName(String[] tokens) {
-        Objects.requireNonNull(tokens);
-        return nameFinderLoc.find(tokens);
+    public TextAnnotations annotateLemmas(String text, TextAnnotations annotations) {
+        Objects.requireNonNull(text);
+        annotations.reset(text);
+        // Split text content in sentences
+        for (Span sentenceSpan : sentencePositions(text)) {
+            int sentenceStart = sentenceSpan.getStart();
+            String sentence = text.substring(sentenceStart, sentenceSpan.getEnd());
+            // For each sentence, tokenize and tag before lemmatizing
+            Span[] tokenSpans = tokenizeSentence(sentence);
+            LemmaSentence lemmaSentence = SENTENCE_CACHE.get(lemmaKind, sentence, () -> lemmatizeSentence(sentence));
+            for (int i = 0; i < tokenSpans.length; i++) {
+                annotations.add(sentenceStart + tokenSpans[i].getStart(), sentenceStart + tokenSpans[i].getEnd(),
+                        lemmaSentence.tagIds[i], lemmaSentence.lemmas[i]);
+            }
+        }
+        return annotations;
     }
 
     /**
-     * OpenNLP : name entity recognizer function. Detect persons names.
+     * Get the POS tag of an id used by {@link OpenNLP#annotateLemmas(String, TextAnnotations)}
      *
-     * @param tokens are an array of string to analyze
-     * @return an array of entity detected as a personnality
-     * @throws NullPointerException if tokens is null
-     * @see OpenNLP#nameFinderPers
+     * @param id Tag id
+     * @return POS tag
+     * @throws IndexOutOfBoundsException if the id is unknown
      */
-    private Span[] findPersonName(String[] tokens) {
-        Objects.requireNonNull(tokens);
-        return nameFinderPers.find(tokens);
+    public static String getTagName(int id) {
+        return TAG_NAMES.get(id);
     }
 
     /**
-     * OpenNLP : lemmatization. The function simplify the step of POStagging for the verbs category.
+     * Get the id of a POS tag, assigned on first use
      *
-     * @param text to lemmatize
-     * @return Map of each lemmatize word with the POStag associate
-     * @throws NullPointerException if text is null
-     * @see OpenNLP#lemmatizer
+     * @param tag POS tag
+     * @return Tag id
      */
-    private Map<String, String> lemmatize(String text) {
-        Objects.requireNonNull(text);
-        Map<String, String> lemmatizedTokens = new HashMap<>();
-        // Split tweet text content in sentences
-        String[] sentences = detectSentences(text);
-        // For each sentence, tokenize and tag before lemmatizing
-        for (String sentence : sentences) {
-            // Split each sentence in tokens
-            String[] learnableTokens = learnableTokenize(sentence);
-            // Get tag for each token
-            String[] tags = posTagging(learnableTokens);
-            // Get lemmatize form of each token
-            for (int i = 0; i < learnableTokens.length; i++) {
-                if (tags[i].startsWith("V") && tags[i].length() > 1) {
-                    //if the POStag start with V, we just keep the tag V for simplify the lemmatization with the dictionnary
-                    tags[i] = "V";
+    private static int getTagId(String tag) {
+        Integer id = TAG_IDS.get(tag);
+        if (id == null) {
+            synchronized (TAG_NAMES) {
+                id = TAG_IDS.get(tag);
+                if (id == null) {
+                    id = TAG_NAMES.size();
+                    TAG_NAMES.add(tag);
+                    TAG_IDS.put(tag, id);
                 }
-                lemmatizedTokens.put(lemmatizer.lemmatize(learnableTokens[i], tags[i]), tags[i]);
             }
         }
-        return lemmatizedTokens;
+        return id;
+    }
+
+    /**
+     * Tokenize, tag and lemmatize a sentence
+     *
+     * @param sentence to lemmatize
+     * @return lemma and POStag of each token
+     */
+    private LemmaSentence lemmatizeSentence(String sentence) {
+        // Split each sentence in tokens
+        String[] learnableTokens = sentenceTokens.reset(sentence, tokenizeSentence(sentence)).get();
+        // Get tag for each token, copied as the cached tags must not be modified
+        String[] tags = tagSentence(sentence, sentenceTokens).clone();
+        // Get lemmatize form of each token
+        String[] lemmas = new String[learnableTokens.length];
+        int[] tagIds = new int[learnableTokens.length];
+        for (int i = 0; i < learnableTokens.length; i++) {
+            if (tags[i].startsWith("V") && tags[i].length() > 1) {
+                //if the POStag start with V, we just keep the tag V for simplify the lemmatization with the dictionnary
+                tags[i] = "V";
+            }
+            lemmas[i] = getLemmatizer().lemmatize(learnableTokens[i], tags[i]);
+            tagIds[i] = getTagId(tags[i]);
+        }
+        return new LemmaSentence(lemmas, tagIds);
     }
 
     /**
@@ -281,33 +374,381 @@ public class OpenNLP {
      *
      * @param post to analyze
      * @param ner  ENUM : LOCATION, ORGANIZATION or PERSON : type of NER analyse
-     * @return List of selected words by NER
+     * @return List of selected words by NER, the text covered by each entity
      * @throws NullPointerException if post or ner is null
+     * @see OpenNLP#annotateEntities(String, Set, TextAnnotations)
      */
     public List<String> applyNLPner(String post, nerOptions ner) {
         Objects.requireNonNull(post);
         Objects.requireNonNull(ner);
         List<String> words = new ArrayList<>();
-        Span[] spans;
-        String[] sentences = detectSentences(post);
+        TextAnnotations entities = annotateEntities(post, Collections.singleton(ner), scratchAnnotations);
+        for (int i = 0; i < entities.size(); i++) {
+            words.add(entities.getText(i));
+        }
+        return words;
+    }
+
+    /**
+     * Annotate the named entities of several types of a text, without building any substring
+     *
+     * @param text        to analyze
+     * @param types       types of entity to find
+     * @param annotations annotations receiving one annotation per entity, reset first
+     * @return annotations, with the ordinal of the {@link nerOptions} as type, in sentence order
+     * @throws NullPointerException if an argument is null
+     */
+    public TextAnnotations annotateEntities(String text, Set<nerOptions> types, TextAnnotations annotations) {
+        Objects.requireNonNull(text);
+        Objects.requireNonNull(types);
+        annotations.reset(text);
+        if (types.isEmpty()) {
+            return annotations;
+        }
+        for (Span sentenceSpan : sentencePositions(text)) {
+            int sentenceStart = sentenceSpan.getStart();
+            String sentence = text.substring(sentenceStart, sentenceSpan.getEnd());
+            Span[] tokenSpans = tokenizeSentence(sentence);
+            sentenceTokens.reset(sentence, tokenSpans);
+            for (nerOptions type : types) {
+                Span[] spans = findNames(type, sentence, sentenceTokens).spans;
+                for (Span span : spans) {
+                    annotations.add(sentenceStart + tokenSpans[span.getStart()].getStart(),
+                            sentenceStart + tokenSpans[span.getEnd() - 1].getEnd(), type.ordinal(), null);
+                }
+            }
+        }
+        return annotations;
+    }
+
+    /**
+     * Analyze a list of sentences at once : each sentence is tokenized once, then tagged if asked
+     * and searched by every requested name finder, reusing the same token strings.
+     * Results are written in a columnar {@link SentenceBatch}, cleared first, which the caller reuses
+     * from one call to the next to avoid allocating per token or per entity.
+     * Call {@link OpenNLP#startDocument(Object)} before the first batch of each document.
+     *
+     * @param sentences sentences to analyze
+     * @param types     types of entity to find, may be empty
+     * @param tag       also compute the POS tag of each token
+     * @param batch     batch receiving the results
+     * @return batch, filled
+     * @throws NullPointerException if an argument is null
+     */
+    public SentenceBatch analyzeBatch(List<String> sentences, Set<nerOptions> types, boolean tag, SentenceBatch batch) {
+        Objects.requireNonNull(sentences);
+        Objects.requireNonNull(types);
+        Objects.requireNonNull(batch);
+        batch.clear();
         for (String sentence : sentences) {
-            String[] learnableTokens = learnableTokenize(sentence);
-            switch (ner.toString()) {
-                case "LOCATION":
-                    spans = findLocationName(learnableTokens);
-                    break;
-                case "ORGANIZATION":
-                    spans = findOrganizationName(learnableTokens);
-                    break;
-                case "PERSON":
-                    spans = findPersonName(learnableTokens);
-                    break;
-                default:
-                    LOGGER.warn("Bad NER option.\n use : 'LOCATION', 'PERSON' or 'ORGANIZATION'");
-                    return words; //return empty list
+            Span[] tokenSpans = tokenizeSentence(Objects.requireNonNull(sentence));
+            sentenceTokens.reset(sentence, tokenSpans);
+            batch.addSentence(tokenSpans, tag ? tagSentence(sentence, sentenceTokens) : null);
+            for (nerOptions type : types) {
+                NameSpans names = findNames(type, sentence, sentenceTokens);
+                for (int i = 0; i < names.spans.length; i++) {
+                    batch.addEntity(type, names.spans[i].getStart(), names.spans[i].getEnd(), names.probs[i]);
+                }
             }
-            Arrays.asList(Span.spansToStrings(spans, learnableTokens)).forEach(words::add);
         }
-        return words;
+        return batch;
+    }
+
+    /**
+     * Tell this instance which document the next calls analyze : the adaptive data of the name finders is reset
+     * when the document differs from the last one, so the previous outcomes of the tokens of a document help
+     * to find the names of its next chunks but never leak into another document.
+     * Call it before analyzing each chunk of a document, the chunks of several documents may interleave on an
+     * instance borrowed per chunk
+     *
+     * @param document Object identifying the document, compared by identity, one per document analyzed
+     * @throws NullPointerException if document is null
+     */
+    public void startDocument(Object document) {
+        Objects.requireNonNull(document);
+        if (this.document.get() != document) {
+            clearAdaptiveData();
+            this.document = new WeakReference<>(document);
+        }
+    }
+
+    /**
+     * Reset the adaptive data of the name finders, which remember the previous outcomes of the tokens
+     * of the current document
+     *
+     * @see OpenNLP#startDocument(Object)
+     */
+    public void clearAdaptiveData() {
+        if (nameFinderPers != null) {
+            nameFinderPers.clearAdaptiveData();
+        }
+        if (nameFinderOrg != null) {
+            nameFinderOrg.clearAdaptiveData();
+        }
+        if (nameFinderLoc != null) {
+            nameFinderLoc.clearAdaptiveData();
+        }
+    }
+
+    /**
+     * Find named entities of several types in a single pass : the text is split in sentences and tokenized once,
+     * then every requested name finder runs on the same tokens.
+     *
+     * @param text  to analyze
+     * @param types types of entity to find
+     * @return Entities found, in sentence order, with offsets relative to text
+     * @throws NullPointerException if text or types is null
+     */
+    public List<NamedEntity> findEntities(String text, Set<nerOptions> types) {
+        Objects.requireNonNull(text);
+        Objects.requireNonNull(types);
+        if (types.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Span[] sentences = sentencePositions(text);
+        Span[][] tokens = new Span[sentences.length][];
+        for (int s = 0; s < sentences.length; s++) {
+            tokens[s] = tokenPositions(sentences[s].getCoveredText(text).toString());
+        }
+        return findEntities(text, sentences, tokens, types);
+    }
+
+    /**
+     * Find named entities of several types in a text already split in sentences and tokenized,
+     * to run each step on its own thread
+     *
+     * @param text      to analyze
+     * @param sentences position of each sentence in text, see {@link OpenNLP#sentencePositions(String)}
+     * @param tokens    position of each token in its sentence, see {@link OpenNLP#tokenPositions(String)}
+     * @param types     types of entity to find
+     * @return Entities found, in sentence order, with offsets relative to text
+     * @throws NullPointerException     if an argument is null
+     * @throws IllegalArgumentException if there is not one token array per sentence
+     */
+    public List<NamedEntity> findEntities(String text, Span[] sentences, Span[][] tokens, Set<nerOptions> types) {
+        Objects.requireNonNull(text);
+        Objects.requireNonNull(sentences);
+        Objects.requireNonNull(tokens);
+        Objects.requireNonNull(types);
+        if (sentences.length != tokens.length) {
+            throw new IllegalArgumentException("Expected the tokens of " + sentences.length + " sentences");
+        }
+        List<NamedEntity> entities = new ArrayList<>();
+        for (int s = 0; s < sentences.length; s++) {
+            int sentenceStart = sentences[s].getStart();
+            String sentence = text.substring(sentenceStart, sentences[s].getEnd());
+            Span[] tokenSpans = tokens[s];
+            sentenceTokens.reset(sentence, tokenSpans);
+            for (nerOptions type : types) {
+                NameSpans names = findNames(type, sentence, sentenceTokens);
+                Span[] spans = names.spans;
+                double[] probs = names.probs;
+                for (int i = 0; i < spans.length; i++) {
+                    int start = sentenceStart + tokenSpans[spans[i].getStart()].getStart();
+                    int end = sentenceStart + tokenSpans[spans[i].getEnd() - 1].getEnd();
+                    entities.add(new NamedEntity(type, s, spans[i].getStart(), spans[i].getEnd(),
+                            start, end, probs[i], text.substring(start, end)));
+                }
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * OpenNLP : find the position of each sentence of a text
+     *
+     * @param text to analyze
+     * @return position of each sentence in text
+     * @throws NullPointerException if text is null
+     */
+    public Span[] sentencePositions(String text) {
+        Objects.requireNonNull(text);
+        return getDetector().sentPosDetect(text);
+    }
+
+    /**
+     * OpenNLP : find the position of each token of a sentence, cached in {@link OpenNLP#SENTENCE_CACHE}
+     *
+     * @param sentence to tokenize
+     * @return position of each token in the sentence, must not be modified
+     * @throws NullPointerException if sentence is null
+     */
+    public Span[] tokenPositions(String sentence) {
+        Objects.requireNonNull(sentence);
+        return tokenizeSentence(sentence);
+    }
+
+    /**
+     * Get the name finder of a type of entity
+     *
+     * @param type type of entity
+     * @return name finder of this type
+     */
+    private NameFinderME getNameFinder(nerOptions type) {
+        switch (type) {
+            case LOCATION:
+                if (nameFinderLoc == null) {
+                    nameFinderLoc = new NameFinderME(models.getTokenNameFinderModel(type));
+                }
+                return nameFinderLoc;
+            case ORGANIZATION:
+                if (nameFinderOrg == null) {
+                    nameFinderOrg = new NameFinderME(models.getTokenNameFinderModel(type));
+                }
+                return nameFinderOrg;
+            default:
+                if (nameFinderPers == null) {
+                    nameFinderPers = new NameFinderME(models.getTokenNameFinderModel(type));
+                }
+                return nameFinderPers;
+        }
+    }
+
+    /**
+     * Get the sentence detector, built on first use
+     *
+     * @return {@link OpenNLP#detector}
+     * @throws IllegalStateException if the model cannot be loaded
+     */
+    private SentenceDetectorME getDetector() {
+        if (detector == null) {
+            detector = new SentenceDetectorME(models.getSentenceModel());
+        }
+        return detector;
+    }
+
+    /**
+     * Get the tokenizer, built on first use
+     *
+     * @return {@link OpenNLP#tokenizer}
+     * @throws IllegalStateException if the model cannot be loaded
+     */
+    private Tokenizer getTokenizer() {
+        if (tokenizer == null) {
+            tokenizer = new TokenizerME(models.getTokenizerModel());
+        }
+        return tokenizer;
+    }
+
+    /**
+     * Get the part-of-speech tagger, built on first use
+     *
+     * @return {@link OpenNLP#tagger}
+     * @throws IllegalStateException if the model cannot be loaded
+     */
+    private POSTaggerME getTagger() {
+        if (tagger == null) {
+            tagger = new POSTaggerME(models.getPosModel());
+        }
+        return tagger;
+    }
+
+    /**
+     * Get the lemma dictionary, loaded on first use
+     *
+     * @return {@link OpenNLP#lemmatizer}
+     * @throws IllegalStateException if the dictionary cannot be loaded
+     */
+    private DictionaryLemmatizer getLemmatizer() {
+        if (lemmatizer == null) {
+            lemmatizer = models.getLemmaDictionary();
+        }
+        return lemmatizer;
+    }
+
+    /**
+     * Tokenize a sentence, cached in {@link OpenNLP#SENTENCE_CACHE}
+     *
+     * @param sentence to tokenize
+     * @return position of each token in the sentence
+     */
+    private Span[] tokenizeSentence(String sentence) {
+        return SENTENCE_CACHE.get(tokenKind, sentence, () -> getTokenizer().tokenizePos(sentence));
+    }
+
+    /**
+     * Apply a name finder on a tokenized sentence, cached in {@link OpenNLP#SENTENCE_CACHE}
+     *
+     * @param type     type of entity
+     * @param sentence sentence to analyze
+     * @param tokens   token strings of the sentence, only built on a cache miss
+     * @return spans of the entities found and their probabilities
+     */
+    private NameSpans findNames(nerOptions type, String sentence, Supplier<String[]> tokens) {
+        return SENTENCE_CACHE.get(nerKinds[type.ordinal()], sentence, () -> {
+            NameFinderME nameFinder = getNameFinder(type);
+            Span[] spans = nameFinder.find(tokens.get());
+            return new NameSpans(spans, nameFinder.probs(spans));
+        });
+    }
+
+    /**
+     * Apply the part-of-speech tagger on a tokenized sentence, cached in {@link OpenNLP#SENTENCE_CACHE}
+     *
+     * @param sentence sentence to analyze
+     * @param tokens   token strings of the sentence, only built on a cache miss
+     * @return tag of each token, must not be modified
+     */
+    private String[] tagSentence(String sentence, Supplier<String[]> tokens) {
+        return SENTENCE_CACHE.get(posKind, sentence, () -> getTagger().tag(tokens.get()));
+    }
+
+    /**
+     * Get hit and miss statistics of the sentence cache shared by every instance
+     *
+     * @return Statistics of {@link OpenNLP#SENTENCE_CACHE}
+     */
+    public static CacheStats getSentenceCacheStats() {
+        return SENTENCE_CACHE.stats();
+    }
+
+    /**
+     * Token strings of a sentence, built once on first use and shared by the tagger and the name finders
+     */
+    private static final class SentenceTokens implements Supplier<String[]> {
+        private String sentence;
+        private Span[] spans;
+        private String[] tokens;
+
+        private SentenceTokens reset(String sentence, Span[] spans) {
+            this.sentence = sentence;
+            this.spans = spans;
+            this.tokens = null;
+            return this;
+        }
+
+        @Override
+        public String[] get() {
+            if (tokens == null) {
+                tokens = Span.spansToStrings(spans, sentence);
+            }
+            return tokens;
+        }
+    }
+
+    /**
+     * Entities found by a name finder in a sentence
+     */
+    private static final class NameSpans {
+        private final Span[] spans;
+        private final double[] probs;
+
+        private NameSpans(Span[] spans, double[] probs) {
+            this.spans = spans;
+            this.probs = probs;
+        }
+    }
+
+    /**
+     * Lemma and POStag id of each token of a sentence
+     */
+    private static final class LemmaSentence {
+        private final String[] lemmas;
+        private final int[] tagIds;
+
+        private LemmaSentence(String[] lemmas, int[] tagIds) {
+            this.lemmas = lemmas;
+            this.tagIds = tagIds;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,302 @@
+package org.atos.scouter.util.nlp;
+
+import org.atos.scouter.metrics.MetricsLogger;
+import org.atos.scouter.util.ConfigKeys;
+import org.atos.scouter.util.PropertiesManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of {@link OpenNLP} instances. Apache OpenNLP is not thread safe, so a thread borrows an instance,
+ * uses it alone and gives it back. At most maxSize instances exist at once, instances left idle longer
+ * than the idle timeout are dropped so the heap shrinks back when the load goes down.
+ * Instances built before a model was reloaded are retired instead of being reused.
+ * Each instance analyzes one language, a borrow reuses an idle instance of the requested language.
+ *
+ * @version 1.0
+ */
+public class OpenNLPPool {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(OpenNLPPool.class);
+    /**
+     * Shared pool configured from {@link PropertiesManager}
+     *
+     * @see OpenNLPPool#getInstance()
+     */
+    private static OpenNLPPool openNLPPool;
+    /**
+     * One permit per instance which can be borrowed
+     */
+    private final Semaphore permits;
+    /**
+     * Idle instances, most recently released first
+     */
+    private final LinkedBlockingDeque<IdleInstance> idle = new LinkedBlockingDeque<>();
+    /**
+     * Instances currently borrowed, a release of any other instance is rejected
+     */
+    private final Set<OpenNLP> borrowed = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    /**
+     * Maximum number of instances
+     */
+    private final int maxSize;
+    /**
+     * Time after which an idle instance is dropped
+     */
+    private final long idleTimeoutNanos;
+    /**
+     * Drop the instances idle for too long
+     */
+    private final ScheduledExecutorService evictor;
+    /**
+     * Borrows served by an idle instance
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * Borrows which had to create an instance
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * Instances dropped because idle for too long
+     */
+    private final LongAdder evictions = new LongAdder();
+    /**
+     * Instances dropped because built on replaced models
+     */
+    private final LongAdder retirements = new LongAdder();
+
+    /**
+     * Build a new pool
+     *
+     * @param maxSize     Maximum number of instances
+     * @param idleTimeout Time after which an idle instance is dropped
+     * @param unit        Unit of idleTimeout
+     * @throws NullPointerException     if unit is null
+     * @throws IllegalArgumentException if maxSize or idleTimeout is not positive
+     */
+    public OpenNLPPool(int maxSize, long idleTimeout, TimeUnit unit) {
+        Objects.requireNonNull(unit);
+        if (maxSize <= 0 || idleTimeout <= 0) {
+            throw new IllegalArgumentException("Pool size and idle timeout must be positive");
+        }
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "scouter-nlp-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(TimeUnit.SECONDS.toNanos(1), idleTimeoutNanos / 2);
+        evictor.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the shared pool, sized by nlp.pool.max (default : number of cores)
+     * and nlp.pool.idle.timeout (default : 300 seconds)
+     *
+     * @return Shared instance of {@link OpenNLPPool}
+     */
+    public static synchronized OpenNLPPool getInstance() {
+        if (openNLPPool == null) {
+            PropertiesManager propertiesManager = PropertiesManager.getInstance();
+            openNLPPool = new OpenNLPPool(propertiesManager.get(ConfigKeys.NLP_POOL_MAX),
+                    propertiesManager.get(ConfigKeys.NLP_POOL_IDLE_TIMEOUT).toNanos(), TimeUnit.NANOSECONDS);
+            MetricsLogger metrics = MetricsLogger.getMetricsLogger();
+            metrics.gauge("nlp.pool.borrowed", openNLPPool::getBorrowed);
+            metrics.gauge("nlp.pool.idle", openNLPPool::getIdle);
+            metrics.gauge("nlp.pool.misses", openNLPPool::getMisses);
+        }
+        return openNLPPool;
+    }
+
+    /**
+     * Borrow an instance of the language of the nlp.* models, waiting if maxSize instances are already borrowed.
+     * The instance must be given back with {@link OpenNLPPool#release(OpenNLP)}
+     *
+     * @return Instance of {@link OpenNLP} used only by the calling thread until released
+     * @throws IllegalStateException if the calling thread is interrupted while waiting
+     */
+    public OpenNLP borrow() {
+        return borrow(PropertiesManager.getInstance().get(ConfigKeys.NLP_LANGUAGE), LoaderNLP.getDefaultModels());
+    }
+
+    /**
+     * Borrow an instance of a language, waiting if maxSize instances are already borrowed.
+     * The instance must be given back with {@link OpenNLPPool#release(OpenNLP)}
+     *
+     * @param language ISO 639-1 code of the language, see {@link LanguageRouter#isSupported(String)}
+     * @return Instance of {@link OpenNLP} used only by the calling thread until released
+     * @throws NullPointerException     if language is null
+     * @throws IllegalArgumentException if the language has no models
+     * @throws IllegalStateException    if the calling thread is interrupted while waiting
+     */
+    public OpenNLP borrow(String language) {
+        LoaderNLP.ModelSet models = LoaderNLP.getModels(language);
+        if (models == null) {
+            throw new IllegalArgumentException("No models for language " + language);
+        }
+        return borrow(language, models);
+    }
+
+    private OpenNLP borrow(String language, LoaderNLP.ModelSet models) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an OpenNLP instance", e);
+        }
+        long generation = LoaderNLP.getGeneration();
+        for (IdleInstance instance : idle) {
+            if (instance.openNLP.getGeneration() != generation) {
+                if (idle.removeFirstOccurrence(instance)) {
+                    retirements.increment();
+                }
+            } else if (instance.openNLP.getModels() == models && idle.removeFirstOccurrence(instance)) {
+                hits.increment();
+                borrowed.add(instance.openNLP);
+                return instance.openNLP;
+            }
+        }
+        // Idle instances of the other languages count in maxSize with the borrowed ones, this borrow included,
+        // drop the least recently used ones
+        while (idle.size() + getBorrowed() > maxSize && idle.pollLast() != null) {
+            evictions.increment();
+        }
+        misses.increment();
+        try {
+            OpenNLP openNLP = new OpenNLP(language, models);
+            borrowed.add(openNLP);
+            return openNLP;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Give back an instance borrowed with {@link OpenNLPPool#borrow()}. Its adaptive data is kept, the next
+     * borrower resets it with {@link OpenNLP#startDocument(Object)}. An instance built on replaced models is dropped
+     *
+     * @param openNLP Instance to give back
+     * @throws NullPointerException  if openNLP is null
+     * @throws IllegalStateException if openNLP is not currently borrowed from this pool, a release of an instance
+     *                               already released would let more than maxSize instances be borrowed
+     */
+    public void release(OpenNLP openNLP) {
+        Objects.requireNonNull(openNLP);
+        if (!borrowed.remove(openNLP)) {
+            throw new IllegalStateException("OpenNLP instance not borrowed from this pool or already released");
+        }
+        if (openNLP.getGeneration() == LoaderNLP.getGeneration()) {
+            idle.offerFirst(new IdleInstance(openNLP, System.nanoTime()));
+        } else {
+            retirements.increment();
+        }
+        permits.release();
+    }
+
+    /**
+     * Drop the instances idle for longer than the idle timeout, least recently used first
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        IdleInstance instance;
+        while ((instance = idle.peekLast()) != null && now - instance.releasedAt > idleTimeoutNanos) {
+            if (idle.removeLastOccurrence(instance)) {
+                evictions.increment();
+            }
+        }
+        LOGGER.debug("OpenNLP pool : " + idle.size() + " idle, " + getBorrowed() + " borrowed, "
+                + hits.sum() + " hits, " + misses.sum() + " misses, " + evictions.sum() + " evictions");
+    }
+
+    /**
+     * Get maximum number of instances
+     *
+     * @return {@link OpenNLPPool#maxSize}
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get number of instances currently borrowed
+     *
+     * @return Number of borrowed instances
+     */
+    public int getBorrowed() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Get number of idle instances
+     *
+     * @return Number of idle instances
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * Get number of borrows served by an idle instance
+     *
+     * @return {@link OpenNLPPool#hits}
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get number of borrows which had to create an instance
+     *
+     * @return {@link OpenNLPPool#misses}
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get number of instances dropped because idle for too long
+     *
+     * @return {@link OpenNLPPool#evictions}
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get number of instances dropped because built on replaced models
+     *
+     * @return {@link OpenNLPPool#retirements}
+     */
+    public long getRetirements() {
+        return retirements.sum();
+    }
+
+    /**
+     * Instance waiting in the pool
+     */
+    private static class IdleInstance {
+        private final OpenNLP openNLP;
+        private final long releasedAt;
+
+        private IdleInstance(OpenNLP openNLP, long releasedAt) {
+            this.openNLP = openNLP;
+            this.releasedAt = releasedAt;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package org.atos.scouter.util.nlp;
+
+import opennlp.tools.util.Span;
+
+import java.util.Arrays;
+
+/**
+ * Columnar results of {@link OpenNLP#analyzeBatch(java.util.List, java.util.Set, boolean, SentenceBatch)}
+ * on a list of sentences : one array per field instead of one object per token or entity.
+ * Tokens of sentence s are the indices {@link SentenceBatch#tokenBegin(int)} to {@link SentenceBatch#tokenLimit(int)}
+ * of the token columns. A batch is meant to be reused : {@link SentenceBatch#clear()} keeps its arrays,
+ * which only grow. Not thread safe.
+ *
+ * @version 1.0
+ */
+public final class SentenceBatch {
+    /**
+     * Types of entity, indexed by ordinal
+     */
+    private static final OpenNLP.nerOptions[] TYPES = OpenNLP.nerOptions.values();
+    /**
+     * Number of sentences
+     */
+    private int sentenceCount;
+    /**
+     * Index of the first token of each sentence, and of the end of the last one
+     */
+    private int[] tokenOffsets = new int[17];
+    /**
+     * Number of tokens
+     */
+    private int tokenCount;
+    /**
+     * Offset of the first character of each token in its sentence
+     */
+    private int[] tokenStarts = new int[256];
+    /**
+     * Offset after the last character of each token in its sentence
+     */
+    private int[] tokenEnds = new int[256];
+    /**
+     * POS tag of each token, null if not tagged
+     */
+    private String[] tags = new String[256];
+    /**
+     * Number of entities
+     */
+    private int entityCount;
+    /**
+     * Sentence of each entity
+     */
+    private int[] entitySentences = new int[16];
+    /**
+     * Index of the first token of each entity in its sentence
+     */
+    private int[] entityTokenStarts = new int[16];
+    /**
+     * Index after the last token of each entity in its sentence
+     */
+    private int[] entityTokenEnds = new int[16];
+    /**
+     * Ordinal of the type of each entity
+     */
+    private byte[] entityTypes = new byte[16];
+    /**
+     * Probability of each entity
+     */
+    private double[] entityProbabilities = new double[16];
+
+    /**
+     * Empty the batch, keeping its arrays
+     */
+    public void clear() {
+        Arrays.fill(tags, 0, tokenCount, null);
+        sentenceCount = 0;
+        tokenCount = 0;
+        entityCount = 0;
+    }
+
+    /**
+     * Add a sentence
+     *
+     * @param tokenSpans Position of each token in the sentence
+     * @param sentenceTags POS tag of each token, null if not tagged
+     */
+    void addSentence(Span[] tokenSpans, String[] sentenceTags) {
+        if (sentenceCount + 2 > tokenOffsets.length) {
+            tokenOffsets = Arrays.copyOf(tokenOffsets, tokenOffsets.length * 2);
+        }
+        int needed = tokenCount + tokenSpans.length;
+        if (needed > tokenStarts.length) {
+            int capacity = Math.max(needed, tokenStarts.length * 2);
+            tokenStarts = Arrays.copyOf(tokenStarts, capacity);
+            tokenEnds = Arrays.copyOf(tokenEnds, capacity);
+            tags = Arrays.copyOf(tags, capacity);
+        }
+        tokenOffsets[sentenceCount] = tokenCount;
+        for (int i = 0; i < tokenSpans.length; i++) {
+            tokenStarts[tokenCount + i] = tokenSpans[i].getStart();
+            tokenEnds[tokenCount + i] = tokenSpans[i].getEnd();
+        }
+        if (sentenceTags != null) {
+            System.arraycopy(sentenceTags, 0, tags, tokenCount, tokenSpans.length);
+        }
+        tokenCount = needed;
+        sentenceCount++;
+        tokenOffsets[sentenceCount] = tokenCount;
+    }
+
+    /**
+     * Add an entity of the last sentence added
+     *
+     * @param type        Type of the entity
+     * @param tokenStart  Index of the first token of the entity in its sentence
+     * @param tokenEnd    Index after the last token of the entity in its sentence
+     * @param probability Probability given by the name finder
+     */
+    void addEntity(OpenNLP.nerOptions type, int tokenStart, int tokenEnd, double probability) {
+        if (entityCount == entitySentences.length) {
+            int capacity = entityCount * 2;
+            entitySentences = Arrays.copyOf(entitySentences, capacity);
+            entityTokenStarts = Arrays.copyOf(entityTokenStarts, capacity);
+            entityTokenEnds = Arrays.copyOf(entityTokenEnds, capacity);
+            entityTypes = Arrays.copyOf(entityTypes, capacity);
+            entityProbabilities = Arrays.copyOf(entityProbabilities, capacity);
+        }
+        entitySentences[entityCount] = sentenceCount - 1;
+        entityTokenStarts[entityCount] = tokenStart;
+        entityTokenEnds[entityCount] = tokenEnd;
+        entityTypes[entityCount] = (byte) type.ordinal();
+        entityProbabilities[entityCount] = probability;
+        entityCount++;
+    }
+
+    /**
+     * Get number of sentences
+     *
+     * @return {@link SentenceBatch#sentenceCount}
+     */
+    public int getSentenceCount() {
+        return sentenceCount;
+    }
+
+    /**
+     * Get number of tokens of every sentence
+     *
+     * @return {@link SentenceBatch#tokenCount}
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Get number of entities of every sentence
+     *
+     * @return {@link SentenceBatch#entityCount}
+     */
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    /**
+     * Get index of the first token of a sentence in the token columns
+     *
+     * @param sentence Index of the sentence
+     * @return Index of its first token
+     * @throws IndexOutOfBoundsException if there is no such sentence
+     */
+    public int tokenBegin(int sentence) {
+        checkIndex(sentence, sentenceCount);
+        return tokenOffsets[sentence];
+    }
+
+    /**
+     * Get index after the last token of a sentence in the token columns
+     *
+     * @param sentence Index of the sentence
+     * @return Index after its last token
+     * @throws IndexOutOfBoundsException if there is no such sentence
+     */
+    public int tokenLimit(int sentence) {
+        checkIndex(sentence, sentenceCount);
+        return tokenOffsets[sentence + 1];
+    }
+
+    /**
+     * Get offset of the first character of a token in its sentence
+     *
+     * @param token Index of the token in the token columns
+     * @return Offset in the sentence
+     * @throws IndexOutOfBoundsException if there is no such token
+     */
+    public int tokenStart(int token) {
+        checkIndex(token, tokenCount);
+        return tokenStarts[token];
+    }
+
+    /**
+     * Get offset after the last character of a token in its sentence
+     *
+     * @param token Index of the token in the token columns
+     * @return Offset in the sentence
+     * @throws IndexOutOfBoundsException if there is no such token
+     */
+    public int tokenEnd(int token) {
+        checkIndex(token, tokenCount);
+        return tokenEnds[token];
+    }
+
+    /**
+     * Get POS tag of a token
+     *
+     * @param token Index of the token in the token columns
+     * @return Tag, null if the batch was not tagged
+     * @throws IndexOutOfBoundsException if there is no such token
+     */
+    public String tag(int token) {
+        checkIndex(token, tokenCount);
+        return tags[token];
+    }
+
+    /**
+     * Get sentence of an entity
+     *
+     * @param entity Index of the entity
+     * @return Index of its sentence
+     * @throws IndexOutOfBoundsException if there is no such entity
+     */
+    public int entitySentence(int entity) {
+        checkIndex(entity, entityCount);
+        return entitySentences[entity];
+    }
+
+    /**
+     * Get index of the first token of an entity in its sentence
+     *
+     * @param entity Index of the entity
+     * @return Index of the token in the sentence
+     * @throws IndexOutOfBoundsException if there is no such entity
+     */
+    public int entityTokenStart(int entity) {
+        checkIndex(entity, entityCount);
+        return entityTokenStarts[entity];
+    }
+
+    /**
+     * Get index after the last token of an entity in its sentence
+     *
+     * @param entity Index of the entity
+     * @return Index of the token in the sentence
+     * @throws IndexOutOfBoundsException if there is no such entity
+     */
+    public int entityTokenEnd(int entity) {
+        checkIndex(entity, entityCount);
+        return entityTokenEnds[entity];
+    }
+
+    /**
+     * Get type of an entity
+     *
+     * @param entity Index of the entity
+     * @return Type of the entity
+     * @throws IndexOutOfBoundsException if there is no such entity
+     */
+    public OpenNLP.nerOptions entityType(int entity) {
+        checkIndex(entity, entityCount);
+        return TYPES[entityTypes[entity]];
+    }
+
+    /**
+     * Get probability of an entity
+     *
+     * @param entity Index of the entity
+     * @return Probability given by the name finder
+     * @throws IndexOutOfBoundsException if there is no such entity
+     */
+    public double entityProbability(int entity) {
+        checkIndex(entity, entityCount);
+        return entityProbabilities[entity];
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+    }
+}
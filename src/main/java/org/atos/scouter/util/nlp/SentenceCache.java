@@ -0,0 +1,126 @@
+package org.atos.scouter.util.nlp;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.atos.scouter.util.ConfigKeys;
+import org.atos.scouter.util.PropertiesManager;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the NLP results of a sentence, shared by every {@link OpenNLP} instance.
+ * Boilerplate sentences repeated across documents are tokenized, tagged and analyzed once.
+ * Entries are keyed by a 128 bits hash of the model name and the sentence, so the sentences themselves are not kept,
+ * and evicted by size (nlp.cache.size entries, 0 disables the cache).
+ * Cached values are shared between threads and must never be modified.
+ *
+ * @version 1.0
+ */
+final class SentenceCache {
+    /**
+     * Hash function of the keys
+     */
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    /**
+     * Separator between the model name and the sentence in the hashed key
+     */
+    private static final char SEPARATOR = '\u0000';
+    /**
+     * Shared cache configured from {@link PropertiesManager}
+     *
+     * @see SentenceCache#getInstance()
+     */
+    private static SentenceCache sentenceCache;
+    /**
+     * Cached results, null if the cache is disabled
+     */
+    private final Cache<HashCode, Object> cache;
+
+    /**
+     * Build a new cache
+     *
+     * @param maxSize Maximum number of entries, 0 disables the cache
+     * @throws IllegalArgumentException if maxSize is negative
+     */
+    SentenceCache(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        cache = maxSize == 0 ? null : CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+    }
+
+    /**
+     * Get the shared cache, sized by nlp.cache.size (default : 100000)
+     *
+     * @return Shared instance of {@link SentenceCache}
+     */
+    static synchronized SentenceCache getInstance() {
+        if (sentenceCache == null) {
+            sentenceCache = new SentenceCache(PropertiesManager.getInstance().get(ConfigKeys.NLP_CACHE_SIZE));
+        }
+        return sentenceCache;
+    }
+
+    /**
+     * Get the result of a model on a sentence, computing it on a miss
+     *
+     * @param model    Name of the model producing the result
+     * @param sentence Sentence analyzed
+     * @param loader   Compute the result on a miss
+     * @param <T>      Type of the result
+     * @return Cached or computed result
+     * @throws NullPointerException if an argument is null
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(String model, String sentence, Supplier<T> loader) {
+        Objects.requireNonNull(model);
+        Objects.requireNonNull(sentence);
+        Objects.requireNonNull(loader);
+        if (cache == null) {
+            return loader.get();
+        }
+        HashCode key = HASH_FUNCTION.newHasher()
+                .putUnencodedChars(model)
+                .putChar(SEPARATOR)
+                .putUnencodedChars(sentence)
+                .hash();
+        Object value = cache.getIfPresent(key);
+        if (value == null) {
+            value = loader.get();
+            cache.put(key, value);
+        }
+        return (T) value;
+    }
+
+    /**
+     * Drop every entry, once a model was replaced
+     */
+    void clear() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Get hit and miss statistics
+     *
+     * @return Statistics of the cache, empty if the cache is disabled
+     */
+    CacheStats stats() {
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    /**
+     * Get number of entries
+     *
+     * @return Approximate number of cached results
+     */
+    long size() {
+        return cache == null ? 0 : cache.size();
+    }
+}
@@ -0,0 +1,177 @@
+package org.atos.scouter.util.nlp;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Annotations of a text referencing it by character offsets : each annotation is a start, an end and a type id
+ * in primitive arrays, with an optional label shared with the models (the lemma of a token).
+ * No substring is built until {@link TextAnnotations#getText(int)} is called.
+ * Annotations are meant to be reused : {@link TextAnnotations#reset(String)} keeps the arrays, which only grow.
+ * Not thread safe.
+ *
+ * @version 1.0
+ * @see OpenNLP#annotateEntities(String, java.util.Set, TextAnnotations)
+ * @see OpenNLP#annotateLemmas(String, TextAnnotations)
+ */
+public final class TextAnnotations {
+    /**
+     * Annotated text
+     */
+    private String text = "";
+    /**
+     * Number of annotations
+     */
+    private int size;
+    /**
+     * Offset of the first character of each annotation
+     */
+    private int[] starts = new int[64];
+    /**
+     * Offset after the last character of each annotation
+     */
+    private int[] ends = new int[64];
+    /**
+     * Type id of each annotation
+     */
+    private int[] types = new int[64];
+    /**
+     * Label of each annotation, null if none
+     */
+    private String[] labels = new String[64];
+
+    /**
+     * Empty the annotations and set the text they refer to, keeping the arrays
+     *
+     * @param text Text to annotate
+     * @return this
+     * @throws NullPointerException if text is null
+     */
+    public TextAnnotations reset(String text) {
+        this.text = Objects.requireNonNull(text);
+        Arrays.fill(labels, 0, size, null);
+        size = 0;
+        return this;
+    }
+
+    /**
+     * Add an annotation
+     *
+     * @param start Offset of its first character
+     * @param end   Offset after its last character
+     * @param type  Type id
+     * @param label Label, null if none
+     */
+    void add(int start, int end, int type, String label) {
+        if (size == starts.length) {
+            int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            types = Arrays.copyOf(types, capacity);
+            labels = Arrays.copyOf(labels, capacity);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        types[size] = type;
+        labels[size] = label;
+        size++;
+    }
+
+    /**
+     * Get annotated text
+     *
+     * @return {@link TextAnnotations#text}
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Get number of annotations
+     *
+     * @return {@link TextAnnotations#size}
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get offset of the first character of an annotation
+     *
+     * @param index Index of the annotation
+     * @return Offset in the text
+     * @throws IndexOutOfBoundsException if there is no such annotation
+     */
+    public int getStart(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    /**
+     * Get offset after the last character of an annotation
+     *
+     * @param index Index of the annotation
+     * @return Offset in the text
+     * @throws IndexOutOfBoundsException if there is no such annotation
+     */
+    public int getEnd(int index) {
+        checkIndex(index);
+        return ends[index];
+    }
+
+    /**
+     * Get type id of an annotation : ordinal of {@link OpenNLP.nerOptions} for an entity,
+     * POS tag id for a token, see {@link OpenNLP#getTagName(int)}
+     *
+     * @param index Index of the annotation
+     * @return Type id
+     * @throws IndexOutOfBoundsException if there is no such annotation
+     */
+    public int getType(int index) {
+        checkIndex(index);
+        return types[index];
+    }
+
+    /**
+     * Get label of an annotation
+     *
+     * @param index Index of the annotation
+     * @return Label, null if none
+     * @throws IndexOutOfBoundsException if there is no such annotation
+     */
+    public String getLabel(int index) {
+        checkIndex(index);
+        return labels[index];
+    }
+
+    /**
+     * Get text covered by an annotation, built on each call
+     *
+     * @param index Index of the annotation
+     * @return Substring of the text
+     * @throws IndexOutOfBoundsException if there is no such annotation
+     */
+    public String getText(int index) {
+        checkIndex(index);
+        return text.substring(starts[index], ends[index]);
+    }
+
+    /**
+     * Append the text covered by an annotation without building a substring
+     *
+     * @param index Index of the annotation
+     * @param out   Destination
+     * @return out
+     * @throws IndexOutOfBoundsException if there is no such annotation
+     */
+    public StringBuilder appendText(int index, StringBuilder out) {
+        checkIndex(index);
+        return out.append(text, starts[index], ends[index]);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+    }
+}